@@ -0,0 +1,106 @@
+package org.intellij.plugins.generateeverything;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class to generate members for: its name, the selected fields in the order they were selected, superclass fields
+ * included, and its superclass when that is known.
+ */
+public final class ClassModel {
+    private final String name;
+    private final boolean qualified;
+    private final List<FieldModel> fields;
+    @Nullable
+    private final SuperClassModel superClass;
+
+    private ClassModel(final Builder builder) {
+        name = builder.name;
+        qualified = builder.qualified;
+        fields = Collections.unmodifiableList(new ArrayList<>(builder.fields));
+        superClass = builder.superClass;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return whether the type texts are fully qualified, to be shortened once the members are in place, or written
+     * the way the source writes them.
+     */
+    public boolean isQualified() {
+        return qualified;
+    }
+
+    public List<FieldModel> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the fields declared in the class itself.
+     */
+    public List<FieldModel> getDeclaredFields() {
+        final List<FieldModel> declaredFields = new ArrayList<>(fields.size());
+        for (final FieldModel field : fields) {
+            if (!field.isInherited()) {
+                declaredFields.add(field);
+            }
+        }
+        return declaredFields;
+    }
+
+    /**
+     * @return the superclass, or null if the class has none or it isn't known.
+     */
+    @Nullable
+    public SuperClassModel getSuperClass() {
+        return superClass;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public String toString() {
+        return "ClassModel{" + "name='" + name + '\'' + ", qualified=" + qualified + ", fields=" + fields
+               + ", superClass=" + superClass + '}';
+    }
+
+    public static final class Builder {
+        private String name;
+        private boolean qualified;
+        private final List<FieldModel> fields = new ArrayList<>();
+        private SuperClassModel superClass;
+
+        private Builder() { }
+
+        public Builder withName(final String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder withQualified(final boolean qualified) {
+            this.qualified = qualified;
+            return this;
+        }
+
+        public Builder withField(final FieldModel field) {
+            this.fields.add(field);
+            return this;
+        }
+
+        public Builder withSuperClass(@Nullable final SuperClassModel superClass) {
+            this.superClass = superClass;
+            return this;
+        }
+
+        public ClassModel build() {
+            return new ClassModel(this);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.intellij.plugins.generateeverything;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A field as the generated members see it: its name, its type as it is written in them and how the generated class
+ * reads and assigns it. A superclass field the class can't access directly goes through its accessors.
+ */
+public final class FieldModel {
+    private final String name;
+    private final String typeText;
+    private final boolean inherited;
+    private final boolean writable;
+    @Nullable
+    private final String readExpression;
+    private final boolean assignedThroughSetter;
+    @Nullable
+    private final String setterName;
+
+    private FieldModel(final Builder builder) {
+        name = builder.name;
+        typeText = builder.typeText;
+        inherited = builder.inherited;
+        writable = builder.writable;
+        readExpression = builder.readExpression == null && !builder.inherited ? builder.name : builder.readExpression;
+        assignedThroughSetter = builder.assignedThroughSetter;
+        setterName = builder.setterName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the type, fully qualified when the class model is, otherwise as written.
+     */
+    public String getTypeText() {
+        return typeText;
+    }
+
+    /**
+     * @return whether the field is declared in a superclass of the generated class.
+     */
+    public boolean isInherited() {
+        return inherited;
+    }
+
+    /**
+     * @return whether the field isn't final.
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * @return the expression reading the field from the generated class, or null if it can't be read.
+     */
+    @Nullable
+    public String getReadExpression() {
+        return readExpression;
+    }
+
+    /**
+     * @return whether the generated class assigns the field through a setter rather than directly.
+     */
+    public boolean isAssignedThroughSetter() {
+        return assignedThroughSetter;
+    }
+
+    /**
+     * Build the statement assigning the field from the generated class.
+     *
+     * @param value the expression to assign.
+     * @return the assignment statement.
+     */
+    public String assignment(final String value) {
+        if (assignedThroughSetter) {
+            return setterCall(value);
+        }
+        return "this." + name + " = " + value + ";";
+    }
+
+    /**
+     * Build the statement assigning the field of another instance of the generated class, from within the class.
+     *
+     * @param instance the expression for the instance.
+     * @param value the expression to assign.
+     * @return the assignment statement.
+     */
+    public String assignment(final String instance, final String value) {
+        if (assignedThroughSetter) {
+            return instance + "." + setterCall(value);
+        }
+        return instance + "." + name + " = " + value + ";";
+    }
+
+    private String setterCall(final String value) {
+        return (setterName != null ? setterName : "set" + Naming.capitalize(name)) + "(" + value + ");";
+    }
+
+    /**
+     * @return whether the field holds a {@link String}.
+     */
+    public boolean isString() {
+        return "java.lang.String".equals(typeText) || "String".equals(typeText);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public String toString() {
+        return "FieldModel{" + "name='" + name + '\'' + ", typeText='" + typeText + '\'' + ", inherited=" + inherited
+               + ", writable=" + writable + ", readExpression='" + readExpression + '\'' + ", assignedThroughSetter="
+               + assignedThroughSetter + ", setterName='" + setterName + '\'' + '}';
+    }
+
+    public static final class Builder {
+        private String name;
+        private String typeText;
+        private boolean inherited;
+        private boolean writable = true;
+        private String readExpression;
+        private boolean assignedThroughSetter;
+        private String setterName;
+
+        private Builder() { }
+
+        public Builder withName(final String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder withTypeText(final String typeText) {
+            this.typeText = typeText;
+            return this;
+        }
+
+        public Builder withInherited(final boolean inherited) {
+            this.inherited = inherited;
+            return this;
+        }
+
+        public Builder withWritable(final boolean writable) {
+            this.writable = writable;
+            return this;
+        }
+
+        /**
+         * @param readExpression how the field is read, when it isn't its own name. Left null on an inherited field
+         *                       the field can't be read.
+         */
+        public Builder withReadExpression(@Nullable final String readExpression) {
+            this.readExpression = readExpression;
+            return this;
+        }
+
+        public Builder withAssignedThroughSetter(final boolean assignedThroughSetter) {
+            this.assignedThroughSetter = assignedThroughSetter;
+            return this;
+        }
+
+        /**
+         * @param setterName the setter assigning the field, when it isn't named after the field with any one letter
+         *                   prefix dropped.
+         */
+        public Builder withSetterName(@Nullable final String setterName) {
+            this.setterName = setterName;
+            return this;
+        }
+
+        public FieldModel build() {
+            return new FieldModel(this);
+        }
+    }
+}
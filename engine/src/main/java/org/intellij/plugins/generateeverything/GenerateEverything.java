@@ -0,0 +1,30 @@
+package org.intellij.plugins.generateeverything;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for {@link SourceSetGenerator} to generate members into at build time. Only the source sees it.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateEverything {
+
+    /**
+     * @return the options to generate, only the ones in {@link MemberTemplates#SUPPORTED_OPTIONS} are generated.
+     */
+    GenerateOption[] value() default {
+            GenerateOption.EMPTY_CONSTRUCTOR,
+            GenerateOption.ALL_ARGS_CONSTRUCTOR,
+            GenerateOption.GETTERS,
+            GenerateOption.SETTERS,
+            GenerateOption.TO_STRING
+    };
+
+    /**
+     * @return the names of the fields to leave out.
+     */
+    String[] exclude() default {};
+}
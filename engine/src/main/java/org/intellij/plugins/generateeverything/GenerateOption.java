@@ -9,7 +9,16 @@ public enum GenerateOption {
     ALL_ARGS_SUPER_CONSTRUCTOR("allArgsSuperConstructor"),
     GETTERS("getters"),
     SETTERS("setters"),
-    TO_STRING("toString");
+    TO_STRING("toString"),
+    INHERITED_FIELDS("inheritedFields"),
+    PROPERTY_TABLE("propertyTable"),
+    JSON_WRITER("jsonWriter"),
+    INTERNING_FACTORY("interningFactory"),
+    DIRTY_TRACKING("dirtyTracking"),
+    PACKED_FLAGS("packedFlags"),
+    OBJECT_POOL("objectPool"),
+    BOUNDED_TO_STRING("boundedToString"),
+    REUSABLE_BUILDER("reusableBuilder");
 
     private final String property;
 
@@ -0,0 +1,886 @@
+package org.intellij.plugins.generateeverything;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.intellij.plugins.generateeverything.Naming.JAVA_DOT_LANG;
+import static org.intellij.plugins.generateeverything.Naming.stripJavaLang;
+import static org.intellij.plugins.generateeverything.Naming.toLowerSnakeCase;
+import static org.intellij.plugins.generateeverything.Naming.toUpperSnakeCase;
+
+/**
+ * The text of every member a {@link GenerateOption} generates, worked out from a {@link ClassModel} alone. Members are
+ * written unindented, one statement per line, for the caller to format.
+ * <p>
+ * The JSON writer and the interning factory look at the field types' own methods, packing flags rewrites the rest of
+ * the file and the object pool is a class of its own, so only the plugin generates them.
+ */
+public final class MemberTemplates {
+
+    public static final String PROPERTY_TABLE_CLASS = "Meta";
+
+    public static final String DIRTY_FIELDS_CLASS = "Dirty";
+
+    public static final String BUILDER_CLASS = "Builder";
+
+    // The helpers a bounded toString writes its non primitive fields with
+    public static final String BOUNDED_APPEND = "appendBounded";
+
+    // The helpers a JSON writer appends its floating point fields with
+    public static final String JSON_NUMBER_WRITER = "writeJsonNumber";
+
+    // The dirty mask, a long or a long[] once there are more fields than bits in a long
+    public static final String DIRTY_BITS_FIELD = "dirtyBits";
+
+    // The suffix of the transient field a collection getter caches its unmodifiable view in
+    public static final String VIEW_SUFFIX = "View";
+
+    // The logging types no member is generated for unless configured otherwise
+    public static final String LOGGER_TYPES = "org.apache.log4j.Logger, org.apache.logging.log4j.Logger, "
+                                              + "java.util.logging.Logger, org.slf4j.Logger, "
+                                              + "ch.qos.logback.classic.Logger, net.sf.microlog.core.Logger, "
+                                              + "org.apache.commons.logging.Log, org.pmw.tinylog.Logger, "
+                                              + "org.jboss.logging.Logger, jodd.log.Logger";
+
+    // The options generated from the model alone, the rest need the field types resolved
+    public static final Set<GenerateOption> SUPPORTED_OPTIONS = Collections.unmodifiableSet(
+            EnumSet.complementOf(EnumSet.of(GenerateOption.JSON_WRITER,
+                                            GenerateOption.INTERNING_FACTORY,
+                                            GenerateOption.PACKED_FLAGS,
+                                            GenerateOption.OBJECT_POOL)));
+
+    // Primitive type -> boxed type, by name so it works on unresolved type text
+    private static final Map<String, String> BOXED_TYPES = new HashMap<>();
+
+    static {
+        BOXED_TYPES.put("boolean", "Boolean");
+        BOXED_TYPES.put("byte", "Byte");
+        BOXED_TYPES.put("short", "Short");
+        BOXED_TYPES.put("char", "Character");
+        BOXED_TYPES.put("int", "Integer");
+        BOXED_TYPES.put("float", "Float");
+        BOXED_TYPES.put("long", "Long");
+        BOXED_TYPES.put("double", "Double");
+    }
+
+    private MemberTemplates() {
+    }
+
+    /**
+     * Generate every member of the supported options, in the order the plugin inserts them. Final fields get no
+     * setter. The dirty mask field is generated along with the members.
+     *
+     * @param model the class to generate for.
+     * @param options the enabled options.
+     * @return the text of each member.
+     */
+    public static List<String> generate(final ClassModel model, final Set<GenerateOption> options) {
+        final List<String> members = new ArrayList<>();
+        if (options.contains(GenerateOption.EMPTY_CONSTRUCTOR)) {
+            members.add(emptyConstructor(model));
+        }
+        if (options.contains(GenerateOption.SUPER_ARGS_CONSTRUCTOR)) {
+            addIfPresent(members, superConstructor(model));
+        }
+        if (options.contains(GenerateOption.SUPER_OBJECT_CONSTRUCTOR)) {
+            addIfPresent(members, superObjectConstructor(model));
+        }
+        // the reusable builder builds through the all args constructor
+        if (options.contains(GenerateOption.ALL_ARGS_CONSTRUCTOR)
+            || options.contains(GenerateOption.REUSABLE_BUILDER)) {
+            members.add(allArgsConstructor(model, "public"));
+        }
+        if (options.contains(GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR)) {
+            addIfPresent(members, allArgsSuperConstructor(model));
+        }
+        final boolean dirtyTracking = options.contains(GenerateOption.DIRTY_TRACKING)
+                                      && !dirtyFields(model).isEmpty();
+        for (final FieldModel field : model.getDeclaredFields()) {
+            if (options.contains(GenerateOption.GETTERS)) {
+                members.add(getter(field));
+            }
+            if (options.contains(GenerateOption.SETTERS) && field.isWritable()) {
+                members.add(setter(field, dirtyTracking ? dirtyMark(model, field) : ""));
+            }
+        }
+        if (options.contains(GenerateOption.TO_STRING) && options.contains(GenerateOption.BOUNDED_TO_STRING)) {
+            final boolean flat = options.contains(GenerateOption.INHERITED_FIELDS);
+            members.add(boundedToStringMethod(model, flat, ToStringLimits.DEFAULT));
+            members.addAll(boundedToStringHelpers(model, flat, ToStringLimits.DEFAULT));
+        } else if (options.contains(GenerateOption.TO_STRING)) {
+            members.add(toStringMethod(model, options.contains(GenerateOption.INHERITED_FIELDS)));
+        }
+        if (options.contains(GenerateOption.PROPERTY_TABLE)) {
+            members.add(propertyTable(model));
+            members.addAll(propertyAccessors(model, dirtyTracking, Collections.emptySet()));
+        }
+        if (options.contains(GenerateOption.REUSABLE_BUILDER)) {
+            members.add(reusableBuilder(model, dirtyTracking, Collections.emptySet()));
+        }
+        if (dirtyTracking) {
+            members.add(dirtyFieldsClass(model));
+            members.add(dirtyBitsField(model));
+            members.addAll(dirtyTrackingMethods(model));
+        }
+        return members;
+    }
+
+    private static void addIfPresent(final List<String> members, @Nullable final String member) {
+        if (member != null) {
+            members.add(member);
+        }
+    }
+
+    /**
+     * @return a constructor with no arguments and no super to allow new class();.
+     */
+    public static String emptyConstructor(final ClassModel model) {
+        return constructor("public", model.getName(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param model the class.
+     * @param visibility the constructor's access modifier.
+     * @return a constructor taking and assigning every field, superclass fields included.
+     */
+    public static String allArgsConstructor(final ClassModel model, final String visibility) {
+        final List<String> parameters = new ArrayList<>();
+        final List<String> statements = new ArrayList<>();
+        addFieldAssignments(model.getFields(), parameters, statements);
+        return constructor(visibility, model.getName(), parameters, statements);
+    }
+
+    /**
+     * @return a constructor passing the parameters of the largest superclass constructor on, or null if there's no
+     * known superclass.
+     */
+    @Nullable
+    public static String superConstructor(final ClassModel model) {
+        final SuperClassModel superClass = model.getSuperClass();
+        if (superClass == null) {
+            return null;
+        }
+        final List<String> parameters = new ArrayList<>();
+        final List<String> statements = new ArrayList<>();
+        statements.add(superCall(superClass, parameters));
+        return constructor("public", model.getName(), parameters, statements);
+    }
+
+    /**
+     * @return a constructor passing a single superclass instance on, or null if the superclass has no constructor
+     * taking one.
+     */
+    @Nullable
+    public static String superObjectConstructor(final ClassModel model) {
+        final SuperClassModel superClass = model.getSuperClass();
+        if (superClass == null || !superClass.hasObjectConstructor()) {
+            return null;
+        }
+        final String parameterName = toLowerSnakeCase(superClass.getName());
+        return constructor("public",
+                           model.getName(),
+                           Collections.singletonList(superClass.getTypeText() + " " + parameterName),
+                           Collections.singletonList("super(" + parameterName + ");"));
+    }
+
+    /**
+     * @return a constructor passing the parameters of the largest superclass constructor on and assigning the class'
+     * own fields, or null if there's no known superclass other than Object.
+     */
+    @Nullable
+    public static String allArgsSuperConstructor(final ClassModel model) {
+        final SuperClassModel superClass = model.getSuperClass();
+        if (superClass == null || superClass.isObject()) {
+            return null;
+        }
+        final List<String> parameters = new ArrayList<>();
+        final List<String> statements = new ArrayList<>();
+        statements.add(superCall(superClass, parameters));
+        // the super call already takes care of the superclass fields
+        addFieldAssignments(model.getDeclaredFields(), parameters, statements);
+        return constructor("public", model.getName(), parameters, statements);
+    }
+
+    private static String superCall(final SuperClassModel superClass, final List<String> parameters) {
+        final List<String> names = superClass.getConstructorParameterNames();
+        for (int i = 0; i < names.size(); i++) {
+            parameters.add(superClass.getConstructorParameterTypes().get(i) + " " + names.get(i));
+        }
+        return "super(" + String.join(", ", names) + ");";
+    }
+
+    private static void addFieldAssignments(final List<FieldModel> fields,
+                                            final List<String> parameters,
+                                            final List<String> statements) {
+        for (final FieldModel field : fields) {
+            parameters.add(field.getTypeText() + " " + toLowerSnakeCase(field.getName()));
+            statements.add(field.assignment(toLowerSnakeCase(field.getName())));
+        }
+    }
+
+    public static String constructor(final String visibility,
+                                     final String className,
+                                     final List<String> parameters,
+                                     final List<String> statements) {
+        return visibility + " " + className + "(" + String.join(", ", parameters) + ") {\n"
+               + String.join("\n", statements) + "\n}";
+    }
+
+    /**
+     * @return a getter returning this.field.
+     */
+    public static String getter(final FieldModel field) {
+        return "public " + field.getTypeText() + " get" + toUpperSnakeCase(field.getName()) + "() {\n"
+               + "return this." + toLowerSnakeCase(field.getName()) + ";\n"
+               + "}";
+    }
+
+    /**
+     * @return a setter taking the argument with the field's type and setting this.field.
+     */
+    public static String setter(final FieldModel field) {
+        return setter(field, "");
+    }
+
+    /**
+     * @param field the field.
+     * @param after statements run after the assignment, each ending in a line break.
+     * @return a setter taking the argument with the field's type and setting this.field.
+     */
+    public static String setter(final FieldModel field, final String after) {
+        final String name = toLowerSnakeCase(field.getName());
+        return "public void set" + toUpperSnakeCase(field.getName()) + "(" + field.getTypeText() + " " + name + ") {\n"
+               + "this." + name + " = " + name + ";\n"
+               + after
+               + "}";
+    }
+
+    /**
+     * Generate toString as name=value pairs, strings in single quotes. The superclass' own toString leads unless its
+     * fields are listed along with the class' own.
+     *
+     * @param model the class.
+     * @param flat whether the selected superclass fields are listed along with the class' own.
+     * @return the toString method.
+     */
+    public static String toStringMethod(final ClassModel model, final boolean flat) {
+        final StringBuilder assignText = new StringBuilder("return \"" + model.getName() + "{");
+
+        final SuperClassModel superClass = model.getSuperClass();
+        if (!flat && superClass != null && superClass.hasFields()) {
+            assignText.append("{\" + super.toString() + " + "\"}, ");
+        }
+
+        final List<FieldModel> fields = new ArrayList<>();
+        for (final FieldModel field : flat ? model.getFields() : model.getDeclaredFields()) {
+            if (field.getReadExpression() != null) {
+                fields.add(field);
+            }
+        }
+
+        if (!fields.isEmpty()) {
+            // name='bob', age=200, isFat=true, dob=1900-01-01T03:50:12.0000000T
+            for (final FieldModel field : fields) {
+                final String quote = field.isString() ? "'" : "";
+                assignText.append("\"\n + \"")
+                          .append(field.getName())
+                          .append("=")
+                          .append(quote)
+                          .append("\" + ")
+                          .append(field.getReadExpression())
+                          .append(" + \"")
+                          .append(quote)
+                          .append(", ");
+            }
+            // Delete the last two chars which should be <comma><space>
+            assignText.setLength(assignText.length() - 2);
+            assignText.append("}\";");
+        } else {
+            assignText.append("+ \"}\";");
+        }
+
+        return model.isQualified()
+               ? "@java.lang.Override\npublic java.lang.String toString() {\n" + assignText + "\n}"
+               : "@Override\npublic String toString() {\n" + assignText + "\n}";
+    }
+
+    /**
+     * Generate toString like {@link #toStringMethod(ClassModel, boolean)}, but with every field's share of the output
+     * bounded. Primitives and their boxes are appended as they are, arrays of primitives through an overload of
+     * their own and anything else through a helper taking an Object: collections, maps and object arrays as their
+     * size and first elements, char sequences and anything else cut at the character limit. Redacted fields only
+     * show their name, skipped fields aren't written at all.
+     *
+     * @param model the class.
+     * @param flat whether the selected superclass fields are listed along with the class' own.
+     * @param limits the limits to generate with.
+     * @return the toString method, needing {@link #boundedToStringHelpers(ClassModel, boolean, ToStringLimits)}.
+     */
+    public static String boundedToStringMethod(final ClassModel model,
+                                               final boolean flat,
+                                               final ToStringLimits limits) {
+        final String stringBuilder = javaLang(model, "StringBuilder");
+        final StringBuilder body = new StringBuilder(stringBuilder + " out = new " + stringBuilder + "();\n");
+        final StringBuilder chain = new StringBuilder("out");
+        String pending = model.getName() + "{";
+
+        final SuperClassModel superClass = model.getSuperClass();
+        if (!flat && superClass != null && superClass.hasFields()) {
+            chain.append(".append(").append(javaString(pending + "{")).append(").append(super.toString())");
+            pending = "}, ";
+        }
+
+        boolean first = true;
+        for (final FieldModel field : boundedFields(model, flat, limits)) {
+            pending += (first ? "" : ", ") + field.getName() + "=";
+            first = false;
+            if (limits.isRedacted(field)) {
+                pending += "***";
+                continue;
+            }
+
+            final String quote = field.isString() ? "'" : "";
+            pending += quote;
+            chain.append(".append(").append(javaString(pending)).append(")");
+            pending = quote;
+
+            final String typeText = stripJavaLang(field.getTypeText());
+            if (boxedType(typeText) != null || unboxedType(typeText) != null) {
+                chain.append(".append(").append(field.getReadExpression()).append(")");
+                continue;
+            }
+            // Anything else is a separate statement
+            body.append(chain).append(";\n")
+                .append(BOUNDED_APPEND).append("(out, ").append(field.getReadExpression()).append(");\n");
+            chain.setLength(0);
+            chain.append("out");
+        }
+        pending += "}";
+        chain.append(".append(").append(javaString(pending)).append(")");
+        body.append(chain).append(";\n")
+            .append("return out.toString();\n");
+
+        return (model.isQualified() ? "@java.lang.Override\n" : "@Override\n")
+               + "public " + javaLang(model, "String") + " toString() {\n" + body + "}";
+    }
+
+    /**
+     * @return the helpers the bounded toString appends its non primitive fields with: one taking an Object, and one
+     * per type of primitive array among the fields.
+     */
+    public static List<String> boundedToStringHelpers(final ClassModel model,
+                                                      final boolean flat,
+                                                      final ToStringLimits limits) {
+        final String stringBuilder = javaLang(model, "StringBuilder");
+        final String object = javaLang(model, "Object");
+        final String charSequence = javaLang(model, "CharSequence");
+        final int maxChars = limits.getMaxFieldChars();
+        final int maxElements = limits.getMaxElements();
+        // stop listing elements once either limit is reached
+        final String full = "i == " + maxElements + " || out.length() - start > " + maxChars;
+
+        final List<String> helpers = new ArrayList<>();
+        helpers.add("private static void " + BOUNDED_APPEND + "(" + stringBuilder + " out, " + object + " value) {\n"
+                    + "int start = out.length();\n"
+                    + "if (value instanceof " + charSequence + ") {\n"
+                    + charSequence + " text = (" + charSequence + ") value;\n"
+                    + "if (text.length() > " + maxChars + ") {\n"
+                    + "out.append(text, 0, " + maxChars + ").append(\"...(\").append(text.length())"
+                    + ".append(\" chars)\");\n"
+                    + "return;\n"
+                    + "}\n"
+                    + "out.append(text);\n"
+                    + "} else if (value instanceof java.util.Collection) {\n"
+                    + "java.util.Collection<?> values = (java.util.Collection<?>) value;\n"
+                    + "out.append(\"size=\").append(values.size()).append(\" [\");\n"
+                    + "int i = 0;\n"
+                    + "for (" + object + " element : values) {\n"
+                    + "if (" + full + ") {\n"
+                    + "out.append(\", ...\");\n"
+                    + "break;\n"
+                    + "}\n"
+                    + "out.append(i++ == 0 ? \"\" : \", \").append(element);\n"
+                    + "}\n"
+                    + "out.append(']');\n"
+                    + "} else if (value instanceof java.util.Map) {\n"
+                    + "java.util.Map<?, ?> entries = (java.util.Map<?, ?>) value;\n"
+                    + "out.append(\"size=\").append(entries.size()).append(\" {\");\n"
+                    + "int i = 0;\n"
+                    + "for (java.util.Map.Entry<?, ?> entry : entries.entrySet()) {\n"
+                    + "if (" + full + ") {\n"
+                    + "out.append(\", ...\");\n"
+                    + "break;\n"
+                    + "}\n"
+                    + "out.append(i++ == 0 ? \"\" : \", \").append(entry.getKey()).append('=')"
+                    + ".append(entry.getValue());\n"
+                    + "}\n"
+                    + "out.append('}');\n"
+                    + "} else if (value instanceof " + object + "[]) {\n"
+                    + object + "[] values = (" + object + "[]) value;\n"
+                    + "out.append(\"size=\").append(values.length).append(\" [\");\n"
+                    + "for (int i = 0; i < values.length; i++) {\n"
+                    + "if (" + full + ") {\n"
+                    + "out.append(\", ...\");\n"
+                    + "break;\n"
+                    + "}\n"
+                    + "out.append(i == 0 ? \"\" : \", \").append(values[i]);\n"
+                    + "}\n"
+                    + "out.append(']');\n"
+                    + "} else {\n"
+                    + "out.append(value);\n"
+                    + "}\n"
+                    + "// an element or value with a long toString of its own\n"
+                    + "if (out.length() - start > " + maxChars + ") {\n"
+                    + "int length = out.length() - start;\n"
+                    + "out.setLength(start + " + maxChars + ");\n"
+                    + "out.append(\"...(\").append(length).append(\" chars)\");\n"
+                    + "}\n"
+                    + "}");
+
+        final Set<String> primitiveArrays = new LinkedHashSet<>();
+        for (final FieldModel field : boundedFields(model, flat, limits)) {
+            final String typeText = field.getTypeText();
+            if (!limits.isRedacted(field)
+                && typeText.endsWith("[]")
+                && boxedType(typeText.substring(0, typeText.length() - 2)) != null) {
+                primitiveArrays.add(typeText);
+            }
+        }
+        for (final String arrayType : primitiveArrays) {
+            helpers.add("private static void " + BOUNDED_APPEND + "(" + stringBuilder + " out, " + arrayType
+                        + " values) {\n"
+                        + "if (values == null) {\n"
+                        + "out.append(\"null\");\n"
+                        + "return;\n"
+                        + "}\n"
+                        + "int start = out.length();\n"
+                        + "out.append(\"size=\").append(values.length).append(\" [\");\n"
+                        + "for (int i = 0; i < values.length; i++) {\n"
+                        + "if (" + full + ") {\n"
+                        + "out.append(\", ...\");\n"
+                        + "break;\n"
+                        + "}\n"
+                        + "out.append(i == 0 ? \"\" : \", \").append(values[i]);\n"
+                        + "}\n"
+                        + "out.append(']');\n"
+                        + "}");
+        }
+        return helpers;
+    }
+
+    /**
+     * @return the fields a bounded toString lists, the skipped and unreadable ones left out.
+     */
+    private static List<FieldModel> boundedFields(final ClassModel model,
+                                                  final boolean flat,
+                                                  final ToStringLimits limits) {
+        final List<FieldModel> fields = new ArrayList<>();
+        for (final FieldModel field : flat ? model.getFields() : model.getDeclaredFields()) {
+            if (field.getReadExpression() != null && !limits.isSkipped(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the java.lang type, qualified when the model is.
+     */
+    private static String javaLang(final ClassModel model, final String simpleName) {
+        return model.isQualified() ? JAVA_DOT_LANG + simpleName : simpleName;
+    }
+
+    /**
+     * @return the Java string literal for text that only ever holds names and punctuation.
+     */
+    public static String javaString(final String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Generate the helper a JSON writer appends a floating point field with. JSON has no number for NaN and the
+     * infinities, so they are written as null, as is a null box.
+     *
+     * @param typeText float, double or their boxes, as written in the class.
+     * @param stringBuilder the StringBuilder type as written in the class.
+     * @return the helper method.
+     */
+    public static String jsonNumberWriter(final String typeText, final String stringBuilder) {
+        final String primitive = BOXED_TYPES.containsKey(typeText) ? typeText : unboxedType(stripJavaLang(typeText));
+        final String box = BOXED_TYPES.get(primitive);
+        final String check = (primitive.equals(typeText) ? "" : "value != null && ") + box + ".isFinite(value)";
+        return "private static void " + JSON_NUMBER_WRITER + "(" + stringBuilder + " out, " + typeText + " value) {\n"
+               + "if (" + check + ") {\n"
+               + "out.append(" + (primitive.equals(typeText) ? "value" : "value." + primitive + "Value()") + ");\n"
+               + "} else {\n"
+               + "out.append(\"null\");\n"
+               + "}\n"
+               + "}";
+    }
+
+    /**
+     * @return the nested Meta class with an index constant per field and the lookups between names and indexes.
+     */
+    public static String propertyTable(final ClassModel model) {
+        final List<FieldModel> fields = model.getFields();
+        final List<String> constants = constantNames(fields);
+        final StringBuilder meta = new StringBuilder("public static final class " + PROPERTY_TABLE_CLASS + " {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            meta.append("public static final int ").append(constants.get(i)).append(" = ").append(i).append(";\n");
+        }
+        meta.append("private ").append(PROPERTY_TABLE_CLASS).append("() {\n}\n")
+            .append("public static int count() {\nreturn ").append(fields.size()).append(";\n}\n")
+            .append("public static String name(int property) {\nswitch (property) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            meta.append("case ").append(constants.get(i))
+                .append(": return \"").append(fields.get(i).getName()).append("\";\n");
+        }
+        meta.append("default: throw new IndexOutOfBoundsException(\"No property \" + property);\n}\n}\n")
+            .append("public static int indexOf(String name) {\nswitch (name) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            meta.append("case \"").append(fields.get(i).getName()).append("\": return ")
+                .append(constants.get(i)).append(";\n");
+        }
+        return meta.append("default: return -1;\n}\n}\n}").toString();
+    }
+
+    /**
+     * @return the index constant of each field, in order, fields like fooBar and foo_bar told apart by a number.
+     */
+    private static List<String> constantNames(final List<FieldModel> fields) {
+        final List<String> names = new ArrayList<>(fields.size());
+        for (final FieldModel field : fields) {
+            names.add(field.getName());
+        }
+        return Naming.toUniqueConstantCase(names);
+    }
+
+    /**
+     * @param model the class.
+     * @param dirtyTracking whether the setters mark the fields they set in the dirty mask.
+     * @param viewedFields the fields whose getters cache a view, which the setters reset.
+     * @return get(int)/set(int, Object) and unboxed variants per primitive type, dispatching on the Meta index
+     * through a switch.
+     */
+    public static List<String> propertyAccessors(final ClassModel model,
+                                                 final boolean dirtyTracking,
+                                                 final Set<String> viewedFields) {
+        final String noProperty = "default: throw new IndexOutOfBoundsException(\"No property \" + property + \" in "
+                                  + model.getName() + "\");\n";
+
+        final StringBuilder get = new StringBuilder("public Object get(int property) {\nswitch (property) {\n");
+        final StringBuilder set = new StringBuilder("public void set(int property, Object value) {\n"
+                                                    + "switch (property) {\n");
+        boolean unchecked = false;
+        final List<FieldModel> fields = model.getFields();
+        final List<String> constants = constantNames(fields);
+        // only the unboxed variants with a case are generated, a setInt(int, int) for final ints would always throw
+        final Set<String> primitiveTypes = new LinkedHashSet<>();
+        final Map<String, StringBuilder> primitiveGetters = new HashMap<>();
+        final Map<String, StringBuilder> primitiveSetters = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            final FieldModel field = fields.get(i);
+            final String typeText = field.getTypeText();
+            final String constant = PROPERTY_TABLE_CLASS + "." + constants.get(i);
+            final String fieldRead = field.getReadExpression();
+            final String boxed = BOXED_TYPES.get(typeText);
+
+            if (fieldRead != null) {
+                get.append("case ").append(constant).append(": return ").append(fieldRead).append(";\n");
+            }
+            final String mark = afterAssignment(model, field, "this", dirtyTracking, viewedFields);
+            if (field.isWritable()) {
+                set.append("case ").append(constant).append(": ")
+                   .append(field.assignment("(" + (boxed != null ? boxed : typeText) + ") value"))
+                   .append(mark.isEmpty() ? " " : "\n" + mark).append("return;\n");
+                unchecked |= typeText.contains("<");
+            }
+
+            // unboxed variants, eg. getInt(int)/setInt(int, int)
+            if (boxed != null) {
+                primitiveTypes.add(typeText);
+                if (fieldRead != null) {
+                    primitiveGetters.computeIfAbsent(typeText, type -> new StringBuilder(
+                            "public " + type + " get" + toUpperSnakeCase(type) + "(int property) {\n"
+                            + "switch (property) {\n"))
+                                    .append("case ").append(constant).append(": return ").append(fieldRead)
+                                    .append(";\n");
+                }
+                if (field.isWritable()) {
+                    primitiveSetters.computeIfAbsent(typeText, type -> new StringBuilder(
+                            "public void set" + toUpperSnakeCase(type) + "(int property, " + type + " value) {\n"
+                            + "switch (property) {\n"))
+                                    .append("case ").append(constant).append(": ").append(field.assignment("value"))
+                                    .append(mark.isEmpty() ? " " : "\n" + mark).append("return;\n");
+                }
+            }
+        }
+
+        final List<String> methods = new ArrayList<>();
+        methods.add(get.append(noProperty).append("}\n}").toString());
+        methods.add((unchecked ? "@SuppressWarnings(\"unchecked\")\n" : "") + set.append(noProperty).append("}\n}"));
+        for (final String type : primitiveTypes) {
+            final String notOfType = "default: throw new IllegalArgumentException(\"Property \" + property + \" is not "
+                                     + "a" + ("int".equals(type) ? "n " : " ") + type + "\");\n";
+            if (primitiveGetters.containsKey(type)) {
+                methods.add(primitiveGetters.get(type).append(notOfType).append("}\n}").toString());
+            }
+            if (primitiveSetters.containsKey(type)) {
+                methods.add(primitiveSetters.get(type).append(notOfType).append("}\n}").toString());
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Generate a nested Builder meant to be kept and reused, eg. one per parser thread, rather than allocated per
+     * instance. The values are held in scratch fields of the fields' own types, so primitives stay unboxed. build()
+     * goes through the all args constructor, buildInto(existing) fills an instance the caller already has and reset()
+     * puts every value back to its default. buildInto is left out when a field is final, and otherwise keeps what the
+     * setters keep: it resets the views the getters cache and marks the fields dirty.
+     *
+     * @param model the class.
+     * @param dirtyTracking whether buildInto marks the fields it fills in the dirty mask.
+     * @param viewedFields the fields whose getters cache a view, which buildInto resets.
+     * @return the Builder class.
+     */
+    public static String reusableBuilder(final ClassModel model,
+                                         final boolean dirtyTracking,
+                                         final Set<String> viewedFields) {
+        final List<FieldModel> fields = model.getFields();
+        final StringBuilder builder = new StringBuilder("public static final class " + BUILDER_CLASS + " {\n");
+        for (final FieldModel field : fields) {
+            builder.append("private ").append(field.getTypeText()).append(" ").append(toLowerSnakeCase(field.getName()))
+                   .append(";\n");
+        }
+        for (final FieldModel field : fields) {
+            final String name = toLowerSnakeCase(field.getName());
+            builder.append("public ").append(BUILDER_CLASS).append(" with").append(toUpperSnakeCase(field.getName()))
+                   .append("(").append(field.getTypeText()).append(" ").append(name).append(") {\n")
+                   .append("this.").append(name).append(" = ").append(name).append(";\n")
+                   .append("return this;\n")
+                   .append("}\n");
+        }
+        builder.append("public ").append(BUILDER_CLASS).append(" reset() {\n");
+        for (final FieldModel field : fields) {
+            builder.append("this.").append(toLowerSnakeCase(field.getName())).append(" = ")
+                   .append(defaultValue(field.getTypeText())).append(";\n");
+        }
+        builder.append("return this;\n")
+               .append("}\n");
+
+        final List<String> values = new ArrayList<>();
+        boolean writable = true;
+        for (final FieldModel field : fields) {
+            values.add("this." + toLowerSnakeCase(field.getName()));
+            writable &= field.isWritable();
+        }
+        builder.append("public ").append(model.getName()).append(" build() {\n")
+               .append("return new ").append(model.getName()).append("(").append(String.join(", ", values))
+               .append(");\n")
+               .append("}\n");
+        if (writable) {
+            builder.append("public ").append(model.getName()).append(" buildInto(").append(model.getName())
+                   .append(" existing) {\n");
+            for (final FieldModel field : fields) {
+                builder.append(field.assignment("existing", "this." + toLowerSnakeCase(field.getName())))
+                       .append("\n")
+                       .append(afterAssignment(model, field, "existing", dirtyTracking, viewedFields));
+            }
+            builder.append("return existing;\n")
+                   .append("}\n");
+        }
+        return builder.append("}").toString();
+    }
+
+    /**
+     * Build what a generated writer other than the setter does after assigning a field, so the field is left the way
+     * its setter would leave it. A field assigned through its setter is left to the setter.
+     *
+     * @param instance the expression for the instance whose field is assigned.
+     * @return the statements resetting the field's cached view and marking it dirty, each ending in a line break.
+     */
+    private static String afterAssignment(final ClassModel model,
+                                          final FieldModel field,
+                                          final String instance,
+                                          final boolean dirtyTracking,
+                                          final Set<String> viewedFields) {
+        if (field.isAssignedThroughSetter()) {
+            return "";
+        }
+        return (viewedFields.contains(field.getName())
+                ? instance + "." + field.getName() + VIEW_SUFFIX + " = null;\n"
+                : "")
+               + (dirtyTracking ? dirtyMark(model, field, instance) : "");
+    }
+
+    /**
+     * @return the fields the dirty mask has a bit for, the class' own fields that can be set.
+     */
+    public static List<FieldModel> dirtyFields(final ClassModel model) {
+        final List<FieldModel> fields = new ArrayList<>();
+        for (final FieldModel field : model.getDeclaredFields()) {
+            if (field.isWritable()) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the nested Dirty class with the bit index of each field in the dirty mask.
+     */
+    public static String dirtyFieldsClass(final ClassModel model) {
+        final List<FieldModel> fields = dirtyFields(model);
+        final List<String> constants = constantNames(fields);
+        final StringBuilder dirty = new StringBuilder("public static final class " + DIRTY_FIELDS_CLASS + " {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            dirty.append("public static final int ").append(constants.get(i)).append(" = ").append(i).append(";\n");
+        }
+        return dirty.append("private ").append(DIRTY_FIELDS_CLASS).append("() {\n}\n}").toString();
+    }
+
+    /**
+     * @return the dirty mask field, a long or a long[] with a bit per field the mask tracks.
+     */
+    public static String dirtyBitsField(final ClassModel model) {
+        final int fieldCount = dirtyFields(model).size();
+        return fieldCount > Long.SIZE
+               ? "private long[] " + DIRTY_BITS_FIELD + " = new long[" + ((fieldCount + Long.SIZE - 1) / Long.SIZE)
+                 + "];"
+               : "private long " + DIRTY_BITS_FIELD + ";";
+    }
+
+    /**
+     * @param model the class.
+     * @param field one of the class' fields.
+     * @return the statement a setter marks its field dirty with, ending in a line break, or nothing if the mask
+     * doesn't track the field.
+     */
+    public static String dirtyMark(final ClassModel model, final FieldModel field) {
+        return dirtyMark(model, field, "this");
+    }
+
+    /**
+     * @param model the class.
+     * @param field one of the class' fields.
+     * @param instance the expression for the instance of the class whose field is set.
+     * @return the statement marking the field dirty, ending in a line break, or nothing if the mask doesn't track the
+     * field.
+     */
+    public static String dirtyMark(final ClassModel model, final FieldModel field, final String instance) {
+        final List<FieldModel> fields = dirtyFields(model);
+        final int position = fields.indexOf(field);
+        if (position < 0) {
+            return "";
+        }
+        final String index = DIRTY_FIELDS_CLASS + "." + constantNames(fields).get(position);
+        return fields.size() > Long.SIZE
+               ? instance + "." + DIRTY_BITS_FIELD + "[" + index + " >>> 6] |= 1L << " + index + ";\n"
+               : instance + "." + DIRTY_BITS_FIELD + " |= 1L << " + index + ";\n";
+    }
+
+    /**
+     * Does a setter left from an earlier generation mark its field the way a new one would? One from before the dirty
+     * tracking was enabled has no mark, one from before the mask spilled into an array marks a long that is gone, and
+     * one from before the tracking was turned off marks a mask that may be gone. Whitespace is ignored.
+     *
+     * @param setterText the existing setter.
+     * @param dirtyMark the statement a new setter marks its field dirty with, empty if the field isn't tracked.
+     * @return true if the setter can be kept as far as the mask goes.
+     */
+    public static boolean hasDirtyMark(final String setterText, final String dirtyMark) {
+        final String setter = setterText.replaceAll("\\s+", "");
+        if (dirtyMark.isEmpty()) {
+            return !setter.contains(DIRTY_BITS_FIELD) || !setter.contains(DIRTY_FIELDS_CLASS + ".");
+        }
+        return setter.contains(dirtyMark.replaceAll("\\s+", ""));
+    }
+
+    /**
+     * @return isDirty(int) testing a single field by its Dirty index, dirtyMask() and clearDirty(). The mask is
+     * handed out as a copy when it is an array.
+     */
+    public static List<String> dirtyTrackingMethods(final ClassModel model) {
+        final List<String> methods = new ArrayList<>();
+        if (dirtyFields(model).size() > Long.SIZE) {
+            methods.add("public boolean isDirty(int field) {\n"
+                        + "return (" + DIRTY_BITS_FIELD + "[field >>> 6] & 1L << field) != 0;\n"
+                        + "}");
+            methods.add("public long[] dirtyMask() {\n"
+                        + "return " + DIRTY_BITS_FIELD + ".clone();\n"
+                        + "}");
+            methods.add("public void clearDirty() {\n"
+                        + "java.util.Arrays.fill(" + DIRTY_BITS_FIELD + ", 0L);\n"
+                        + "}");
+        } else {
+            methods.add("public boolean isDirty(int field) {\n"
+                        + "return (" + DIRTY_BITS_FIELD + " & 1L << field) != 0;\n"
+                        + "}");
+            methods.add("public long dirtyMask() {\n"
+                        + "return " + DIRTY_BITS_FIELD + ";\n"
+                        + "}");
+            methods.add("public void clearDirty() {\n"
+                        + DIRTY_BITS_FIELD + " = 0L;\n"
+                        + "}");
+        }
+        return methods;
+    }
+
+    /**
+     * @param typeText the type text without java.lang.
+     * @return the box of the primitive type, or null if it isn't a primitive.
+     */
+    @Nullable
+    public static String boxedType(final String typeText) {
+        return BOXED_TYPES.get(typeText);
+    }
+
+    /**
+     * @param typeText the type text.
+     * @return the default value of a field of the type, cast where a method argument would need it to be.
+     */
+    public static String defaultValue(final String typeText) {
+        switch (typeText) {
+            case "boolean":
+                return "false";
+            case "char":
+                return "'\\0'";
+            case "byte":
+            case "short":
+                return "(" + typeText + ") 0";
+            case "int":
+                return "0";
+            case "long":
+                return "0L";
+            case "float":
+                return "0.0f";
+            case "double":
+                return "0.0";
+            default:
+                return "null";
+        }
+    }
+
+    /**
+     * @param typeText the type text without java.lang.
+     * @return the primitive the type is the box of, or null if it isn't a box.
+     */
+    @Nullable
+    public static String unboxedType(final String typeText) {
+        for (final Map.Entry<String, String> boxedType : BOXED_TYPES.entrySet()) {
+            if (boxedType.getValue().equals(typeText)) {
+                return boxedType.getKey();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package org.intellij.plugins.generateeverything;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The naming rules for generated members and their parameters, shared by the plugin and the build time generator so
+ * both name everything the same way.
+ */
+public final class Naming {
+
+    public static final String JAVA_DOT_LANG = "java.lang.";
+
+    private Naming() {
+    }
+
+    public static String stripJavaLang(final String typeString) {
+        return typeString.startsWith(JAVA_DOT_LANG) ? typeString.substring(JAVA_DOT_LANG.length()) : typeString;
+    }
+
+    public static String capitalize(final String str) {
+        return hasOneLetterPrefix(str) ?
+               Character.toUpperCase(str.charAt(1)) + str.substring(2) :
+               Character.toUpperCase(str.charAt(0)) + str.substring(1);
+    }
+
+    public static boolean hasOneLetterPrefix(final String str) {
+        return Character.isLowerCase(str.charAt(0)) && Character.isUpperCase(str.charAt(1));
+    }
+
+    /**
+     * Does the string have a lowercase character?
+     *
+     * @param str the string to test.
+     * @return true if the string has a lowercase character, false if not.
+     */
+    public static boolean hasLowerCaseChar(final String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (Character.isLowerCase(str.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static String toLowerSnakeCase(final String str) {
+        if (str.length() == 0)
+            return "";
+
+        if (Character.isUpperCase(str.charAt(0)))
+            return (str.charAt(0) + "").toLowerCase() + str.substring(1);
+        else return str;
+    }
+
+    public static String toUpperSnakeCase(final String str) {
+        if (str.length() == 0)
+            return "";
+
+        if (Character.isLowerCase(str.charAt(0)))
+            return (str.charAt(0) + "").toUpperCase() + str.substring(1);
+        else return str;
+    }
+
+    /**
+     * Turn a field name into a constant name, eg. firstName to FIRST_NAME.
+     *
+     * @param str the field name.
+     * @return the constant name.
+     */
+    public static String toConstantCase(final String str) {
+        final StringBuilder constant = new StringBuilder(str.length() + 4);
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(str.charAt(i - 1))) {
+                constant.append('_');
+            }
+            constant.append(Character.toUpperCase(c));
+        }
+        return constant.toString();
+    }
+
+    /**
+     * Turn field names into constant names that are all different, eg. fooBar and foo_bar to FOO_BAR and FOO_BAR_2.
+     *
+     * @param names the field names.
+     * @return the constant names, in the same order.
+     */
+    public static List<String> toUniqueConstantCase(final List<String> names) {
+        final Set<String> taken = new HashSet<>();
+        for (final String name : names) {
+            taken.add(toConstantCase(name));
+        }
+        final Set<String> used = new HashSet<>();
+        final List<String> constants = new ArrayList<>(names.size());
+        for (final String name : names) {
+            String constant = toConstantCase(name);
+            if (!used.add(constant)) {
+                int suffix = 2;
+                while (taken.contains(constant + "_" + suffix) || used.contains(constant + "_" + suffix)) {
+                    suffix++;
+                }
+                constant = constant + "_" + suffix;
+                used.add(constant);
+            }
+            constants.add(constant);
+        }
+        return constants;
+    }
+}
@@ -0,0 +1,543 @@
+package org.intellij.plugins.generateeverything;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.Trees;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the members of every class annotated with {@link GenerateEverything} at build time, without an IDE.
+ * <p>
+ * Each source root is copied into the output directory, with the members inserted before the closing brace of each
+ * annotated class, so the output is compiled in place of the sources. Files are parsed on their own, one per task
+ * over a thread pool, with the JDK's own parser. Nothing is resolved, so like the plugin while indexing the types are
+ * taken as written and the super constructors are skipped. The fields are those the plugin offers with its default
+ * exclusion rules, so loggers and the state of generated members are left out. Members the class already declares are
+ * left alone.
+ * <p>
+ * Run with the output directory followed by the source roots, eg. by the task generate-everything.gradle registers.
+ */
+public final class SourceSetGenerator {
+
+    private static final String INDENT = "    ";
+
+    private static final Set<GenerateOption> SUPER_OPTIONS = EnumSet.of(GenerateOption.SUPER_ARGS_CONSTRUCTOR,
+                                                                        GenerateOption.SUPER_OBJECT_CONSTRUCTOR,
+                                                                        GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR);
+
+    private static final Set<String> LOGGER_TYPES = new HashSet<>();
+
+    private static final Set<String> LOGGER_SIMPLE_NAMES = new HashSet<>();
+
+    static {
+        for (final String loggerType : MemberTemplates.LOGGER_TYPES.split(",")) {
+            LOGGER_TYPES.add(loggerType.trim());
+            LOGGER_SIMPLE_NAMES.add(loggerType.substring(loggerType.lastIndexOf('.') + 1).trim());
+        }
+    }
+
+    private final Path outputDirectory;
+
+    private final List<Path> sourceRoots;
+
+    public SourceSetGenerator(final Path outputDirectory, final List<Path> sourceRoots) {
+        this.outputDirectory = outputDirectory;
+        this.sourceRoots = sourceRoots;
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: SourceSetGenerator <output directory> <source root>...");
+            System.exit(2);
+        }
+
+        final List<Path> sourceRoots = Arrays.stream(args, 1, args.length)
+                                             .map(Paths::get)
+                                             .collect(Collectors.toList());
+        final int failures = new SourceSetGenerator(Paths.get(args[0]), sourceRoots)
+                .run(Runtime.getRuntime().availableProcessors());
+        if (failures > 0) {
+            System.err.println(failures + " file(s) could not be generated.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generate every file of the source roots into the output directory.
+     *
+     * @param threads how many files are generated at once.
+     * @return the number of files that failed to parse or write.
+     */
+    public int run(final int threads) throws IOException, InterruptedException {
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (final Path sourceRoot : sourceRoots) {
+            if (!Files.isDirectory(sourceRoot)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(sourceRoot)) {
+                files.filter(Files::isRegularFile).forEach(file -> tasks.add(() -> generateFile(sourceRoot, file)));
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        int failures = 0;
+        try {
+            for (final Future<Boolean> result : executor.invokeAll(tasks)) {
+                try {
+                    if (!result.get()) {
+                        failures++;
+                    }
+                } catch (ExecutionException e) {
+                    System.err.println("Generation failed : " + e.getCause());
+                    failures++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return failures;
+    }
+
+    private boolean generateFile(final Path sourceRoot, final Path file) throws IOException {
+        final Path target = outputDirectory.resolve(sourceRoot.relativize(file).toString());
+        Files.createDirectories(target.getParent());
+        if (!file.getFileName().toString().endsWith(".java")) {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+
+        final String generated = generate(file, Files.readString(file));
+        if (generated == null) {
+            return false;
+        }
+        Files.writeString(target, generated);
+        return true;
+    }
+
+    /**
+     * Generate the members of the annotated classes of a source file.
+     *
+     * @param file the file, for the diagnostics.
+     * @param source the file's content.
+     * @return the content with the members inserted, or null if the file doesn't parse.
+     */
+    @Nullable
+    static String generate(final Path file, final String source) throws IOException {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final JavacTask task = parseTask(file, source, diagnostics);
+        final CompilationUnitTree unit = task.parse().iterator().next();
+        if (hasErrors(diagnostics)) {
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                System.err.println(file + ":" + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+            return null;
+        }
+
+        final SourcePositions positions = Trees.instance(task).getSourcePositions();
+        final List<Insertion> insertions = new ArrayList<>();
+        for (final Tree typeDeclaration : unit.getTypeDecls()) {
+            if (typeDeclaration instanceof ClassTree) {
+                collectInsertions(file, source, unit, positions, (ClassTree) typeDeclaration, insertions);
+            }
+        }
+        if (insertions.isEmpty()) {
+            return source;
+        }
+
+        // from the end of the file back, so the offsets still to come stay where they were
+        insertions.sort(Comparator.comparingInt((Insertion insertion) -> insertion.offset).reversed());
+        final StringBuilder generated = new StringBuilder(source);
+        for (final Insertion insertion : insertions) {
+            generated.insert(insertion.offset, insertion.text);
+        }
+        return generated.toString();
+    }
+
+    private static JavacTask parseTask(final Path file,
+                                       final String source,
+                                       final DiagnosticCollector<JavaFileObject> diagnostics) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available, run on a JDK rather than a JRE.");
+        }
+        final JavaFileObject fileObject = new SimpleJavaFileObject(file.toUri(), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        return (JavacTask) compiler.getTask(null,
+                                            null,
+                                            diagnostics,
+                                            Collections.singletonList("-proc:none"),
+                                            null,
+                                            Collections.singletonList(fileObject));
+    }
+
+    private static boolean hasErrors(final DiagnosticCollector<JavaFileObject> diagnostics) {
+        return diagnostics.getDiagnostics()
+                          .stream()
+                          .anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR);
+    }
+
+    /**
+     * Work out the insertion for the class if it is annotated, and for its annotated static nested classes.
+     */
+    private static void collectInsertions(final Path file,
+                                          final String source,
+                                          final CompilationUnitTree unit,
+                                          final SourcePositions positions,
+                                          final ClassTree classTree,
+                                          final List<Insertion> insertions) throws IOException {
+        final AnnotationTree annotation = findAnnotation(classTree);
+        if (annotation != null && classTree.getKind() == Tree.Kind.CLASS) {
+            final Insertion insertion = insertion(file, source, unit, positions, classTree, annotation);
+            if (insertion != null) {
+                insertions.add(insertion);
+            }
+        }
+
+        for (final Tree member : classTree.getMembers()) {
+            if (member instanceof ClassTree
+                && ((ClassTree) member).getModifiers().getFlags().contains(Modifier.STATIC)) {
+                collectInsertions(file, source, unit, positions, (ClassTree) member, insertions);
+            }
+        }
+    }
+
+    @Nullable
+    private static AnnotationTree findAnnotation(final ClassTree classTree) {
+        for (final AnnotationTree annotation : classTree.getModifiers().getAnnotations()) {
+            final String name = annotation.getAnnotationType().toString();
+            if (name.equals(GenerateEverything.class.getSimpleName())
+                || name.equals(GenerateEverything.class.getCanonicalName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Insertion insertion(final Path file,
+                                       final String source,
+                                       final CompilationUnitTree unit,
+                                       final SourcePositions positions,
+                                       final ClassTree classTree,
+                                       final AnnotationTree annotation) throws IOException {
+        final String className = classTree.getSimpleName().toString();
+        final Set<GenerateOption> options = options(annotation);
+        final Set<String> excluded = new HashSet<>(stringArguments(annotation, "exclude"));
+
+        for (final GenerateOption option : options) {
+            if (!MemberTemplates.SUPPORTED_OPTIONS.contains(option) || SUPER_OPTIONS.contains(option)) {
+                System.err.println(file + ": " + option + " needs the IDE to resolve " + className + "'s types, "
+                                   + "skipping it.");
+            }
+        }
+        if (options.contains(GenerateOption.REUSABLE_BUILDER)
+            && (!classTree.getTypeParameters().isEmpty()
+                || classTree.getModifiers().getFlags().contains(Modifier.ABSTRACT))) {
+            System.err.println(file + ": " + className + " can't be built by a nested builder, skipping it.");
+            options.remove(GenerateOption.REUSABLE_BUILDER);
+        }
+
+        final Set<String> fieldNames = new HashSet<>();
+        for (final Tree member : classTree.getMembers()) {
+            if (member instanceof VariableTree) {
+                fieldNames.add(((VariableTree) member).getName().toString());
+            }
+        }
+
+        final ClassModel.Builder model = ClassModel.newBuilder().withName(className).withQualified(false);
+        boolean unassignedFinal = false;
+        for (final Tree member : classTree.getMembers()) {
+            if (member instanceof VariableTree) {
+                final VariableTree variable = (VariableTree) member;
+                final String name = variable.getName().toString();
+                final Set<Modifier> modifiers = variable.getModifiers().getFlags();
+                unassignedFinal |= modifiers.contains(Modifier.FINAL)
+                                   && !modifiers.contains(Modifier.STATIC)
+                                   && variable.getInitializer() == null;
+                // the fields the plugin offers with the default exclusion rules, less the excluded ones
+                if (!modifiers.contains(Modifier.STATIC)
+                    && Naming.hasLowerCaseChar(name)
+                    && !isGeneratedState(variable, fieldNames)
+                    && !isLoggerType(variable.getType().toString())
+                    && !(modifiers.contains(Modifier.FINAL) && variable.getInitializer() != null)
+                    && !excluded.contains(name)) {
+                    model.withField(FieldModel.newBuilder()
+                                              .withName(name)
+                                              .withTypeText(variable.getType().toString())
+                                              .withWritable(!modifiers.contains(Modifier.FINAL))
+                                              .build());
+                }
+            }
+        }
+        if (unassignedFinal && options.remove(GenerateOption.EMPTY_CONSTRUCTOR)) {
+            System.err.println(file + ": " + className + " has final fields only a constructor can assign, skipping "
+                               + "its empty constructor.");
+        }
+
+        final List<String> members = newMembers(file, classTree, MemberTemplates.generate(model.build(), options));
+        if (members.isEmpty()) {
+            return null;
+        }
+
+        // before the closing brace, indented one level in from it
+        final int closingBrace = source.lastIndexOf('}', (int) positions.getEndPosition(unit, classTree) - 1);
+        final int lineStart = source.lastIndexOf('\n', closingBrace) + 1;
+        final boolean braceOnOwnLine = source.substring(lineStart, closingBrace).isBlank();
+        final String indent = braceOnOwnLine ? source.substring(lineStart, closingBrace) + INDENT : INDENT;
+
+        final StringBuilder text = new StringBuilder(braceOnOwnLine ? "" : "\n");
+        for (final String member : members) {
+            text.append('\n').append(indent(member, indent));
+        }
+        return new Insertion(braceOnOwnLine ? lineStart : closingBrace, text.toString());
+    }
+
+    /**
+     * Is the field one the generated members keep their own state in, the dirty mask or the transient view of another
+     * field of the class?
+     */
+    private static boolean isGeneratedState(final VariableTree variable, final Set<String> fieldNames) {
+        final String name = variable.getName().toString();
+        if (name.equals(MemberTemplates.DIRTY_BITS_FIELD)) {
+            return true;
+        }
+        return variable.getModifiers().getFlags().contains(Modifier.TRANSIENT)
+               && name.endsWith(MemberTemplates.VIEW_SUFFIX)
+               && name.length() > MemberTemplates.VIEW_SUFFIX.length()
+               && fieldNames.contains(name.substring(0, name.length() - MemberTemplates.VIEW_SUFFIX.length()));
+    }
+
+    /**
+     * Is a type, as written and possibly unqualified, one of the logging types the plugin leaves out by default?
+     */
+    private static boolean isLoggerType(final String typeText) {
+        final int genericStart = typeText.indexOf('<');
+        final String rawText = (genericStart < 0 ? typeText : typeText.substring(0, genericStart)).trim();
+        return LOGGER_TYPES.contains(rawText) || LOGGER_SIMPLE_NAMES.contains(rawText);
+    }
+
+    private static Set<GenerateOption> options(final AnnotationTree annotation) {
+        final List<String> names = stringArguments(annotation, "value");
+        if (names.isEmpty() && !hasArgument(annotation, "value")) {
+            return EnumSet.copyOf(Arrays.asList(defaultOptions()));
+        }
+
+        final Set<GenerateOption> options = EnumSet.noneOf(GenerateOption.class);
+        for (final String name : names) {
+            try {
+                options.add(GenerateOption.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown option " + name + ", skipping it.");
+            }
+        }
+        return options;
+    }
+
+    private static GenerateOption[] defaultOptions() {
+        try {
+            return (GenerateOption[]) GenerateEverything.class.getMethod("value").getDefaultValue();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean hasArgument(final AnnotationTree annotation, final String name) {
+        for (final ExpressionTree argument : annotation.getArguments()) {
+            if (argumentName(argument).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the enum constant names or string literals given for an annotation argument, in order.
+     */
+    private static List<String> stringArguments(final AnnotationTree annotation, final String name) {
+        final List<String> values = new ArrayList<>();
+        for (final ExpressionTree argument : annotation.getArguments()) {
+            if (!argumentName(argument).equals(name)) {
+                continue;
+            }
+            final ExpressionTree value = argument instanceof AssignmentTree
+                                         ? ((AssignmentTree) argument).getExpression()
+                                         : argument;
+            final List<? extends ExpressionTree> elements = value instanceof NewArrayTree
+                                                            ? ((NewArrayTree) value).getInitializers()
+                                                            : Collections.singletonList(value);
+            for (final ExpressionTree element : elements) {
+                if (element instanceof MemberSelectTree) {
+                    values.add(((MemberSelectTree) element).getIdentifier().toString());
+                } else if (element instanceof IdentifierTree) {
+                    values.add(((IdentifierTree) element).getName().toString());
+                } else if (element instanceof LiteralTree) {
+                    values.add(String.valueOf(((LiteralTree) element).getValue()));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String argumentName(final ExpressionTree argument) {
+        return argument instanceof AssignmentTree ? ((AssignmentTree) argument).getVariable().toString() : "value";
+    }
+
+    /**
+     * Drop the generated members the class already declares, methods matched on their name and parameter types as
+     * written, nested classes and fields on their name.
+     */
+    private static List<String> newMembers(final Path file,
+                                           final ClassTree classTree,
+                                           final List<String> members) throws IOException {
+        final Set<String> existing = new HashSet<>();
+        for (final Tree member : classTree.getMembers()) {
+            final String signature = signature(member);
+            if (signature != null) {
+                existing.add(signature);
+            }
+        }
+
+        // every generated member is parsed at once inside a stand in for the class
+        final String standIn = "class " + classTree.getSimpleName() + " {\n" + String.join("\n", members) + "\n}";
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final CompilationUnitTree unit = parseTask(file, standIn, diagnostics).parse().iterator().next();
+        final List<? extends Tree> parsed = ((ClassTree) unit.getTypeDecls().get(0)).getMembers();
+        if (hasErrors(diagnostics) || parsed.size() != members.size()) {
+            return members;
+        }
+
+        final List<String> newMembers = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            if (!existing.contains(signature(parsed.get(i)))) {
+                newMembers.add(members.get(i));
+            }
+        }
+        return newMembers;
+    }
+
+    @Nullable
+    private static String signature(final Tree member) {
+        if (member instanceof MethodTree) {
+            final MethodTree method = (MethodTree) member;
+            return method.getName() + method.getParameters()
+                                            .stream()
+                                            .map(parameter -> parameter.getType().toString())
+                                            .collect(Collectors.joining(", ", "(", ")"));
+        }
+        if (member instanceof ClassTree) {
+            return "class " + ((ClassTree) member).getSimpleName();
+        }
+        if (member instanceof VariableTree) {
+            return "field " + ((VariableTree) member).getName();
+        }
+        return null;
+    }
+
+    /**
+     * Indent a generated member by its braces, string and char literals aside, continued expressions indented twice.
+     *
+     * @param member the unindented member text.
+     * @param indent the indent of the member itself.
+     * @return the indented member, ending in a line break.
+     */
+    static String indent(final String member, final String indent) {
+        final StringBuilder indented = new StringBuilder(member.length() * 2);
+        int depth = 0;
+        for (final String line : member.split("\n")) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            final int lineDepth = depth - (trimmed.startsWith("}") ? 1 : 0)
+                                  + (trimmed.startsWith("+ ") || trimmed.startsWith("? ") ? 2 : 0);
+            indented.append(indent).append(INDENT.repeat(Math.max(0, lineDepth))).append(trimmed).append('\n');
+            depth += braceBalance(trimmed);
+        }
+        return indented.toString();
+    }
+
+    private static int braceBalance(final String line) {
+        int balance = 0;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '{') {
+                balance++;
+            } else if (c == '}') {
+                balance--;
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Text to insert into a source file.
+     */
+    private static final class Insertion {
+        private final int offset;
+
+        private final String text;
+
+        private Insertion(final int offset, final String text) {
+            this.offset = offset;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return "Insertion{" + "offset=" + offset + ", text='" + text + '\'' + '}';
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.intellij.plugins.generateeverything;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the super constructors and toString need to know of the generated class' superclass. Only known once the
+ * superclass is resolved, so the build time generator and the plugin while indexing go without.
+ */
+public final class SuperClassModel {
+    private static final String JAVA_LANG_OBJECT = "java.lang.Object";
+
+    private final String name;
+    private final String qualifiedName;
+    private final String typeText;
+    private final List<String> constructorParameterTypes;
+    private final List<String> constructorParameterNames;
+    private final boolean objectConstructor;
+    private final boolean hasFields;
+
+    /**
+     * @param name the superclass' simple name.
+     * @param qualifiedName the superclass' qualified name.
+     * @param typeText the superclass as the generated class extends it, with any type arguments.
+     * @param constructorParameterTypes the parameter types of the superclass' largest constructor.
+     * @param constructorParameterNames the parameter names of the superclass' largest constructor.
+     * @param objectConstructor whether the superclass has a copy constructor taking one of itself.
+     * @param hasFields whether the superclass declares any fields.
+     */
+    public SuperClassModel(final String name,
+                           final String qualifiedName,
+                           final String typeText,
+                           final List<String> constructorParameterTypes,
+                           final List<String> constructorParameterNames,
+                           final boolean objectConstructor,
+                           final boolean hasFields) {
+        this.name = name;
+        this.qualifiedName = qualifiedName;
+        this.typeText = typeText;
+        this.constructorParameterTypes = Collections.unmodifiableList(new ArrayList<>(constructorParameterTypes));
+        this.constructorParameterNames = Collections.unmodifiableList(new ArrayList<>(constructorParameterNames));
+        this.objectConstructor = objectConstructor;
+        this.hasFields = hasFields;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    public String getTypeText() {
+        return typeText;
+    }
+
+    public List<String> getConstructorParameterTypes() {
+        return constructorParameterTypes;
+    }
+
+    public List<String> getConstructorParameterNames() {
+        return constructorParameterNames;
+    }
+
+    public boolean hasObjectConstructor() {
+        return objectConstructor;
+    }
+
+    public boolean hasFields() {
+        return hasFields;
+    }
+
+    public boolean isObject() {
+        return JAVA_LANG_OBJECT.equals(qualifiedName);
+    }
+
+    @Override
+    public String toString() {
+        return "SuperClassModel{" + "name='" + name + '\'' + ", qualifiedName='" + qualifiedName + '\''
+               + ", typeText='" + typeText + '\'' + ", constructorParameterTypes=" + constructorParameterTypes
+               + ", constructorParameterNames=" + constructorParameterNames + ", objectConstructor="
+               + objectConstructor + ", hasFields=" + hasFields + '}';
+    }
+}
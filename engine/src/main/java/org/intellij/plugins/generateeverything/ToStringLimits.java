@@ -0,0 +1,146 @@
+package org.intellij.plugins.generateeverything;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * How much of each field a bounded toString writes: the characters a field may take, the elements of a collection,
+ * map or array listed after its size, and the fields written as redacted or left out, by patterns matched against the
+ * whole field name. The default limits redact {@link #DEFAULT_REDACTED_NAMES}.
+ */
+public final class ToStringLimits {
+
+    public static final int DEFAULT_MAX_FIELD_CHARS = 200;
+
+    public static final int DEFAULT_MAX_ELEMENTS = 10;
+
+    // Comma separated, the way the settings hold them
+    public static final String DEFAULT_REDACTED_NAMES = "password.*, secret.*";
+
+    public static final ToStringLimits DEFAULT = defaultLimits();
+
+    private final int maxFieldChars;
+    private final int maxElements;
+    private final List<Pattern> redactedNames;
+    private final List<Pattern> skippedNames;
+
+    private ToStringLimits(final Builder builder) {
+        maxFieldChars = builder.maxFieldChars;
+        maxElements = builder.maxElements;
+        redactedNames = Collections.unmodifiableList(new ArrayList<>(builder.redactedNames));
+        skippedNames = Collections.unmodifiableList(new ArrayList<>(builder.skippedNames));
+    }
+
+    public int getMaxFieldChars() {
+        return maxFieldChars;
+    }
+
+    public int getMaxElements() {
+        return maxElements;
+    }
+
+    /**
+     * @return whether the field's value is hidden, only its name written.
+     */
+    public boolean isRedacted(final FieldModel field) {
+        return matches(redactedNames, field.getName());
+    }
+
+    /**
+     * @return whether the field is left out altogether.
+     */
+    public boolean isSkipped(final FieldModel field) {
+        return matches(skippedNames, field.getName());
+    }
+
+    private static boolean matches(final List<Pattern> patterns, final String name) {
+        for (final Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ToStringLimits defaultLimits() {
+        final Builder builder = newBuilder();
+        for (final String namePattern : splitNamePatterns(DEFAULT_REDACTED_NAMES)) {
+            builder.withRedactedName(namePattern);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param list name patterns separated by commas.
+     * @return the patterns, trimmed, the empty ones left out.
+     */
+    public static List<String> splitNamePatterns(final String list) {
+        final List<String> patterns = new ArrayList<>();
+        for (final String pattern : list.split(",")) {
+            if (!pattern.trim().isEmpty()) {
+                patterns.add(pattern.trim());
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * @return a builder with the default limits and no name patterns.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public String toString() {
+        return "ToStringLimits{" + "maxFieldChars=" + maxFieldChars + ", maxElements=" + maxElements
+               + ", redactedNames=" + redactedNames + ", skippedNames=" + skippedNames + '}';
+    }
+
+    public static final class Builder {
+        private int maxFieldChars = DEFAULT_MAX_FIELD_CHARS;
+        private int maxElements = DEFAULT_MAX_ELEMENTS;
+        private final List<Pattern> redactedNames = new ArrayList<>();
+        private final List<Pattern> skippedNames = new ArrayList<>();
+
+        private Builder() { }
+
+        public Builder withMaxFieldChars(final int maxFieldChars) {
+            if (maxFieldChars < 1) {
+                throw new IllegalArgumentException("maxFieldChars must be positive: " + maxFieldChars);
+            }
+            this.maxFieldChars = maxFieldChars;
+            return this;
+        }
+
+        public Builder withMaxElements(final int maxElements) {
+            if (maxElements < 0) {
+                throw new IllegalArgumentException("maxElements must not be negative: " + maxElements);
+            }
+            this.maxElements = maxElements;
+            return this;
+        }
+
+        /**
+         * @param namePattern a regular expression matched against the whole field name.
+         */
+        public Builder withRedactedName(final String namePattern) {
+            this.redactedNames.add(Pattern.compile(namePattern));
+            return this;
+        }
+
+        /**
+         * @param namePattern a regular expression matched against the whole field name.
+         */
+        public Builder withSkippedName(final String namePattern) {
+            this.skippedNames.add(Pattern.compile(namePattern));
+            return this;
+        }
+
+        public ToStringLimits build() {
+            return new ToStringLimits(this);
+        }
+    }
+}
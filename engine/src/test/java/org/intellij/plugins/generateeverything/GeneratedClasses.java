@@ -0,0 +1,65 @@
+package org.intellij.plugins.generateeverything;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compiles generated members into a class of their own so the tests can run them.
+ */
+final class GeneratedClasses {
+
+    private GeneratedClasses() {
+    }
+
+    /**
+     * Compile a public class from its field declarations and the generated members.
+     *
+     * @param name the class name.
+     * @param fields the field declarations, each a full statement.
+     * @param members the generated members.
+     * @return the loaded class.
+     */
+    static Class<?> compile(final String name, final List<String> fields, final List<String> members) throws Exception {
+        return compile(name, "public class " + name + " {\n" + String.join("\n", fields) + "\n"
+                             + String.join("\n", members) + "\n}\n");
+    }
+
+    /**
+     * Compile a single source file and load the class it declares.
+     *
+     * @param name the class name.
+     * @param source the file's content.
+     * @return the loaded class.
+     */
+    static Class<?> compile(final String name, final String source) throws Exception {
+        final Path directory = Files.createTempDirectory("generated");
+        final Path file = directory.resolve(name + ".java");
+        Files.writeString(file, source);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        if (compiler.run(null, null, errors, "-d", directory.toString(), file.toString()) != 0) {
+            throw new IOException("Generated source doesn't compile:\n" + errors.toString(StandardCharsets.UTF_8)
+                                  + "\n" + source);
+        }
+        final ClassLoader loader = new URLClassLoader(new URL[]{directory.toUri().toURL()},
+                                                      GeneratedClasses.class.getClassLoader());
+        return loader.loadClass(name);
+    }
+
+    static Class<?> nested(final Class<?> outer, final String simpleName) throws ClassNotFoundException {
+        return outer.getClassLoader().loadClass(outer.getName() + "$" + simpleName);
+    }
+
+    static int constant(final Class<?> type, final String name) throws ReflectiveOperationException {
+        return type.getField(name).getInt(null);
+    }
+}
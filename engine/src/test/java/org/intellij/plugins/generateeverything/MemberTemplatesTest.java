@@ -0,0 +1,326 @@
+package org.intellij.plugins.generateeverything;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.intellij.plugins.generateeverything.GeneratedClasses.compile;
+import static org.intellij.plugins.generateeverything.GeneratedClasses.constant;
+import static org.intellij.plugins.generateeverything.GeneratedClasses.nested;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the members generated from the templates rather than comparing their text, so only what they do is pinned.
+ */
+class MemberTemplatesTest {
+
+    private static FieldModel field(final String name, final String typeText) {
+        return FieldModel.newBuilder().withName(name).withTypeText(typeText).build();
+    }
+
+    private static FieldModel finalField(final String name, final String typeText) {
+        return FieldModel.newBuilder().withName(name).withTypeText(typeText).withWritable(false).build();
+    }
+
+    private static ClassModel model(final String name, final FieldModel... fields) {
+        final ClassModel.Builder model = ClassModel.newBuilder().withName(name).withQualified(false);
+        for (final FieldModel field : fields) {
+            model.withField(field);
+        }
+        return model.build();
+    }
+
+    @Test
+    void boundedToStringCutsLongValuesAndRedacts() throws Exception {
+        final ClassModel model = model("Bounded",
+                                       field("name", "String"),
+                                       field("items", "java.util.List<String>"),
+                                       field("codes", "int[]"),
+                                       field("count", "int"),
+                                       field("password", "String"),
+                                       field("secretKey", "String"));
+        final ToStringLimits limits = ToStringLimits.newBuilder()
+                                                    .withMaxFieldChars(20)
+                                                    .withMaxElements(2)
+                                                    .withRedactedName("password")
+                                                    .withSkippedName("secret.*")
+                                                    .build();
+        final List<String> members = new ArrayList<>();
+        members.add(MemberTemplates.boundedToStringMethod(model, false, limits));
+        members.addAll(MemberTemplates.boundedToStringHelpers(model, false, limits));
+        final Class<?> bounded = compile("Bounded",
+                                         Arrays.asList("public String name = \"abcdefghijklmnopqrstuvwxyz\";",
+                                                       "public java.util.List<String> items = "
+                                                       + "java.util.Arrays.asList(\"a\", \"b\", \"c\");",
+                                                       "public int[] codes = {1, 2, 3};",
+                                                       "public int count = 4;",
+                                                       "public String password = \"hunter2\";",
+                                                       "public String secretKey = \"key\";"),
+                                         members);
+
+        assertEquals("Bounded{name='abcdefghijklmnopqrst...(26 chars)', items=size=3 [a, b, ...], "
+                     + "codes=size=3 [1, 2, ...], count=4, password=***}",
+                     bounded.getConstructor().newInstance().toString());
+    }
+
+    @Test
+    void settersMarkTheirFieldDirty() throws Exception {
+        final ClassModel model = model("Tracked", field("count", "int"), field("name", "String"));
+        final Class<?> tracked = compile("Tracked",
+                                         Arrays.asList("private int count;", "private String name;"),
+                                         MemberTemplates.generate(model, EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                                    GenerateOption.SETTERS,
+                                                                                    GenerateOption.DIRTY_TRACKING)));
+        final Object instance = tracked.getConstructor().newInstance();
+        final int nameIndex = constant(nested(tracked, MemberTemplates.DIRTY_FIELDS_CLASS), "NAME");
+
+        tracked.getMethod("setName", String.class).invoke(instance, "a");
+
+        assertEquals(1L << nameIndex, tracked.getMethod("dirtyMask").invoke(instance));
+        assertTrue((Boolean) tracked.getMethod("isDirty", int.class).invoke(instance, nameIndex));
+        tracked.getMethod("clearDirty").invoke(instance);
+        assertEquals(0L, tracked.getMethod("dirtyMask").invoke(instance));
+    }
+
+    @Test
+    void everyWriterMarksOnlyTheFieldsThatCanBeSet() throws Exception {
+        final ClassModel model = model("Marked",
+                                       finalField("id", "long"),
+                                       field("count", "int"),
+                                       field("name", "String"));
+        final Class<?> marked = compile("Marked",
+                                        Arrays.asList("public final long id;",
+                                                      "public int count;",
+                                                      "public String name;"),
+                                        MemberTemplates.generate(model, EnumSet.of(GenerateOption.SETTERS,
+                                                                                   GenerateOption.PROPERTY_TABLE,
+                                                                                   GenerateOption.REUSABLE_BUILDER,
+                                                                                   GenerateOption.DIRTY_TRACKING)));
+        final Class<?> dirty = nested(marked, MemberTemplates.DIRTY_FIELDS_CLASS);
+        final Class<?> meta = nested(marked, MemberTemplates.PROPERTY_TABLE_CLASS);
+        // the final id has no bit, so count is the first
+        assertThrows(NoSuchFieldException.class, () -> dirty.getField("ID"));
+        assertEquals(0, constant(dirty, "COUNT"));
+        assertEquals(1, constant(dirty, "NAME"));
+
+        final Object instance = marked.getConstructor(long.class, int.class, String.class).newInstance(1L, 0, null);
+        marked.getMethod("set", int.class, Object.class).invoke(instance, constant(meta, "NAME"), "a");
+        assertEquals(1L << constant(dirty, "NAME"), marked.getMethod("dirtyMask").invoke(instance));
+        marked.getMethod("setInt", int.class, int.class).invoke(instance, constant(meta, "COUNT"), 2);
+        assertEquals(3L, marked.getMethod("dirtyMask").invoke(instance));
+    }
+
+    @Test
+    void buildIntoMarksTheFieldsItFills() throws Exception {
+        final ClassModel model = model("Filled", field("count", "int"), field("name", "String"));
+        final Class<?> filled = compile("Filled",
+                                        Arrays.asList("public int count;", "public String name;"),
+                                        MemberTemplates.generate(model, EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                                   GenerateOption.REUSABLE_BUILDER,
+                                                                                   GenerateOption.DIRTY_TRACKING)));
+        final Class<?> builderClass = nested(filled, MemberTemplates.BUILDER_CLASS);
+        final Object existing = filled.getConstructor().newInstance();
+
+        builderClass.getMethod("buildInto", filled).invoke(builderClass.getConstructor().newInstance(), existing);
+
+        assertEquals(3L, filled.getMethod("dirtyMask").invoke(existing));
+    }
+
+    @Test
+    void writersResetTheViewsTheGettersCache() throws Exception {
+        final ClassModel model = model("Viewed", field("tags", "java.util.List<String>"));
+        final Set<String> viewedFields = Collections.singleton("tags");
+        final List<String> members = new ArrayList<>();
+        members.add(MemberTemplates.propertyTable(model));
+        members.addAll(MemberTemplates.propertyAccessors(model, false, viewedFields));
+        members.add(MemberTemplates.reusableBuilder(model, false, viewedFields));
+        members.add(MemberTemplates.allArgsConstructor(model, "public"));
+        members.add(MemberTemplates.emptyConstructor(model));
+        final Class<?> viewed = compile("Viewed",
+                                        Arrays.asList("public java.util.List<String> tags;",
+                                                      "public transient java.util.List<String> tagsView;"),
+                                        members);
+        final Object instance = viewed.getConstructor().newInstance();
+        final Object staleView = Collections.emptyList();
+
+        viewed.getField("tagsView").set(instance, staleView);
+        viewed.getMethod("set", int.class, Object.class).invoke(instance, 0, Arrays.asList("a"));
+        assertNull(viewed.getField("tagsView").get(instance));
+
+        viewed.getField("tagsView").set(instance, staleView);
+        final Class<?> builderClass = nested(viewed, MemberTemplates.BUILDER_CLASS);
+        builderClass.getMethod("buildInto", viewed).invoke(builderClass.getConstructor().newInstance(), instance);
+        assertNull(viewed.getField("tagsView").get(instance));
+    }
+
+    @Test
+    void dirtyMaskSpillsIntoAnArrayPastSixtyFourFields() throws Exception {
+        final List<FieldModel> fields = new ArrayList<>();
+        final List<String> declarations = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            fields.add(field("value" + i, "int"));
+            declarations.add("private int value" + i + ";");
+        }
+        final Class<?> wide = compile("Wide",
+                                      declarations,
+                                      MemberTemplates.generate(model("Wide", fields.toArray(new FieldModel[0])),
+                                                               EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                          GenerateOption.SETTERS,
+                                                                          GenerateOption.DIRTY_TRACKING)));
+        final Object instance = wide.getConstructor().newInstance();
+
+        wide.getMethod("setValue69", int.class).invoke(instance, 1);
+
+        assertArrayEquals(new long[]{0L, 1L << (69 - 64)}, (long[]) wide.getMethod("dirtyMask").invoke(instance));
+        assertTrue((Boolean) wide.getMethod("isDirty", int.class).invoke(instance, 69));
+        assertFalse((Boolean) wide.getMethod("isDirty", int.class).invoke(instance, 5));
+    }
+
+    @Test
+    void regeneratingReplacesSettersMarkingTheMaskTheOldWay() throws Exception {
+        final List<FieldModel> fields = new ArrayList<>();
+        final List<String> declarations = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            fields.add(field("value" + i, "int"));
+            declarations.add("private int value" + i + ";");
+        }
+        final ClassModel narrow = model("Regenerated", fields.subList(0, 64).toArray(new FieldModel[0]));
+        final ClassModel wide = model("Regenerated", fields.toArray(new FieldModel[0]));
+        final FieldModel first = fields.get(0);
+
+        // setters from before the tracking was enabled, and from before the mask spilled into an array
+        final String untracked = MemberTemplates.setter(first);
+        final String narrowMarked = MemberTemplates.setter(first, MemberTemplates.dirtyMark(narrow, first));
+        final String wideMark = MemberTemplates.dirtyMark(wide, first);
+        assertFalse(MemberTemplates.hasDirtyMark(untracked, MemberTemplates.dirtyMark(narrow, first)));
+        assertTrue(MemberTemplates.hasDirtyMark(narrowMarked, MemberTemplates.dirtyMark(narrow, first)));
+        assertFalse(MemberTemplates.hasDirtyMark(narrowMarked, wideMark));
+        assertFalse(MemberTemplates.hasDirtyMark(narrowMarked, ""));
+        assertTrue(MemberTemplates.hasDirtyMark(untracked, ""));
+
+        final String kept = MemberTemplates.hasDirtyMark(narrowMarked, wideMark)
+                            ? narrowMarked
+                            : MemberTemplates.setter(first, wideMark);
+        final List<String> members = new ArrayList<>(MemberTemplates.generate(wide, EnumSet.of(
+                GenerateOption.EMPTY_CONSTRUCTOR,
+                GenerateOption.DIRTY_TRACKING)));
+        members.add(kept);
+        final Class<?> regenerated = compile("Regenerated", declarations, members);
+        final Object instance = regenerated.getConstructor().newInstance();
+
+        regenerated.getMethod("setValue0", int.class).invoke(instance, 1);
+
+        assertArrayEquals(new long[]{1L, 0L}, (long[]) regenerated.getMethod("dirtyMask").invoke(instance));
+    }
+
+    @Test
+    void propertyTableReadsAndWritesByIndex() throws Exception {
+        final ClassModel model = model("Table",
+                                       field("count", "int"),
+                                       field("name", "String"),
+                                       finalField("id", "long"),
+                                       field("fooBar", "int"),
+                                       field("foo_bar", "int"));
+        final Class<?> table = compile("Table",
+                                       Arrays.asList("private int count;",
+                                                     "private String name;",
+                                                     "private final long id = 7L;",
+                                                     "private int fooBar;",
+                                                     "private int foo_bar;"),
+                                       MemberTemplates.generate(model, EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                                  GenerateOption.PROPERTY_TABLE)));
+        final Class<?> meta = nested(table, MemberTemplates.PROPERTY_TABLE_CLASS);
+        final Object instance = table.getConstructor().newInstance();
+
+        assertEquals(5, meta.getMethod("count").invoke(null));
+        assertEquals(constant(meta, "NAME"), meta.getMethod("indexOf", String.class).invoke(null, "name"));
+        assertEquals("count", meta.getMethod("name", int.class).invoke(null, constant(meta, "COUNT")));
+        assertEquals(-1, meta.getMethod("indexOf", String.class).invoke(null, "missing"));
+        // the colliding constant names are told apart
+        assertEquals("foo_bar", meta.getMethod("name", int.class).invoke(null, constant(meta, "FOO_BAR_2")));
+
+        table.getMethod("set", int.class, Object.class).invoke(instance, constant(meta, "NAME"), "a");
+        table.getMethod("setInt", int.class, int.class).invoke(instance, constant(meta, "COUNT"), 3);
+        assertEquals("a", table.getMethod("get", int.class).invoke(instance, constant(meta, "NAME")));
+        assertEquals(3, table.getMethod("getInt", int.class).invoke(instance, constant(meta, "COUNT")));
+        assertEquals(7L, table.getMethod("getLong", int.class).invoke(instance, constant(meta, "ID")));
+
+        final Method set = table.getMethod("set", int.class, Object.class);
+        final int id = constant(meta, "ID");
+        final Exception finalSet = assertThrows(Exception.class, () -> set.invoke(instance, id, 8L));
+        assertSame(IndexOutOfBoundsException.class, finalSet.getCause().getClass());
+        // the only long is final, so there's no setter that could only ever throw
+        assertThrows(NoSuchMethodException.class, () -> table.getMethod("setLong", int.class, long.class));
+    }
+
+    @Test
+    void reusableBuilderBuildsFillsAndResets() throws Exception {
+        final ClassModel model = model("Built", field("count", "int"), field("name", "String"));
+        final Class<?> built = compile("Built",
+                                       Arrays.asList("public int count;", "public String name;"),
+                                       MemberTemplates.generate(model, EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                                  GenerateOption.REUSABLE_BUILDER)));
+        final Class<?> builderClass = nested(built, MemberTemplates.BUILDER_CLASS);
+        final Object builder = builderClass.getConstructor().newInstance();
+        builderClass.getMethod("withCount", int.class).invoke(builder, 3);
+        builderClass.getMethod("withName", String.class).invoke(builder, "a");
+
+        final Object first = builderClass.getMethod("build").invoke(builder);
+        assertEquals(3, built.getField("count").get(first));
+        assertEquals("a", built.getField("name").get(first));
+
+        final Object existing = built.getConstructor().newInstance();
+        assertSame(existing, builderClass.getMethod("buildInto", built).invoke(builder, existing));
+        assertEquals(3, built.getField("count").get(existing));
+        assertEquals("a", built.getField("name").get(existing));
+
+        builderClass.getMethod("reset").invoke(builder);
+        final Object reset = builderClass.getMethod("build").invoke(builder);
+        assertEquals(0, built.getField("count").get(reset));
+        assertNull(built.getField("name").get(reset));
+    }
+
+    @Test
+    void jsonNumberWriterWritesNonFiniteValuesAsNull() throws Exception {
+        final Class<?> writer = compile("JsonNumbers",
+                                        Collections.emptyList(),
+                                        Arrays.asList(MemberTemplates.jsonNumberWriter("double", "StringBuilder"),
+                                                      MemberTemplates.jsonNumberWriter("Float", "StringBuilder")));
+        final Method writeDouble = writer.getDeclaredMethod(MemberTemplates.JSON_NUMBER_WRITER,
+                                                            StringBuilder.class,
+                                                            double.class);
+        final Method writeFloat = writer.getDeclaredMethod(MemberTemplates.JSON_NUMBER_WRITER,
+                                                           StringBuilder.class,
+                                                           Float.class);
+        writeDouble.setAccessible(true);
+        writeFloat.setAccessible(true);
+
+        final StringBuilder out = new StringBuilder();
+        for (final double value : new double[]{1.5, Double.NaN, Double.POSITIVE_INFINITY}) {
+            writeDouble.invoke(null, out, value);
+            out.append(',');
+        }
+        writeFloat.invoke(null, out, (Object) null);
+        out.append(',');
+        writeFloat.invoke(null, out, 0.25f);
+
+        assertEquals("1.5,null,null,null,0.25", out.toString());
+    }
+
+    @Test
+    void javaStringEscapesBackslashesAndQuotes() {
+        assertEquals("\"a\\\\b\\\"c\"", MemberTemplates.javaString("a\\b\"c"));
+    }
+}
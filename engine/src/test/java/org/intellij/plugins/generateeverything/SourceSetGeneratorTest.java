@@ -0,0 +1,56 @@
+package org.intellij.plugins.generateeverything;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.intellij.plugins.generateeverything.GeneratedClasses.compile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SourceSetGeneratorTest {
+
+    @Test
+    void generatesTheFieldsThePluginOffers() throws Exception {
+        final String source = "import org.intellij.plugins.generateeverything.GenerateEverything;\n"
+                              + "\n"
+                              + "@GenerateEverything\n"
+                              + "public class Account {\n"
+                              + "    private final java.util.logging.Logger logger = "
+                              + "java.util.logging.Logger.getLogger(\"account\");\n"
+                              + "    private java.util.logging.Logger auditLogger;\n"
+                              + "    private final long id;\n"
+                              + "    private String name;\n"
+                              + "    private java.util.List<String> tags;\n"
+                              + "    private transient java.util.List<String> tagsView;\n"
+                              + "}\n";
+
+        final String generated = SourceSetGenerator.generate(Paths.get("Account.java"), source);
+        assertNotNull(generated);
+
+        final Class<?> account = compile("Account", generated);
+        assertNotNull(account.getMethod("getName"));
+        assertNotNull(account.getMethod("getTags"));
+        assertNotNull(account.getConstructor(long.class, String.class, java.util.List.class));
+        // loggers and the view of tags aren't offered
+        assertThrows(NoSuchMethodException.class, () -> account.getMethod("getAuditLogger"));
+        assertThrows(NoSuchMethodException.class, () -> account.getMethod("getTagsView"));
+        // id is final and only a constructor can assign it
+        assertThrows(NoSuchMethodException.class, account::getConstructor);
+        assertFalse(generated.contains("tagsView="));
+    }
+
+    @Test
+    void leavesFilesWithoutTheAnnotationAlone() throws Exception {
+        final String source = "public class Plain {\n    private int count;\n}\n";
+        assertEquals(source, SourceSetGenerator.generate(Paths.get("Plain.java"), source));
+    }
+
+    @Test
+    void indentsByBraces() {
+        assertEquals("    void a() {\n        return;\n    }\n",
+                     SourceSetGenerator.indent("void a() {\nreturn;\n}", "    "));
+    }
+}
@@ -0,0 +1,30 @@
+package org.intellij.plugins.generateeverything;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToStringLimitsTest {
+
+    private static FieldModel field(final String name) {
+        return FieldModel.newBuilder().withName(name).withTypeText("String").build();
+    }
+
+    @Test
+    void defaultLimitsRedactTheDefaultNames() {
+        assertTrue(ToStringLimits.DEFAULT.isRedacted(field("password")));
+        assertTrue(ToStringLimits.DEFAULT.isRedacted(field("secretKey")));
+        assertFalse(ToStringLimits.DEFAULT.isRedacted(field("name")));
+        // a built limit only redacts what it is given
+        assertFalse(ToStringLimits.newBuilder().build().isRedacted(field("password")));
+    }
+
+    @Test
+    void namePatternsAreSplitOnCommasAndTrimmed() {
+        assertEquals(Arrays.asList("password.*", "token"), ToStringLimits.splitNamePatterns(" password.* ,, token "));
+    }
+}
@@ -0,0 +1,174 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.util.PropertiesComponent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How the getter and setter of an array or {@code java.util} collection field hand out and take in the value.
+ * <ul>
+ *     <li>RAW returns and assigns the reference itself, no allocation.</li>
+ *     <li>VIEW returns an unmodifiable view cached in a transient field next to the field, allocated once per value
+ *     set. Arrays have no read only view so they are copied.</li>
+ *     <li>COPY copies on the way in and the way out. The copy stored is mutable, the one handed out is unmodifiable
+ *     on Java 10 and later.</li>
+ *     <li>AUTO views collections and copies arrays.</li>
+ * </ul>
+ * Fields of any other type, and collections declared as an implementation class, are always accessed raw.
+ */
+public enum AccessorStrategy {
+
+    AUTO("Auto"),
+    RAW("Raw"),
+    VIEW("Unmodifiable view"),
+    COPY("Copy");
+
+    public static final String PROPERTY = "GenerateGenerator.accessorStrategy";
+
+    // The suffix of the field caching the view
+    public static final String VIEW_SUFFIX = MemberTemplates.VIEW_SUFFIX;
+
+    private static final String JAVA_UTIL = "java.util.";
+
+    // Collection interface -> the Collections method wrapping it in a view
+    private static final Map<String, String> VIEWS = new HashMap<>();
+
+    // Collection interface -> the unmodifiable copy, %s being the value, on Java 10 and later
+    private static final Map<String, String> COPIES = new HashMap<>();
+
+    // Collection interface -> the mutable copy, %s being the value
+    private static final Map<String, String> MUTABLE_COPIES = new HashMap<>();
+
+    static {
+        addCollection("Collection",
+                      "unmodifiableCollection",
+                      "java.util.List.copyOf(%s)",
+                      "new java.util.ArrayList<>(%s)");
+        addCollection("List", "unmodifiableList", "java.util.List.copyOf(%s)", "new java.util.ArrayList<>(%s)");
+        addCollection("Set", "unmodifiableSet", "java.util.Set.copyOf(%s)", "new java.util.LinkedHashSet<>(%s)");
+        addCollection("SortedSet",
+                      "unmodifiableSortedSet",
+                      "new java.util.TreeSet<>(%s)",
+                      "new java.util.TreeSet<>(%s)");
+        addCollection("NavigableSet",
+                      "unmodifiableNavigableSet",
+                      "new java.util.TreeSet<>(%s)",
+                      "new java.util.TreeSet<>(%s)");
+        addCollection("Map", "unmodifiableMap", "java.util.Map.copyOf(%s)", "new java.util.LinkedHashMap<>(%s)");
+        addCollection("SortedMap",
+                      "unmodifiableSortedMap",
+                      "new java.util.TreeMap<>(%s)",
+                      "new java.util.TreeMap<>(%s)");
+        addCollection("NavigableMap",
+                      "unmodifiableNavigableMap",
+                      "new java.util.TreeMap<>(%s)",
+                      "new java.util.TreeMap<>(%s)");
+    }
+
+    private static void addCollection(final String type,
+                                      final String view,
+                                      final String copy,
+                                      final String mutableCopy) {
+        VIEWS.put(type, view);
+        COPIES.put(type, copy);
+        MUTABLE_COPIES.put(type, mutableCopy);
+    }
+
+    private final String caption;
+
+    AccessorStrategy(final String caption) {
+        this.caption = caption;
+    }
+
+    /**
+     * @return the strategy last chosen in the field chooser.
+     */
+    public static AccessorStrategy getCurrent() {
+        try {
+            return valueOf(PropertiesComponent.getInstance().getValue(PROPERTY, AUTO.name()));
+        } catch (IllegalArgumentException e) {
+            return AUTO;
+        }
+    }
+
+    /**
+     * Work out the strategy that actually applies to a field of the given type.
+     *
+     * @param typeText the field's type, fully qualified unless the IDE is indexing.
+     * @param qualified whether the type text is fully qualified, when it isn't java.util is assumed.
+     * @return RAW, VIEW or COPY.
+     */
+    public AccessorStrategy resolve(final String typeText, final boolean qualified) {
+        if (this == RAW) {
+            return RAW;
+        }
+        if (typeText.endsWith("[]")) {
+            return COPY;
+        }
+        if (collectionType(typeText, qualified) == null) {
+            return RAW;
+        }
+        return this == AUTO ? VIEW : this;
+    }
+
+    /**
+     * Build the expression wrapping a collection in its unmodifiable view.
+     *
+     * @param typeText the collection field's type.
+     * @param qualified whether the type text is fully qualified.
+     * @param value the collection expression.
+     * @return the view expression.
+     */
+    public static String viewExpression(final String typeText, final boolean qualified, final String value) {
+        return "java.util.Collections." + VIEWS.get(collectionType(typeText, qualified)) + "(" + value + ")";
+    }
+
+    /**
+     * Build the expression copying an array or collection, null staying null.
+     *
+     * @param typeText the array or collection field's type.
+     * @param qualified whether the type text is fully qualified.
+     * @param value the value expression, evaluated more than once.
+     * @param unmodifiable whether a collection's copy may be List.copyOf and friends, only when they are available
+     *                     and the copy is handed out. The copy a field stores has to stay mutable, those copies reject
+     *                     null elements and any change the class makes to its own field.
+     * @return the copy expression.
+     */
+    public static String copyExpression(final String typeText,
+                                        final boolean qualified,
+                                        final String value,
+                                        final boolean unmodifiable) {
+        if (typeText.endsWith("[]")) {
+            return value + " == null ? null : java.util.Arrays.copyOf(" + value + ", " + value + ".length)";
+        }
+        final String collectionType = collectionType(typeText, qualified);
+        final String copy = (unmodifiable ? COPIES : MUTABLE_COPIES).get(collectionType);
+        return value + " == null ? null : " + String.format(copy, value);
+    }
+
+    /**
+     * @return the java.util collection interface the type is, without its package, or null if it isn't one.
+     */
+    @Nullable
+    private static String collectionType(final String typeText, final boolean qualified) {
+        final int genericStart = typeText.indexOf('<');
+        String rawType = (genericStart < 0 ? typeText : typeText.substring(0, genericStart)).trim();
+        if (rawType.startsWith(JAVA_UTIL)) {
+            rawType = rawType.substring(JAVA_UTIL.length());
+        } else if (qualified) {
+            return null;
+        }
+        return VIEWS.containsKey(rawType) ? rawType : null;
+    }
+
+    public String getCaption() {
+        return caption;
+    }
+
+    @Override
+    public String toString() {
+        return caption;
+    }
+}
@@ -0,0 +1,480 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.*;
+import com.intellij.psi.javadoc.PsiDocComment;
+import com.intellij.psi.search.LocalSearchScope;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static org.intellij.plugins.generateeverything.GenerateUtils.toLowerSnakeCase;
+import static org.intellij.plugins.generateeverything.GenerateUtils.toUpperSnakeCase;
+
+/**
+ * Packs the selected boolean fields of a class, and optionally its enum fields with few constants, into int or long
+ * words. The fields are removed, accessors named after them mask and shift their bits, and every reference to them
+ * in the file goes through the accessors instead. A boolean takes a bit, an enum the bits its ordinal plus one needs,
+ * zero standing for null.
+ * <p>
+ * Only private, non final, unannotated fields are packed, and only those the rest of the file just reads or assigns
+ * in a statement of its own. The fields are only packed when the words come out smaller than the fields they replace.
+ */
+final class BitfieldPacking {
+
+    private static final Logger LOGGER = Logger.getInstance(BitfieldPacking.class);
+
+    static final String ENUMS_PROPERTY = "GenerateGenerator.packEnums";
+
+    // named packedFlags0, packedFlags1... when the flags take more than one long
+    static final String WORD_FIELD = "packedFlags";
+
+    // an enum with more constants takes more bits than it is worth packing
+    static final int MAX_ENUM_CONSTANTS = 15;
+
+    private static final int INT_BITS = 32;
+
+    private static final int LONG_BITS = 64;
+
+    private final List<PackedField> fields;
+
+    private final Map<PsiField, PackedField> packedFields = new HashMap<>();
+
+    private final boolean longWords;
+
+    private final long[] initialWords;
+
+    // the outermost expressions referencing a packed field, with their text going through the accessors
+    private final Map<PsiExpression, String> rewrites = new LinkedHashMap<>();
+
+    private BitfieldPacking(final List<PackedField> fields, final boolean longWords, final int wordCount) {
+        this.fields = fields;
+        this.longWords = longWords;
+        this.initialWords = new long[wordCount];
+        for (final PackedField field : fields) {
+            packedFields.put(field.field, field);
+            initialWords[field.word] |= field.initialValue << field.shift;
+        }
+    }
+
+    /**
+     * @return whether enum fields are packed along with the booleans.
+     */
+    static boolean isPackingEnums() {
+        return PropertiesComponent.getInstance().getBoolean(ENUMS_PROPERTY, false);
+    }
+
+    /**
+     * Work out which of the selected fields can be packed, their bits and how each reference to them is rewritten.
+     * Needs the references resolved, so the IDE mustn't be indexing.
+     *
+     * @param targetClass the class the fields are declared in.
+     * @param selectedFields the fields selected for generation.
+     * @param packEnums whether enum fields with up to {@link #MAX_ENUM_CONSTANTS} constants are packed too.
+     * @return the packing, or null if no fields can be packed or packing them wouldn't save anything.
+     */
+    @Nullable
+    static BitfieldPacking plan(final PsiClass targetClass,
+                                final List<PsiFieldMember> selectedFields,
+                                final boolean packEnums) {
+        // Fields packed before stay as they are, a second set of words would clash with the first
+        if (targetClass.findFieldByName(WORD_FIELD, false) != null
+            || targetClass.findFieldByName(WORD_FIELD + 0, false) != null) {
+            LOGGER.trace(targetClass.getName() + " already has packed flags - skipping.");
+            return null;
+        }
+
+        final List<PackedField> candidates = new ArrayList<>();
+        final Map<PsiReferenceExpression, PackedField> references = new HashMap<>();
+        int bits = 0;
+        int fieldSize = 0;
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            final PsiField field = fieldMember.getElement();
+            final PackedField candidate = candidate(targetClass, field, packEnums);
+            if (candidate == null) {
+                continue;
+            }
+            final Map<PsiReferenceExpression, PackedField> fieldReferences = references(targetClass, candidate);
+            if (fieldReferences == null) {
+                LOGGER.trace(field.getName() + " is used in a way its accessors can't replace - not packing it.");
+                continue;
+            }
+            candidates.add(candidate);
+            references.putAll(fieldReferences);
+            bits += candidate.width;
+            fieldSize += ObjectLayoutAnalyzer.sizeOf(field);
+        }
+
+        // An int holds them all or they are spread over longs, a field never straddling two of them
+        final boolean longWords = bits > INT_BITS;
+        final int wordBits = longWords ? LONG_BITS : INT_BITS;
+        int word = 0;
+        int shift = 0;
+        for (final PackedField candidate : candidates) {
+            if (shift + candidate.width > wordBits) {
+                word++;
+                shift = 0;
+            }
+            candidate.word = word;
+            candidate.shift = shift;
+            shift += candidate.width;
+        }
+        final int wordCount = word + 1;
+        final int wordSize = wordCount * (longWords ? 8 : 4);
+        if (candidates.isEmpty() || wordSize >= fieldSize) {
+            LOGGER.trace("Packing " + candidates.size() + " fields of " + targetClass.getName() + " takes " + wordSize
+                         + " bytes instead of " + fieldSize + " - skipping.");
+            return null;
+        }
+
+        final BitfieldPacking packing = new BitfieldPacking(candidates, longWords, wordCount);
+        for (final PsiReferenceExpression reference : references.keySet()) {
+            final PsiExpression rewritten = rewrittenExpression(reference);
+            boolean nested = false;
+            for (final PsiReferenceExpression other : references.keySet()) {
+                nested |= other != reference && PsiTreeUtil.isAncestor(rewrittenExpression(other), rewritten, true);
+            }
+            if (!nested) {
+                packing.rewrites.put(rewritten, packing.rewrittenText(rewritten, references));
+            }
+        }
+        return packing;
+    }
+
+    /**
+     * @return the field with its width and initial value, or null if it can't be packed.
+     */
+    @Nullable
+    private static PackedField candidate(final PsiClass targetClass, final PsiField field, final boolean packEnums) {
+        final String name = field.getName();
+        final PsiModifierList modifiers = field.getModifierList();
+        if (!targetClass.getManager().areElementsEquivalent(field.getContainingClass(), targetClass)
+            || modifiers == null
+            || !modifiers.hasModifierProperty(PsiModifier.PRIVATE)
+            || modifiers.hasModifierProperty(PsiModifier.FINAL)
+            || modifiers.hasModifierProperty(PsiModifier.VOLATILE)
+            || modifiers.hasModifierProperty(PsiModifier.TRANSIENT)
+            || modifiers.getAnnotations().length > 0) {
+            return null;
+        }
+
+        final PsiExpression initializer = PsiUtil.skipParenthesizedExprDown(field.getInitializer());
+        if (PsiType.BOOLEAN.equals(field.getType())) {
+            if (initializer == null) {
+                return new PackedField(field, null, 1, 0);
+            }
+            final Object value = JavaPsiFacade.getInstance(field.getProject())
+                                              .getConstantEvaluationHelper()
+                                              .computeConstantExpression(initializer);
+            return value instanceof Boolean ? new PackedField(field, null, 1, (Boolean) value ? 1 : 0) : null;
+        }
+
+        final PsiClass enumClass = PsiUtil.resolveClassInType(field.getType());
+        if (!packEnums || enumClass == null || !enumClass.isEnum() || enumClass.getName() == null) {
+            return null;
+        }
+        final List<PsiEnumConstant> constants = new ArrayList<>();
+        for (final PsiField enumField : enumClass.getFields()) {
+            if (enumField instanceof PsiEnumConstant) {
+                constants.add((PsiEnumConstant) enumField);
+            }
+        }
+        if (constants.isEmpty() || constants.size() > MAX_ENUM_CONSTANTS) {
+            LOGGER.trace(name + " has " + constants.size() + " constants - not packing it.");
+            return null;
+        }
+
+        final int width = Integer.SIZE - Integer.numberOfLeadingZeros(constants.size());
+        if (initializer == null || PsiType.NULL.equals(initializer.getType())) {
+            return new PackedField(field, enumClass, width, 0);
+        }
+        final PsiElement constant = initializer instanceof PsiReferenceExpression
+                                    ? ((PsiReferenceExpression) initializer).resolve()
+                                    : null;
+        final int index = constants.indexOf(constant);
+        return index >= 0 ? new PackedField(field, enumClass, width, index + 1) : null;
+    }
+
+    /**
+     * Find every reference to the field in its file.
+     *
+     * @return the references, or null if one of them reads the value of an assignment, increments the field or
+     * otherwise can't go through the accessors.
+     */
+    @Nullable
+    private static Map<PsiReferenceExpression, PackedField> references(final PsiClass targetClass,
+                                                                      final PackedField packedField) {
+        final Map<PsiReferenceExpression, PackedField> references = new HashMap<>();
+        final LocalSearchScope scope = new LocalSearchScope(targetClass.getContainingFile());
+        for (final PsiReference reference : ReferencesSearch.search(packedField.field, scope).findAll()) {
+            final PsiElement element = reference.getElement();
+            if (PsiTreeUtil.getParentOfType(element, PsiDocComment.class) != null) {
+                continue;
+            }
+            if (!(element instanceof PsiReferenceExpression)) {
+                return null;
+            }
+            final PsiReferenceExpression expression = (PsiReferenceExpression) element;
+            final PsiAssignmentExpression assignment = assignmentTo(expression);
+            if (assignment != null) {
+                if (!(assignment.getParent() instanceof PsiExpressionStatement)
+                    || assignment.getRExpression() == null
+                    || !isSupportedAssignment(assignment, packedField)) {
+                    return null;
+                }
+            } else if (PsiUtil.isAccessedForWriting(expression)) {
+                return null;
+            }
+            references.put(expression, packedField);
+        }
+        return references;
+    }
+
+    /**
+     * A plain assignment always is, compound ones only on a boolean whose qualifier can be evaluated twice.
+     */
+    private static boolean isSupportedAssignment(final PsiAssignmentExpression assignment,
+                                                 final PackedField packedField) {
+        if (assignment.getOperationTokenType() == JavaTokenType.EQ) {
+            return true;
+        }
+        final PsiExpression qualifier = ((PsiReferenceExpression) assignment.getLExpression()).getQualifierExpression();
+        final boolean simpleQualifier = qualifier == null
+                                        || qualifier instanceof PsiThisExpression
+                                        || qualifier instanceof PsiReferenceExpression
+                                           && ((PsiReferenceExpression) qualifier).resolve() instanceof PsiVariable;
+        return packedField.enumClass == null
+               && simpleQualifier
+               && (assignment.getOperationTokenType() == JavaTokenType.OREQ
+                   || assignment.getOperationTokenType() == JavaTokenType.ANDEQ
+                   || assignment.getOperationTokenType() == JavaTokenType.XOREQ);
+    }
+
+    @Nullable
+    private static PsiAssignmentExpression assignmentTo(final PsiReferenceExpression reference) {
+        final PsiElement parent = PsiUtil.skipParenthesizedExprUp(reference.getParent());
+        return parent instanceof PsiAssignmentExpression
+               && PsiUtil.skipParenthesizedExprDown(((PsiAssignmentExpression) parent).getLExpression()) == reference
+               ? (PsiAssignmentExpression) parent
+               : null;
+    }
+
+    /**
+     * @return the expression replaced for a reference: the whole assignment when it assigns the field.
+     */
+    private static PsiExpression rewrittenExpression(final PsiReferenceExpression reference) {
+        final PsiAssignmentExpression assignment = assignmentTo(reference);
+        return assignment != null ? assignment : reference;
+    }
+
+    /**
+     * Build the text of an element with every reference to a packed field in it going through the accessors.
+     */
+    private String rewrittenText(final PsiElement element, final Map<PsiReferenceExpression, PackedField> references) {
+        if (element instanceof PsiAssignmentExpression) {
+            final PsiAssignmentExpression assignment = (PsiAssignmentExpression) element;
+            final PsiExpression assigned = PsiUtil.skipParenthesizedExprDown(assignment.getLExpression());
+            final PackedField packedField = references.get(assigned);
+            if (packedField != null) {
+                final String qualifier = qualifierText((PsiReferenceExpression) assigned, references);
+                String value = rewrittenText(Objects.requireNonNull(assignment.getRExpression()), references);
+                if (assignment.getOperationTokenType() != JavaTokenType.EQ) {
+                    final String operator = assignment.getOperationSign().getText();
+                    value = qualifier + packedField.getterName() + "() "
+                            + operator.substring(0, operator.length() - 1) + " (" + value + ")";
+                }
+                return qualifier + packedField.setterName() + "(" + value + ")";
+            }
+        }
+        if (element instanceof PsiReferenceExpression) {
+            final PackedField packedField = references.get(element);
+            if (packedField != null) {
+                return qualifierText((PsiReferenceExpression) element, references) + packedField.getterName() + "()";
+            }
+        }
+
+        PsiElement child = element.getFirstChild();
+        if (child == null) {
+            return element.getText();
+        }
+        final StringBuilder text = new StringBuilder();
+        for (; child != null; child = child.getNextSibling()) {
+            text.append(rewrittenText(child, references));
+        }
+        return text.toString();
+    }
+
+    private String qualifierText(final PsiReferenceExpression reference,
+                                 final Map<PsiReferenceExpression, PackedField> references) {
+        final PsiExpression qualifier = reference.getQualifierExpression();
+        return qualifier == null ? "" : rewrittenText(qualifier, references) + ".";
+    }
+
+    /**
+     * @return the packed fields, in the order they were selected.
+     */
+    List<PsiField> getFields() {
+        final List<PsiField> psiFields = new ArrayList<>(fields.size());
+        for (final PackedField field : fields) {
+            psiFields.add(field.field);
+        }
+        return psiFields;
+    }
+
+    boolean isPacked(final PsiField field) {
+        return packedFields.containsKey(field);
+    }
+
+    String getterName(final PsiField field) {
+        return packedFields.get(field).getterName();
+    }
+
+    String setterName(final PsiField field) {
+        return packedFields.get(field).setterName();
+    }
+
+    /**
+     * @return the outermost expressions referencing a packed field, with the text replacing each.
+     */
+    Map<PsiExpression, String> getRewrites() {
+        return rewrites;
+    }
+
+    /**
+     * @return the declarations of the words, then of the cached values() of each packed enum.
+     */
+    List<String> fieldDeclarations() {
+        final String wordType = longWords ? "long" : "int";
+        final List<String> declarations = new ArrayList<>();
+        for (int i = 0; i < initialWords.length; i++) {
+            declarations.add("private " + wordType + " " + wordName(i)
+                             + (initialWords[i] != 0 ? " = " + literal(initialWords[i]) : "") + ";");
+        }
+        final Set<String> cached = new HashSet<>();
+        for (final PackedField field : fields) {
+            if (field.enumClass != null && cached.add(field.valuesField())) {
+                final String enumType = field.typeText();
+                declarations.add("private static final " + enumType + "[] " + field.valuesField() + " = "
+                                 + enumType + ".values();");
+            }
+        }
+        return declarations;
+    }
+
+    /**
+     * @return a getter reading the field's bits.
+     */
+    String getter(final PsiField psiField) {
+        final PackedField field = packedFields.get(psiField);
+        final String word = "this." + wordName(field.word);
+        if (field.enumClass == null) {
+            return "public boolean " + field.getterName() + "() {\n"
+                   + "return (" + word + " & " + literal(field.mask()) + ") != 0;\n"
+                   + "}";
+        }
+        final String bits = (field.shift > 0 ? word + " >>> " + field.shift : word)
+                            + " & " + literal((1L << field.width) - 1);
+        return "public " + field.typeText() + " " + field.getterName() + "() {\n"
+               + "int ordinal = " + (longWords ? "(int) (" + bits + ")" : bits) + ";\n"
+               + "return ordinal == 0 ? null : " + field.valuesField() + "[ordinal - 1];\n"
+               + "}";
+    }
+
+    /**
+     * @param after the statements to end the setter with.
+     * @return a setter writing the field's bits, leaving the other fields' bits as they are.
+     */
+    String setter(final PsiField psiField, final String after) {
+        final PackedField field = packedFields.get(psiField);
+        final String name = toLowerSnakeCase(psiField.getName());
+        final String word = "this." + wordName(field.word);
+        final String mask = literal(field.mask());
+        final String assignment;
+        if (field.enumClass == null) {
+            assignment = word + " = " + name + " ? " + word + " | " + mask + " : " + word + " & ~" + mask + ";\n";
+        } else {
+            // masked again so an enum that grew past its bits can't spill into the next field's
+            final String ordinal = (longWords ? "(long) " : "") + "(" + name + " == null ? 0 : " + name
+                                   + ".ordinal() + 1)";
+            assignment = word + " = " + word + " & ~" + mask + " | "
+                         + (field.shift > 0 ? ordinal + " << " + field.shift : ordinal) + " & " + mask + ";\n";
+        }
+        return "public void " + field.setterName() + "(" + field.typeText() + " " + name + ") {\n"
+               + assignment
+               + after
+               + "}";
+    }
+
+    private String wordName(final int word) {
+        return initialWords.length == 1 ? WORD_FIELD : WORD_FIELD + word;
+    }
+
+    private String literal(final long value) {
+        return "0x" + (longWords ? Long.toHexString(value) + "L" : Integer.toHexString((int) value));
+    }
+
+    @Override
+    public String toString() {
+        return "BitfieldPacking{" + "fields=" + fields + ", longWords=" + longWords + ", initialWords="
+               + Arrays.toString(initialWords) + ", rewrites=" + rewrites.values() + '}';
+    }
+
+    private static final class PackedField {
+        private final PsiField field;
+
+        // null for a boolean
+        @Nullable
+        private final PsiClass enumClass;
+
+        private final int width;
+
+        // the bits the field starts with, from its initializer
+        private final long initialValue;
+
+        private int word;
+
+        private int shift;
+
+        private PackedField(final PsiField field,
+                            @Nullable final PsiClass enumClass,
+                            final int width,
+                            final long initialValue) {
+            this.field = field;
+            this.enumClass = enumClass;
+            this.width = width;
+            this.initialValue = initialValue;
+        }
+
+        private long mask() {
+            return ((1L << width) - 1) << shift;
+        }
+
+        private String getterName() {
+            return "get" + toUpperSnakeCase(field.getName());
+        }
+
+        private String setterName() {
+            return "set" + toUpperSnakeCase(field.getName());
+        }
+
+        private String typeText() {
+            return field.getType().getCanonicalText();
+        }
+
+        // one cache per enum, however many fields have its type
+        private String valuesField() {
+            return Naming.toConstantCase(Objects.requireNonNull(enumClass).getName()) + "_VALUES";
+        }
+
+        @Override
+        public String toString() {
+            return "PackedField{" + "field=" + field.getName() + ", width=" + width + ", word=" + word + ", shift="
+                   + shift + '}';
+        }
+    }
+}
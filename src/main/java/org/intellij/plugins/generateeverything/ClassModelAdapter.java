@@ -0,0 +1,151 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.lang.jvm.JvmModifier;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Adapts a class and its selected fields to the engine's {@link ClassModel}, working out up front everything the
+ * templates would otherwise ask the PSI: the field types, how each field is reached from the class, packed flags
+ * through their accessors, and the superclass' largest constructor.
+ */
+final class ClassModelAdapter {
+
+    private ClassModelAdapter() {
+    }
+
+    /**
+     * @param project the project.
+     * @param targetClass the class to generate members for.
+     * @param selectedFields the fields to generate for.
+     * @param dumb whether the IDE is indexing, the types are then taken as written and the superclass left out.
+     * @param packing the fields being packed into bitfields, or null if none are.
+     * @return the model, its fields in the order they were selected.
+     */
+    static ClassModel adapt(final Project project,
+                            final PsiClass targetClass,
+                            final List<PsiFieldMember> selectedFields,
+                            final boolean dumb,
+                            @Nullable final BitfieldPacking packing) {
+        final ClassModel.Builder builder = ClassModel.newBuilder()
+                                                     .withName(targetClass.getName())
+                                                     .withQualified(!dumb);
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            final PsiField field = fieldMember.getElement();
+            if (packing != null && packing.isPacked(field)) {
+                // the field itself is about to go, only its accessors are left
+                builder.withField(FieldModel.newBuilder()
+                                            .withName(field.getName())
+                                            .withTypeText(typeText(fieldMember, dumb))
+                                            .withReadExpression(packing.getterName(field) + "()")
+                                            .withAssignedThroughSetter(true)
+                                            .withSetterName(packing.setterName(field))
+                                            .build());
+            } else {
+                builder.withField(adaptField(project, targetClass, fieldMember, dumb));
+            }
+        }
+        if (!dumb) {
+            builder.withSuperClass(adaptSuperClass(targetClass));
+        }
+        return builder.build();
+    }
+
+    private static FieldModel adaptField(final Project project,
+                                         final PsiClass targetClass,
+                                         final PsiFieldMember fieldMember,
+                                         final boolean dumb) {
+        final PsiField field = fieldMember.getElement();
+        final boolean inherited = !targetClass.getManager().areElementsEquivalent(field.getContainingClass(),
+                                                                                  targetClass);
+        // an inaccessible superclass field goes through its accessors
+        final boolean accessible = !inherited
+                                   || JavaPsiFacade.getInstance(project)
+                                                   .getResolveHelper()
+                                                   .isAccessible(field, targetClass, targetClass);
+
+        return FieldModel.newBuilder()
+                         .withName(field.getName())
+                         .withTypeText(typeText(fieldMember, dumb))
+                         .withInherited(inherited)
+                         .withWritable(!field.hasModifierProperty(PsiModifier.FINAL))
+                         .withReadExpression(accessible ? field.getName() : getterCall(targetClass, field))
+                         .withAssignedThroughSetter(!accessible)
+                         .build();
+    }
+
+    /**
+     * While indexing this is the type as written in the field declaration, otherwise the fully qualified type as seen
+     * from the target class, shortened after insertion.
+     */
+    private static String typeText(final PsiFieldMember fieldMember, final boolean dumb) {
+        final PsiField field = fieldMember.getElement();
+        final PsiTypeElement typeElement = field.getTypeElement();
+        if (dumb && typeElement != null) {
+            return typeElement.getText();
+        }
+        return fieldMember.getSubstitutor().substitute(field.getType()).getCanonicalText();
+    }
+
+    @Nullable
+    private static String getterCall(final PsiClass targetClass, final PsiField field) {
+        final String getterName = "get" + Naming.toUpperSnakeCase(field.getName());
+        for (final PsiMethod getter : targetClass.findMethodsByName(getterName, true)) {
+            if (getter.getParameterList().isEmpty()) {
+                return getterName + "()";
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static SuperClassModel adaptSuperClass(final PsiClass targetClass) {
+        final PsiClass superClass = targetClass.getSuperClass();
+        if (superClass == null || superClass.getName() == null) {
+            return null;
+        }
+
+        // The largest constructor, hopefully taking all the fields, its parameters not marked private
+        PsiMethod largestConstructor = null;
+        for (final PsiMethod constructor : superClass.getConstructors()) {
+            if (largestConstructor == null
+                || constructor.getParameterList().getParametersCount()
+                   >= largestConstructor.getParameterList().getParametersCount()) {
+                largestConstructor = constructor;
+            }
+        }
+        final List<String> parameterTypes = new ArrayList<>();
+        final List<String> parameterNames = new ArrayList<>();
+        if (largestConstructor != null) {
+            for (final PsiParameter parameter : largestConstructor.getParameterList().getParameters()) {
+                if (!parameter.hasModifier(JvmModifier.PRIVATE)) {
+                    parameterTypes.add(parameter.getType().getCanonicalText());
+                    parameterNames.add(parameter.getName());
+                }
+            }
+        }
+
+        final boolean objectConstructor = Arrays.stream(superClass.getConstructors())
+                                                .map(PsiMethod::getParameterList)
+                                                .filter(pl -> pl.getParameters().length > 0)
+                                                .map(pl -> pl.getParameter(0))
+                                                .filter(Objects::nonNull)
+                                                .map(p -> p.getType().getCanonicalText())
+                                                .anyMatch(ct -> ct.equals(superClass.getQualifiedName()));
+
+        return new SuperClassModel(superClass.getName(),
+                                   superClass.getQualifiedName(),
+                                   targetClass.getSuperTypes()[0].getCanonicalText(),
+                                   parameterTypes,
+                                   parameterNames,
+                                   objectConstructor,
+                                   superClass.getFields().length > 0);
+    }
+}
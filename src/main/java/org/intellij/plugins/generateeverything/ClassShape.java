@@ -0,0 +1,291 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.util.io.DataExternalizer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+import static org.intellij.plugins.generateeverything.GenerateUtils.hasLowerCaseChar;
+import static org.intellij.plugins.generateeverything.GenerateUtils.stripJavaLang;
+import static org.intellij.plugins.generateeverything.GenerateUtils.toUpperSnakeCase;
+
+/**
+ * The indexed shape of a single class: its instance fields and the signatures of the members this plugin generates.
+ * Types are kept as the text written in the source, the indexer never resolves anything.
+ */
+public final class ClassShape {
+
+    public static final DataExternalizer<ClassShape> EXTERNALIZER = new DataExternalizer<ClassShape>() {
+        @Override
+        public void save(@NotNull final DataOutput out, final ClassShape value) throws IOException {
+            out.writeInt(value.fields.size());
+            for (final FieldShape field : value.fields) {
+                out.writeUTF(field.name);
+                out.writeUTF(field.type);
+                out.writeBoolean(field.skipped);
+                out.writeBoolean(field.writable);
+            }
+            out.writeInt(value.constructors.size());
+            for (final List<String> constructor : value.constructors) {
+                writeStrings(out, constructor);
+            }
+            writeStrings(out, value.methods);
+            out.writeBoolean(value.toStringNames != null);
+            if (value.toStringNames != null) {
+                writeStrings(out, value.toStringNames);
+            }
+        }
+
+        @Override
+        public ClassShape read(@NotNull final DataInput in) throws IOException {
+            final int fieldCount = in.readInt();
+            final List<FieldShape> fields = new ArrayList<>(fieldCount);
+            for (int i = 0; i < fieldCount; i++) {
+                fields.add(new FieldShape(in.readUTF(), in.readUTF(), in.readBoolean(), in.readBoolean()));
+            }
+            final int constructorCount = in.readInt();
+            final List<List<String>> constructors = new ArrayList<>(constructorCount);
+            for (int i = 0; i < constructorCount; i++) {
+                constructors.add(readStrings(in));
+            }
+            final List<String> methods = readStrings(in);
+            final List<String> toStringNames = in.readBoolean() ? readStrings(in) : null;
+            return new ClassShape(fields, constructors, methods, toStringNames);
+        }
+    };
+
+    private final List<FieldShape> fields;
+
+    private final List<List<String>> constructors;
+
+    private final List<String> methods;
+
+    @Nullable
+    private final List<String> toStringNames;
+
+    public ClassShape(final List<FieldShape> fields,
+                      final List<List<String>> constructors,
+                      final List<String> methods,
+                      @Nullable final List<String> toStringNames) {
+        this.fields = fields;
+        this.constructors = constructors;
+        this.methods = methods;
+        this.toStringNames = toStringNames;
+    }
+
+    /**
+     * Build the signature string stored for a method, eg. {@code getName():String} or {@code setName(String):void}.
+     *
+     * @param name the method name.
+     * @param parameterTypes the parameter type texts.
+     * @param returnType the return type text.
+     * @return the signature string.
+     */
+    public static String signature(final String name, final List<String> parameterTypes, final String returnType) {
+        final StringBuilder signature = new StringBuilder(name).append('(');
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(normalizeType(parameterTypes.get(i)));
+        }
+        return signature.append("):").append(normalizeType(returnType)).toString();
+    }
+
+    static String normalizeType(final String typeText) {
+        return stripJavaLang(typeText.replaceAll("\\s+", ""));
+    }
+
+    /**
+     * Work out what is stale or missing compared to what Generate Everything produced with the options the class was
+     * generated with. Final fields are never expected to have a setter.
+     *
+     * @param options the options the class was last generated with.
+     * @return a description of each problem, empty if the class is up to date.
+     */
+    public List<String> findProblems(final Set<GenerateOption> options) {
+        final FieldExclusionRules exclusionRules = FieldExclusionRules.getInstance();
+        final List<FieldShape> generatedFields = new ArrayList<>();
+        for (final FieldShape field : fields) {
+            if (!field.skipped && hasLowerCaseChar(field.name) && !exclusionRules.isExcludedTypeText(field.type)) {
+                generatedFields.add(field);
+            }
+        }
+
+        final Set<String> methodSet = new HashSet<>(methods);
+        final boolean toString = options.contains(GenerateOption.TO_STRING);
+        final List<String> problems = new ArrayList<>();
+        final List<String> fieldTypes = new ArrayList<>(generatedFields.size());
+
+        for (final FieldShape field : generatedFields) {
+            fieldTypes.add(normalizeType(field.type));
+
+            final String getter = signature("get" + toUpperSnakeCase(field.name),
+                                            Collections.emptyList(),
+                                            field.type);
+            final String setter = signature("set" + toUpperSnakeCase(field.name),
+                                            Collections.singletonList(field.type),
+                                            "void");
+            if (options.contains(GenerateOption.GETTERS) && !methodSet.contains(getter)) {
+                problems.add("missing getter for " + field.name);
+            }
+            if (options.contains(GenerateOption.SETTERS) && field.writable && !methodSet.contains(setter)) {
+                problems.add("missing setter for " + field.name);
+            }
+            if (toString && toStringNames != null && !toStringNames.contains(field.name)) {
+                problems.add("toString misses " + field.name);
+            }
+        }
+
+        if (generatedFields.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // the interning factory and the reusable builder go through the all args constructor too
+        final boolean allArgs = options.contains(GenerateOption.ALL_ARGS_CONSTRUCTOR)
+                                || options.contains(GenerateOption.INTERNING_FACTORY)
+                                || options.contains(GenerateOption.REUSABLE_BUILDER);
+        boolean hasAllArgs = false;
+        for (final List<String> constructor : constructors) {
+            final List<String> normalized = new ArrayList<>(constructor.size());
+            for (final String type : constructor) {
+                normalized.add(normalizeType(type));
+            }
+            hasAllArgs |= normalized.equals(fieldTypes);
+        }
+        if (allArgs && !hasAllArgs) {
+            problems.add("no all args constructor");
+        }
+        if (toString && toStringNames == null) {
+            problems.add("no toString");
+        }
+
+        return problems;
+    }
+
+    public List<FieldShape> getFields() {
+        return fields;
+    }
+
+    public List<List<String>> getConstructors() {
+        return constructors;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    @Nullable
+    public List<String> getToStringNames() {
+        return toStringNames;
+    }
+
+    private static void writeStrings(final DataOutput out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(final DataInput in) throws IOException {
+        final int size = in.readInt();
+        final List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ClassShape that = (ClassShape) o;
+        return fields.equals(that.fields)
+               && constructors.equals(that.constructors)
+               && methods.equals(that.methods)
+               && Objects.equals(toStringNames, that.toStringNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fields, constructors, methods, toStringNames);
+    }
+
+    @Override
+    public String toString() {
+        return "ClassShape{" + "fields=" + fields + ", constructors=" + constructors + ", methods=" + methods
+               + ", toStringNames=" + toStringNames + '}';
+    }
+
+    /**
+     * A non-static field as written in the source.
+     */
+    public static final class FieldShape {
+        private final String name;
+
+        private final String type;
+
+        // final fields that are assigned in their declaration and the state kept for generated members are never
+        // generated for
+        private final boolean skipped;
+
+        // whether the field isn't final, final fields never get a setter
+        private final boolean writable;
+
+        public FieldShape(final String name, final String type, final boolean skipped, final boolean writable) {
+            this.name = name;
+            this.type = type;
+            this.skipped = skipped;
+            this.writable = writable;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public boolean isWritable() {
+            return writable;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final FieldShape that = (FieldShape) o;
+            return skipped == that.skipped && writable == that.writable && name.equals(that.name)
+                   && type.equals(that.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, type, skipped, writable);
+        }
+
+        @Override
+        public String toString() {
+            return "FieldShape{" + "name='" + name + '\'' + ", type='" + type + '\'' + ", skipped=" + skipped
+                   + ", writable=" + writable + '}';
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A field chooser for classes with more fields than {@link com.intellij.ide.util.MemberChooser} handles comfortably.
+ * <p>
+ * The list only ever renders the visible rows, every row sized like the longest so nothing is measured up front.
+ * Each field's lowercase name and type are indexed once when the dialog opens, so type-ahead filtering is a scan over
+ * plain strings, narrowed to the previous matches while the filter only grows. The fields are also grouped by type
+ * and by annotation, to select or deselect a whole group at once.
+ */
+public class FieldChooserDialog extends DialogWrapper {
+
+    private final Row[] rows;
+
+    private final BitSet checked;
+
+    private final Map<String, BitSet> groups = new TreeMap<>();
+
+    private final JComponent[] optionControls;
+
+    private final FilteredModel model = new FilteredModel();
+
+    private final JBList<Row> list = new JBList<>(model);
+
+    private final SearchTextField filterField = new SearchTextField(false);
+
+    private final ComboBox<String> groupComboBox = new ComboBox<>();
+
+    private String filter = "";
+
+    public FieldChooserDialog(final Project project,
+                              final List<PsiFieldMember> members,
+                              final JComponent[] optionControls) {
+        super(project, true);
+        this.optionControls = optionControls;
+
+        rows = new Row[members.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Row(members.get(i));
+            addToGroup("Type " + rows[i].type, i);
+            for (final String annotation : rows[i].annotations) {
+                addToGroup("@" + annotation, i);
+            }
+        }
+        checked = new BitSet(rows.length);
+        checked.set(0, rows.length);
+        model.showAll();
+
+        setTitle("Select Fields and Options for the Builder");
+        init();
+    }
+
+    private void addToGroup(final String group, final int row) {
+        groups.computeIfAbsent(group, key -> new BitSet(rows.length)).set(row);
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        list.setCellRenderer(new RowRenderer());
+        // sizing every row to the longest one stops the list measuring them all
+        list.setPrototypeCellValue(longestRow());
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(final MouseEvent event) {
+                final int index = list.locationToIndex(event.getPoint());
+                if (index >= 0 && list.getCellBounds(index, index).contains(event.getPoint())) {
+                    toggle(new int[]{index});
+                }
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0), "toggleChecked");
+        list.getActionMap().put("toggleChecked", new AbstractAction() {
+            @Override
+            public void actionPerformed(final ActionEvent event) {
+                toggle(list.getSelectedIndices());
+            }
+        });
+
+        filterField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull final DocumentEvent event) {
+                applyFilter(filterField.getText());
+            }
+        });
+
+        for (final String group : groups.keySet()) {
+            groupComboBox.addItem(group);
+        }
+        final JButton selectGroup = new JButton("Select");
+        selectGroup.addActionListener(event -> checkGroup(true));
+        final JButton deselectGroup = new JButton("Deselect");
+        deselectGroup.addActionListener(event -> checkGroup(false));
+        final JButton selectShown = new JButton("Select Shown");
+        selectShown.addActionListener(event -> checkShown(true));
+        final JButton deselectShown = new JButton("Deselect Shown");
+        deselectShown.addActionListener(event -> checkShown(false));
+
+        final JPanel bulkPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        bulkPanel.add(new JLabel("Fields of:"));
+        bulkPanel.add(groupComboBox);
+        bulkPanel.add(selectGroup);
+        bulkPanel.add(deselectGroup);
+        bulkPanel.add(selectShown);
+        bulkPanel.add(deselectShown);
+        groupComboBox.setEnabled(!groups.isEmpty());
+        selectGroup.setEnabled(!groups.isEmpty());
+        deselectGroup.setEnabled(!groups.isEmpty());
+
+        final JPanel northPanel = new JPanel(new BorderLayout(0, 4));
+        northPanel.add(filterField, BorderLayout.NORTH);
+        northPanel.add(bulkPanel, BorderLayout.SOUTH);
+
+        final JPanel optionsPanel = new JPanel(new GridLayout(0, 2));
+        for (final JComponent optionControl : optionControls) {
+            optionsPanel.add(optionControl);
+        }
+
+        final JPanel panel = new JPanel(new BorderLayout(0, 4));
+        panel.add(northPanel, BorderLayout.NORTH);
+        final JBScrollPane scrollPane = new JBScrollPane(list);
+        scrollPane.setPreferredSize(JBUI.size(600, 400));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(optionsPanel, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    @Nullable
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return filterField;
+    }
+
+    /**
+     * @return the checked fields in their original order.
+     */
+    public List<PsiFieldMember> getSelectedElements() {
+        final List<PsiFieldMember> selected = new ArrayList<>(checked.cardinality());
+        for (int i = checked.nextSetBit(0); i >= 0; i = checked.nextSetBit(i + 1)) {
+            selected.add(rows[i].member);
+        }
+        return selected;
+    }
+
+    @Nullable
+    private Row longestRow() {
+        Row longest = null;
+        for (final Row row : rows) {
+            if (longest == null || row.toString().length() > longest.toString().length()) {
+                longest = row;
+            }
+        }
+        return longest;
+    }
+
+    private void applyFilter(final String text) {
+        final String newFilter = text.trim().toLowerCase(Locale.ROOT);
+        if (newFilter.isEmpty()) {
+            model.showAll();
+        } else if (newFilter.startsWith(filter) && !filter.isEmpty()) {
+            // a longer filter only ever matches a subset of what is shown
+            model.narrow(newFilter);
+        } else {
+            model.showAll();
+            model.narrow(newFilter);
+        }
+        filter = newFilter;
+        list.clearSelection();
+    }
+
+    private void toggle(final int[] shownIndices) {
+        for (final int shownIndex : shownIndices) {
+            checked.flip(model.rowAt(shownIndex));
+        }
+        list.repaint();
+    }
+
+    private void checkGroup(final boolean check) {
+        final BitSet group = groups.get((String) groupComboBox.getSelectedItem());
+        if (group == null) {
+            return;
+        }
+        if (check) {
+            checked.or(group);
+        } else {
+            checked.andNot(group);
+        }
+        list.repaint();
+    }
+
+    private void checkShown(final boolean check) {
+        for (int i = 0; i < model.getSize(); i++) {
+            checked.set(model.rowAt(i), check);
+        }
+        list.repaint();
+    }
+
+    /**
+     * A field with everything the list needs worked out once.
+     */
+    private static final class Row {
+        private final PsiFieldMember member;
+
+        private final String name;
+
+        private final String type;
+
+        // lowercase name and type, what the filter matches against
+        private final String key;
+
+        private final List<String> annotations = new ArrayList<>(0);
+
+        private Row(final PsiFieldMember member) {
+            final PsiField field = member.getElement();
+            this.member = member;
+            this.name = field.getName();
+            this.type = field.getType().getPresentableText();
+            this.key = (name + ' ' + type).toLowerCase(Locale.ROOT);
+
+            // the annotation names as written, nothing is resolved
+            final PsiModifierList modifierList = field.getModifierList();
+            if (modifierList != null) {
+                for (final PsiAnnotation annotation : modifierList.getAnnotations()) {
+                    final PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                    if (reference != null && reference.getReferenceName() != null) {
+                        annotations.add(reference.getReferenceName());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " : " + type;
+        }
+    }
+
+    /**
+     * The rows matching the filter, as indexes into all the rows.
+     */
+    private final class FilteredModel extends AbstractListModel<Row> {
+        private int[] shown = new int[0];
+
+        private int size;
+
+        private void showAll() {
+            shown = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                shown[i] = i;
+            }
+            size = rows.length;
+            fireContentsChanged(this, 0, Math.max(0, size - 1));
+        }
+
+        private void narrow(final String newFilter) {
+            final int previousSize = size;
+            int matches = 0;
+            for (int i = 0; i < size; i++) {
+                if (rows[shown[i]].key.contains(newFilter)) {
+                    shown[matches++] = shown[i];
+                }
+            }
+            size = matches;
+            if (size < previousSize) {
+                fireIntervalRemoved(this, size, previousSize - 1);
+            }
+            fireContentsChanged(this, 0, Math.max(0, size - 1));
+        }
+
+        private int rowAt(final int index) {
+            return shown[index];
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public Row getElementAt(final int index) {
+            return rows[shown[index]];
+        }
+    }
+
+    /**
+     * Renders every row with the same check box, so a row costs nothing until it is scrolled into view.
+     */
+    private final class RowRenderer implements ListCellRenderer<Row> {
+        private final JBCheckBox checkBox = new JBCheckBox();
+
+        @Override
+        public Component getListCellRendererComponent(final JList<? extends Row> rowList,
+                                                      final Row row,
+                                                      final int index,
+                                                      final boolean isSelected,
+                                                      final boolean cellHasFocus) {
+            checkBox.setText(row.toString());
+            checkBox.setSelected(index >= 0 && index < model.getSize() && checked.get(model.rowAt(index)));
+            checkBox.setOpaque(true);
+            checkBox.setBackground(isSelected ? rowList.getSelectionBackground() : rowList.getBackground());
+            checkBox.setForeground(isSelected ? rowList.getSelectionForeground() : rowList.getForeground());
+            return checkBox;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rules deciding which fields the collector leaves out: field types, annotations, name patterns and modifiers.
+ * The rules are stored as comma separated lists, compiled once into sets and a single pattern whenever they change.
+ * A type or annotation is only resolved when its simple name, read without resolving, is one of the excluded ones.
+ */
+public final class FieldExclusionRules {
+
+    private static final Logger LOGGER = Logger.getInstance(FieldExclusionRules.class);
+
+    public static final String TYPES_PROPERTY = "GenerateGenerator.exclude.types";
+    public static final String ANNOTATIONS_PROPERTY = "GenerateGenerator.exclude.annotations";
+    public static final String NAMES_PROPERTY = "GenerateGenerator.exclude.names";
+    public static final String MODIFIERS_PROPERTY = "GenerateGenerator.exclude.modifiers";
+
+    // The logging types that have always been skipped
+    public static final String DEFAULT_TYPES = MemberTemplates.LOGGER_TYPES;
+    public static final String DEFAULT_ANNOTATIONS = "";
+    public static final String DEFAULT_NAMES = "";
+    public static final String DEFAULT_MODIFIERS = "";
+
+    private static volatile FieldExclusionRules current;
+
+    private final String source;
+
+    private final Set<String> types;
+
+    private final Set<String> typeSimpleNames;
+
+    private final Set<String> annotations;
+
+    private final Set<String> annotationSimpleNames;
+
+    @Nullable
+    private final Pattern names;
+
+    private final String[] modifiers;
+
+    private FieldExclusionRules(final String source,
+                                final String types,
+                                final String annotations,
+                                final String names,
+                                final String modifiers) {
+        this.source = source;
+        this.types = split(types);
+        this.typeSimpleNames = simpleNames(this.types);
+        this.annotations = split(annotations);
+        this.annotationSimpleNames = simpleNames(this.annotations);
+        this.names = compileNames(split(names));
+
+        final List<String> validModifiers = new ArrayList<>();
+        for (final String modifier : split(modifiers)) {
+            if (Arrays.asList(PsiModifier.MODIFIERS).contains(modifier)) {
+                validModifiers.add(modifier);
+            } else {
+                LOGGER.warn("Ignoring unknown modifier in the field exclusion rules : " + modifier);
+            }
+        }
+        this.modifiers = validModifiers.toArray(new String[0]);
+    }
+
+    /**
+     * Get the rules as currently configured, only recompiling them if the settings changed since the last call.
+     *
+     * @return the compiled rules.
+     */
+    public static FieldExclusionRules getInstance() {
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        final String types = propertiesComponent.getValue(TYPES_PROPERTY, DEFAULT_TYPES);
+        final String annotations = propertiesComponent.getValue(ANNOTATIONS_PROPERTY, DEFAULT_ANNOTATIONS);
+        final String names = propertiesComponent.getValue(NAMES_PROPERTY, DEFAULT_NAMES);
+        final String modifiers = propertiesComponent.getValue(MODIFIERS_PROPERTY, DEFAULT_MODIFIERS);
+        final String source = types + '\n' + annotations + '\n' + names + '\n' + modifiers;
+
+        FieldExclusionRules rules = current;
+        if (rules == null || !rules.source.equals(source)) {
+            rules = new FieldExclusionRules(source, types, annotations, names, modifiers);
+            current = rules;
+        }
+        return rules;
+    }
+
+    /**
+     * Should the field be left out of generation?
+     *
+     * @param field the field to test.
+     * @return true if any rule excludes it.
+     */
+    public boolean isExcluded(@NotNull final PsiField field) {
+        if (isExcludedByDeclaration(field)) {
+            return true;
+        }
+
+        if (!annotations.isEmpty()) {
+            final PsiModifierList modifierList = field.getModifierList();
+            if (modifierList != null) {
+                for (final PsiAnnotation annotation : modifierList.getAnnotations()) {
+                    final PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                    if (reference == null || !annotationSimpleNames.contains(reference.getReferenceName())) {
+                        continue;
+                    }
+                    final String qualifiedName = annotation.getQualifiedName();
+                    if (qualifiedName != null && annotations.contains(qualifiedName)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        // only class types can be excluded, and only one named like an excluded type is worth resolving
+        final PsiType type = field.getType();
+        if (types.isEmpty() || !(type instanceof PsiClassType)
+            || !typeSimpleNames.contains(((PsiClassType) type).getClassName())) {
+            return false;
+        }
+        final PsiClass psiClass = ((PsiClassType) type).resolve();
+        return psiClass != null && types.contains(psiClass.getQualifiedName());
+    }
+
+    /**
+     * Should the field be left out of generation, going only on the source text of its type and annotations? Used
+     * while the IDE is indexing and nothing can be resolved.
+     *
+     * @param field the field to test.
+     * @return true if any rule excludes it.
+     */
+    public boolean isExcludedSyntactically(@NotNull final PsiField field) {
+        if (isExcludedByDeclaration(field)) {
+            return true;
+        }
+
+        final PsiModifierList modifierList = field.getModifierList();
+        if (!annotations.isEmpty() && modifierList != null) {
+            for (final PsiAnnotation annotation : modifierList.getAnnotations()) {
+                final PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                if (reference != null && isExcludedAnnotationText(reference.getText())) {
+                    return true;
+                }
+            }
+        }
+
+        final PsiTypeElement typeElement = field.getTypeElement();
+        return typeElement != null && isExcludedTypeText(typeElement.getText());
+    }
+
+    private boolean isExcludedByDeclaration(final PsiField field) {
+        for (final String modifier : modifiers) {
+            if (field.hasModifierProperty(modifier)) {
+                return true;
+            }
+        }
+
+        return names != null && names.matcher(field.getName()).matches();
+    }
+
+    /**
+     * Is a type, as written in the source and possibly unqualified, one of the excluded types? Used where nothing can
+     * be resolved.
+     *
+     * @param typeText the type text.
+     * @return true if it matches an excluded type or the simple name of one.
+     */
+    public boolean isExcludedTypeText(@NotNull final String typeText) {
+        final int genericStart = typeText.indexOf('<');
+        final String rawText = (genericStart < 0 ? typeText : typeText.substring(0, genericStart)).trim();
+        return types.contains(rawText) || typeSimpleNames.contains(rawText);
+    }
+
+    /**
+     * Is an annotation, as written in the source and possibly unqualified, one of the excluded annotations?
+     *
+     * @param annotationText the annotation name without the at sign.
+     * @return true if it matches an excluded annotation or the simple name of one.
+     */
+    public boolean isExcludedAnnotationText(@NotNull final String annotationText) {
+        return annotations.contains(annotationText) || annotationSimpleNames.contains(annotationText);
+    }
+
+    /**
+     * @return a value that changes whenever the rules do, for use in cache keys.
+     */
+    public int getGeneration() {
+        return source.hashCode();
+    }
+
+    private static Set<String> split(final String list) {
+        final Set<String> values = new LinkedHashSet<>();
+        for (final String value : list.split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+
+    private static Set<String> simpleNames(final Set<String> qualifiedNames) {
+        final Set<String> simpleNames = new HashSet<>();
+        for (final String qualifiedName : qualifiedNames) {
+            simpleNames.add(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+        }
+        return simpleNames;
+    }
+
+    @Nullable
+    private static Pattern compileNames(final Set<String> namePatterns) {
+        final StringJoiner combined = new StringJoiner("|");
+        for (final String namePattern : namePatterns) {
+            try {
+                Pattern.compile(namePattern);
+                combined.add("(?:" + namePattern + ")");
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Ignoring invalid name pattern in the field exclusion rules : " + namePattern);
+            }
+        }
+        return combined.length() == 0 ? null : Pattern.compile(combined.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "FieldExclusionRules{" + "types=" + types + ", annotations=" + annotations + ", names=" + names
+               + ", modifiers=" + Arrays.toString(modifiers) + '}';
+    }
+}
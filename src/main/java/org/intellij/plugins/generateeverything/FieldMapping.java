@@ -0,0 +1,261 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.psi.*;
+import com.intellij.psi.util.TypeConversionUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.intellij.plugins.generateeverything.GenerateUtils.stripJavaLang;
+import static org.intellij.plugins.generateeverything.GenerateUtils.toUpperSnakeCase;
+
+/**
+ * Matches the fields of two classes, both collected the way Generate Everything collects them, by name and assignable
+ * type, and builds a SourceToTargetMapper class from the matches: a static map(Source) creating the target and an
+ * into(Source, Target) copying onto an existing one, a straight line of copies without reflection.
+ * <p>
+ * The mapper goes in the source class' package, so a field is read through its getter or directly and written through
+ * its setter or directly, whichever that package can reach. Fields matched on one side only, or whose types don't fit,
+ * are reported instead.
+ */
+final class FieldMapping {
+
+    private static final String MAPPER_SUFFIX = "Mapper";
+
+    private final PsiClass sourceClass;
+
+    private final PsiClass targetClass;
+
+    // the copy statements, by field name
+    private final Map<String, String> copies = new LinkedHashMap<>();
+
+    private final List<String> unmatched = new ArrayList<>();
+
+    private final boolean canCreateTarget;
+
+    private FieldMapping(final PsiClass sourceClass, final PsiClass targetClass) {
+        this.sourceClass = sourceClass;
+        this.targetClass = targetClass;
+        this.canCreateTarget = !targetClass.hasModifierProperty(PsiModifier.ABSTRACT)
+                               && (targetClass.getContainingClass() == null
+                                   || targetClass.hasModifierProperty(PsiModifier.STATIC))
+                               && hasReachableNoArgsConstructor(targetClass);
+    }
+
+    /**
+     * Match the fields of two classes. Needs the types resolved, so the IDE mustn't be indexing.
+     *
+     * @param sourceClass the class to copy from.
+     * @param targetClass the class to copy to.
+     * @return the matched fields with the copies to make and the fields that didn't match.
+     */
+    static FieldMapping match(final PsiClass sourceClass, final PsiClass targetClass) {
+        final FieldMapping mapping = new FieldMapping(sourceClass, targetClass);
+        final List<PsiFieldMember> sourceFields = collectFields(sourceClass);
+        final List<PsiFieldMember> targetFields = collectFields(targetClass);
+
+        final Map<String, PsiFieldMember> sourceByName = new LinkedHashMap<>();
+        for (final PsiFieldMember sourceField : sourceFields) {
+            sourceByName.put(sourceField.getElement().getName(), sourceField);
+        }
+        for (final PsiFieldMember targetField : targetFields) {
+            final PsiFieldMember sourceField = sourceByName.remove(targetField.getElement().getName());
+            if (sourceField == null) {
+                mapping.unmatched.add(targetField.getElement().getName() + ": " + sourceClass.getName()
+                                      + " has no field of that name");
+                continue;
+            }
+            mapping.matchField(sourceField, targetField);
+        }
+        for (final String name : sourceByName.keySet()) {
+            mapping.unmatched.add(name + ": " + targetClass.getName() + " has no field of that name");
+        }
+        return mapping;
+    }
+
+    /**
+     * The fields Generate Everything would offer for the class, none when the class isn't one it generates for.
+     */
+    private static List<PsiFieldMember> collectFields(final PsiClass psiClass) {
+        final List<PsiFieldMember> fields = GenerateOptionCollector.collectFields(psiClass);
+        return fields != null ? fields : new ArrayList<>();
+    }
+
+    private void matchField(final PsiFieldMember sourceField, final PsiFieldMember targetField) {
+        final String name = targetField.getElement().getName();
+        final PsiType sourceType = sourceField.getSubstitutor().substitute(sourceField.getElement().getType());
+
+        final String read = readExpression(sourceField.getElement(), sourceType);
+        if (read == null) {
+            unmatched.add(name + ": " + sourceClass.getName() + " has no getter or field the mapper can read");
+            return;
+        }
+
+        // a setter taking the source type wins over the field itself
+        final PsiMethod setter = findSetter(name, sourceType);
+        if (setter != null) {
+            copies.put(name, "target." + setter.getName() + "(" + read + ");");
+            return;
+        }
+        final PsiField field = targetField.getElement();
+        final PsiType targetType = targetField.getSubstitutor().substitute(field.getType());
+        if (!targetType.isAssignableFrom(sourceType)) {
+            unmatched.add(name + ": " + stripJavaLang(sourceType.getPresentableText()) + " can't be assigned to "
+                          + stripJavaLang(targetType.getPresentableText()));
+        } else if (field.hasModifierProperty(PsiModifier.FINAL) || !isReachable(field)) {
+            unmatched.add(name + ": " + targetClass.getName() + " has no setter or field the mapper can write");
+        } else {
+            copies.put(name, "target." + name + " = " + read + ";");
+        }
+    }
+
+    /**
+     * A getter is only used when it returns the field's type, one returning eg. an Optional of it or a copy of
+     * another type would be copied as the wrong value.
+     *
+     * @param field the source field.
+     * @param fieldType the field's type as seen from the source class.
+     * @return the expression reading the field from the source, or null if the mapper can't read it.
+     */
+    @Nullable
+    private String readExpression(final PsiField field, final PsiType fieldType) {
+        final String capitalized = toUpperSnakeCase(field.getName());
+        final List<String> getterNames = new ArrayList<>();
+        getterNames.add("get" + capitalized);
+        if (PsiType.BOOLEAN.equals(field.getType())) {
+            getterNames.add("is" + capitalized);
+        }
+        for (final String getterName : getterNames) {
+            for (final PsiMethod getter : sourceClass.findMethodsByName(getterName, true)) {
+                if (getter.getParameterList().isEmpty() && !getter.hasModifierProperty(PsiModifier.STATIC)
+                    && isReachable(getter) && returnsType(getter, fieldType)) {
+                    return "source." + getterName + "()";
+                }
+            }
+        }
+        return isReachable(field) ? "source." + field.getName() : null;
+    }
+
+    /**
+     * Does the getter, as seen from the source class, return a value of the type?
+     */
+    private boolean returnsType(final PsiMethod getter, final PsiType type) {
+        final PsiType returnType = getter.getReturnType();
+        final PsiClass getterClass = getter.getContainingClass();
+        if (returnType == null || getterClass == null) {
+            return false;
+        }
+        final PsiSubstitutor substitutor = TypeConversionUtil.getSuperClassSubstitutor(getterClass,
+                                                                                      sourceClass,
+                                                                                      PsiSubstitutor.EMPTY);
+        return type.isAssignableFrom(substitutor.substitute(returnType));
+    }
+
+    @Nullable
+    private PsiMethod findSetter(final String name, final PsiType valueType) {
+        for (final PsiMethod setter : targetClass.findMethodsByName("set" + toUpperSnakeCase(name), true)) {
+            final PsiParameter[] parameters = setter.getParameterList().getParameters();
+            if (parameters.length == 1
+                && !setter.hasModifierProperty(PsiModifier.STATIC)
+                && isReachable(setter)
+                && parameters[0].getType().isAssignableFrom(valueType)) {
+                return setter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Can the mapper, in the source class' package, reach the member?
+     */
+    private boolean isReachable(final PsiMember member) {
+        if (member.hasModifierProperty(PsiModifier.PUBLIC)) {
+            return true;
+        }
+        return !member.hasModifierProperty(PsiModifier.PRIVATE)
+               && JavaPsiFacade.getInstance(member.getProject()).arePackagesTheSame(member, sourceClass);
+    }
+
+    private boolean hasReachableNoArgsConstructor(final PsiClass psiClass) {
+        final PsiMethod[] constructors = psiClass.getConstructors();
+        if (constructors.length == 0) {
+            return psiClass.hasModifierProperty(PsiModifier.PUBLIC)
+                   || JavaPsiFacade.getInstance(psiClass.getProject()).arePackagesTheSame(psiClass, sourceClass);
+        }
+        for (final PsiMethod constructor : constructors) {
+            if (constructor.getParameterList().isEmpty() && isReachable(constructor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasCopies() {
+        return !copies.isEmpty();
+    }
+
+    String getMapperName() {
+        return sourceClass.getName() + "To" + targetClass.getName() + MAPPER_SUFFIX;
+    }
+
+    /**
+     * @return the mapper class, its types fully qualified to be shortened once it is in place.
+     */
+    String mapperText() {
+        final String source = sourceClass.getQualifiedName();
+        final String target = targetClass.getQualifiedName();
+        final StringBuilder text = new StringBuilder();
+        text.append("public final class ").append(getMapperName()).append(" {\n")
+            .append("private ").append(getMapperName()).append("() {\n")
+            .append("}\n");
+        if (canCreateTarget) {
+            text.append("public static ").append(target).append(" map(").append(source).append(" source) {\n")
+                .append("if (source == null) {\n")
+                .append("return null;\n")
+                .append("}\n")
+                .append("return into(source, new ").append(target).append("());\n")
+                .append("}\n");
+        }
+        text.append("public static ").append(target).append(" into(").append(source).append(" source, ")
+            .append(target).append(" target) {\n");
+        for (final String copy : copies.values()) {
+            text.append(copy).append("\n");
+        }
+        text.append("return target;\n")
+            .append("}\n")
+            .append("}");
+        return text.toString();
+    }
+
+    /**
+     * @return the fields copied and the ones that couldn't be, for the user to check before generating.
+     */
+    String toReport() {
+        final StringBuilder report = new StringBuilder();
+        report.append(getMapperName()).append(": ").append(sourceClass.getName()).append(" -> ")
+              .append(targetClass.getName()).append("\n\n");
+        report.append("Copied (").append(copies.size()).append("):\n");
+        for (final String copy : copies.values()) {
+            report.append("  ").append(copy).append("\n");
+        }
+        report.append("\nUnmatched (").append(unmatched.size()).append("):\n");
+        for (final String field : unmatched) {
+            report.append("  ").append(field).append("\n");
+        }
+        if (!canCreateTarget) {
+            report.append("\nmap(").append(sourceClass.getName()).append(") is left out, ")
+                  .append(targetClass.getName()).append(" has no no-args constructor the mapper can call.\n");
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "FieldMapping{" + "sourceClass=" + sourceClass + ", targetClass=" + targetClass + ", copies="
+               + copies.keySet() + ", unmatched=" + unmatched + ", canCreateTarget=" + canCreateTarget + '}';
+    }
+}
@@ -0,0 +1,163 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lists every project class whose generated members no longer match its fields, looking the classes recorded in
+ * {@link GeneratedClassRecords} up in {@link GenerateShapeIndex} rather than scanning the PSI. Choosing a class opens
+ * it and runs Generate Everything on it.
+ */
+public class FindStaleClassesAction extends AnAction {
+
+    @Override
+    public void update(@NotNull final AnActionEvent e) {
+        final Project project = e.getProject();
+        e.getPresentation().setEnabled(project != null && !DumbService.isDumb(project));
+    }
+
+    @NotNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        final Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+
+        final List<StaleClass> staleClasses;
+        try {
+            staleClasses = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> ReadAction.nonBlocking(() -> findStaleClasses(project)).executeSynchronously(),
+                    "Finding Classes Needing Generate Everything",
+                    true,
+                    project);
+        } catch (ProcessCanceledException ignored) {
+            return;
+        }
+
+        if (staleClasses.isEmpty()) {
+            Messages.showInfoMessage(project, "Every generated class is up to date.", "Generate Everything");
+            return;
+        }
+
+        JBPopupFactory.getInstance()
+                      .createPopupChooserBuilder(staleClasses)
+                      .setTitle("Classes Needing Generate Everything (" + staleClasses.size() + ")")
+                      .setRenderer(SimpleListCellRenderer.create("", StaleClass::toString))
+                      .setNamerForFiltering(StaleClass::getQualifiedName)
+                      .setItemChosenCallback(staleClass -> generate(project, staleClass))
+                      .createPopup()
+                      .showCenteredInCurrentWindow(project);
+    }
+
+    /**
+     * Look up each class Generate Everything was run on in the index and keep those with problems, judged against the
+     * options the class was generated with. Only the recorded classes are looked up, by key, within the project.
+     *
+     * @param project the project to search.
+     * @return the stale classes, in the order they were first generated.
+     */
+    static List<StaleClass> findStaleClasses(final Project project) {
+        final FileBasedIndex index = FileBasedIndex.getInstance();
+        final GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        final List<StaleClass> staleClasses = new ArrayList<>();
+
+        for (final Map.Entry<String, Set<GenerateOption>> record : GeneratedClassRecords.getRecords(project)
+                                                                                         .entrySet()) {
+            ProgressManager.checkCanceled();
+            final String qualifiedName = record.getKey();
+            index.processValues(GenerateShapeIndex.NAME, qualifiedName, null, (file, shape) -> {
+                final List<String> problems = shape.findProblems(record.getValue());
+                if (!problems.isEmpty()) {
+                    staleClasses.add(new StaleClass(qualifiedName, file, problems));
+                }
+                return true;
+            }, scope);
+        }
+
+        return staleClasses;
+    }
+
+    private static void generate(final Project project, final StaleClass staleClass) {
+        final PsiClass psiClass = JavaPsiFacade.getInstance(project)
+                                               .findClass(staleClass.getQualifiedName(),
+                                                          GlobalSearchScope.fileScope(project,
+                                                                                      staleClass.getFile()));
+        if (psiClass == null || psiClass.getNameIdentifier() == null) {
+            return;
+        }
+
+        final OpenFileDescriptor descriptor = new OpenFileDescriptor(project,
+                                                                     staleClass.getFile(),
+                                                                     psiClass.getNameIdentifier()
+                                                                             .getTextOffset());
+        final Editor editor = FileEditorManager.getInstance(project).openTextEditor(descriptor, true);
+        final PsiFile psiFile = psiClass.getContainingFile();
+        if (editor == null || psiFile == null) {
+            return;
+        }
+
+        new GenerateHandler().invoke(project, editor, psiFile);
+    }
+
+    /**
+     * A class found in the index along with what is wrong with it.
+     */
+    static final class StaleClass {
+        private final String qualifiedName;
+
+        private final VirtualFile file;
+
+        private final List<String> problems;
+
+        StaleClass(final String qualifiedName, final VirtualFile file, final List<String> problems) {
+            this.qualifiedName = qualifiedName;
+            this.file = file;
+            this.problems = problems;
+        }
+
+        String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        VirtualFile getFile() {
+            return file;
+        }
+
+        List<String> getProblems() {
+            return problems;
+        }
+
+        @Override
+        public String toString() {
+            return qualifiedName + " - " + String.join(", ", problems);
+        }
+    }
+}
@@ -3,11 +3,12 @@ package org.intellij.plugins.generateeverything;
 import com.intellij.codeInsight.CodeInsightActionHandler;
 import com.intellij.codeInsight.actions.BaseCodeInsightAction;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 
-public class GenerateAction extends BaseCodeInsightAction {
+public class GenerateAction extends BaseCodeInsightAction implements DumbAware {
     private final GenerateHandler handler = new GenerateHandler();
 
     @NotNull
@@ -0,0 +1,189 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+/**
+ * Settings page under Tools for the options that don't fit on the field chooser.
+ */
+public class GenerateEverythingConfigurable implements Configurable {
+
+    private JBTextField excludedTypes;
+
+    private JBTextField excludedAnnotations;
+
+    private JBTextField excludedNames;
+
+    private JBTextField excludedModifiers;
+
+    private JBCheckBox regenerateOnFieldChange;
+
+    private JBCheckBox packEnums;
+
+    private JBCheckBox poolThreadLocal;
+
+    private JBTextField toStringMaxChars;
+
+    private JBTextField toStringMaxElements;
+
+    private JBTextField toStringRedactedNames;
+
+    private JBTextField toStringSkippedNames;
+
+    @Nls(capitalization = Nls.Capitalization.Title)
+    @Override
+    public String getDisplayName() {
+        return "Generate Everything";
+    }
+
+    @Nullable
+    @Override
+    public JComponent createComponent() {
+        excludedTypes = new JBTextField();
+        excludedAnnotations = new JBTextField();
+        excludedNames = new JBTextField();
+        excludedModifiers = new JBTextField();
+        regenerateOnFieldChange = new JBCheckBox("Regenerate generated classes when their fields change");
+        packEnums = new JBCheckBox("Pack enum fields along with boolean flags");
+        poolThreadLocal = new JBCheckBox("Keep a pooled instance per thread in object pools");
+        toStringMaxChars = new JBTextField();
+        toStringMaxElements = new JBTextField();
+        toStringRedactedNames = new JBTextField();
+        toStringSkippedNames = new JBTextField();
+
+        return FormBuilder.createFormBuilder()
+                          .addComponent(new JLabel("Fields to leave out of generation, as comma separated lists."))
+                          .addLabeledComponent("Excluded field types:", excludedTypes)
+                          .addTooltip("Fully qualified class names, eg. org.slf4j.Logger")
+                          .addLabeledComponent("Excluded annotations:", excludedAnnotations)
+                          .addTooltip("Fully qualified annotation names, eg. java.beans.Transient")
+                          .addLabeledComponent("Excluded name patterns:", excludedNames)
+                          .addTooltip("Regular expressions matched against the whole field name, eg. cached.*")
+                          .addLabeledComponent("Excluded modifiers:", excludedModifiers)
+                          .addTooltip("Java modifiers, eg. transient, volatile")
+                          .addSeparator()
+                          .addComponent(regenerateOnFieldChange)
+                          .addTooltip("Classes generated this session get their new accessors, all args constructor "
+                                      + "and toString updated in the background when a field is added, removed or "
+                                      + "changes type")
+                          .addComponent(packEnums)
+                          .addTooltip("Enums with up to " + BitfieldPacking.MAX_ENUM_CONSTANTS + " constants take "
+                                      + "the bits their ordinal needs, a constant added later is masked off")
+                          .addComponent(poolThreadLocal)
+                          .addTooltip("A thread releasing and acquiring in turn skips the shared queue")
+                          .addSeparator()
+                          .addComponent(new JLabel("Limits of the bounded toString."))
+                          .addLabeledComponent("Characters per field:", toStringMaxChars)
+                          .addLabeledComponent("Elements per collection, map or array:", toStringMaxElements)
+                          .addLabeledComponent("Redacted name patterns:", toStringRedactedNames)
+                          .addTooltip("Regular expressions matched against the whole field name, the value is "
+                                      + "written as ***")
+                          .addLabeledComponent("Skipped name patterns:", toStringSkippedNames)
+                          .addTooltip("Regular expressions matched against the whole field name, the field is left "
+                                      + "out")
+                          .addComponentFillVertically(new JPanel(), 0)
+                          .getPanel();
+    }
+
+    @Override
+    public boolean isModified() {
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        return !excludedTypes.getText().equals(propertiesComponent.getValue(FieldExclusionRules.TYPES_PROPERTY,
+                                                                            FieldExclusionRules.DEFAULT_TYPES))
+               || !excludedAnnotations.getText()
+                                      .equals(propertiesComponent.getValue(FieldExclusionRules.ANNOTATIONS_PROPERTY,
+                                                                           FieldExclusionRules.DEFAULT_ANNOTATIONS))
+               || !excludedNames.getText().equals(propertiesComponent.getValue(FieldExclusionRules.NAMES_PROPERTY,
+                                                                               FieldExclusionRules.DEFAULT_NAMES))
+               || !excludedModifiers.getText()
+                                    .equals(propertiesComponent.getValue(FieldExclusionRules.MODIFIERS_PROPERTY,
+                                                                         FieldExclusionRules.DEFAULT_MODIFIERS))
+               || regenerateOnFieldChange.isSelected() != RegenerationService.isEnabled()
+               || packEnums.isSelected() != BitfieldPacking.isPackingEnums()
+               || poolThreadLocal.isSelected() != GenerateGenerator.isPoolThreadLocal()
+               || !toStringMaxChars.getText().equals(maxFieldCharsValue(propertiesComponent))
+               || !toStringMaxElements.getText().equals(maxElementsValue(propertiesComponent))
+               || !toStringRedactedNames.getText().equals(redactedNamesValue(propertiesComponent))
+               || !toStringSkippedNames.getText().equals(skippedNamesValue(propertiesComponent));
+    }
+
+    @Override
+    public void apply() throws ConfigurationException {
+        final String maxFieldChars = toStringMaxChars.getText().trim();
+        final String maxElements = toStringMaxElements.getText().trim();
+        checkLimit(maxFieldChars, 1, "The characters per field");
+        checkLimit(maxElements, 0, "The elements per collection, map or array");
+
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        propertiesComponent.setValue(FieldExclusionRules.TYPES_PROPERTY, excludedTypes.getText());
+        propertiesComponent.setValue(FieldExclusionRules.ANNOTATIONS_PROPERTY, excludedAnnotations.getText());
+        propertiesComponent.setValue(FieldExclusionRules.NAMES_PROPERTY, excludedNames.getText());
+        propertiesComponent.setValue(FieldExclusionRules.MODIFIERS_PROPERTY, excludedModifiers.getText());
+        propertiesComponent.setValue(RegenerationService.ENABLED_PROPERTY, regenerateOnFieldChange.isSelected());
+        propertiesComponent.setValue(BitfieldPacking.ENUMS_PROPERTY, packEnums.isSelected());
+        propertiesComponent.setValue(GenerateGenerator.POOL_THREAD_LOCAL_PROPERTY, poolThreadLocal.isSelected());
+        propertiesComponent.setValue(GenerateGenerator.TO_STRING_MAX_CHARS_PROPERTY, maxFieldChars);
+        propertiesComponent.setValue(GenerateGenerator.TO_STRING_MAX_ELEMENTS_PROPERTY, maxElements);
+        propertiesComponent.setValue(GenerateGenerator.TO_STRING_REDACTED_PROPERTY, toStringRedactedNames.getText());
+        propertiesComponent.setValue(GenerateGenerator.TO_STRING_SKIPPED_PROPERTY, toStringSkippedNames.getText());
+    }
+
+    @Override
+    public void reset() {
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        excludedTypes.setText(propertiesComponent.getValue(FieldExclusionRules.TYPES_PROPERTY,
+                                                           FieldExclusionRules.DEFAULT_TYPES));
+        excludedAnnotations.setText(propertiesComponent.getValue(FieldExclusionRules.ANNOTATIONS_PROPERTY,
+                                                                 FieldExclusionRules.DEFAULT_ANNOTATIONS));
+        excludedNames.setText(propertiesComponent.getValue(FieldExclusionRules.NAMES_PROPERTY,
+                                                           FieldExclusionRules.DEFAULT_NAMES));
+        excludedModifiers.setText(propertiesComponent.getValue(FieldExclusionRules.MODIFIERS_PROPERTY,
+                                                               FieldExclusionRules.DEFAULT_MODIFIERS));
+        regenerateOnFieldChange.setSelected(RegenerationService.isEnabled());
+        packEnums.setSelected(BitfieldPacking.isPackingEnums());
+        poolThreadLocal.setSelected(GenerateGenerator.isPoolThreadLocal());
+        toStringMaxChars.setText(maxFieldCharsValue(propertiesComponent));
+        toStringMaxElements.setText(maxElementsValue(propertiesComponent));
+        toStringRedactedNames.setText(redactedNamesValue(propertiesComponent));
+        toStringSkippedNames.setText(skippedNamesValue(propertiesComponent));
+    }
+
+    private static String maxFieldCharsValue(final PropertiesComponent propertiesComponent) {
+        return propertiesComponent.getValue(GenerateGenerator.TO_STRING_MAX_CHARS_PROPERTY,
+                                            String.valueOf(ToStringLimits.DEFAULT_MAX_FIELD_CHARS));
+    }
+
+    private static String maxElementsValue(final PropertiesComponent propertiesComponent) {
+        return propertiesComponent.getValue(GenerateGenerator.TO_STRING_MAX_ELEMENTS_PROPERTY,
+                                            String.valueOf(ToStringLimits.DEFAULT_MAX_ELEMENTS));
+    }
+
+    private static String redactedNamesValue(final PropertiesComponent propertiesComponent) {
+        return propertiesComponent.getValue(GenerateGenerator.TO_STRING_REDACTED_PROPERTY,
+                                            ToStringLimits.DEFAULT_REDACTED_NAMES);
+    }
+
+    private static String skippedNamesValue(final PropertiesComponent propertiesComponent) {
+        return propertiesComponent.getValue(GenerateGenerator.TO_STRING_SKIPPED_PROPERTY, "");
+    }
+
+    private static void checkLimit(final String value, final int minimum, final String name)
+        throws ConfigurationException {
+        try {
+            if (Integer.parseInt(value) >= minimum) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ConfigurationException(name + " must be a whole number of at least " + minimum + ".");
+    }
+}
@@ -0,0 +1,26 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.CodeInsightActionHandler;
+import com.intellij.codeInsight.actions.BaseCodeInsightAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+public class GenerateFileAction extends BaseCodeInsightAction implements DumbAware {
+    private final GenerateFileHandler handler = new GenerateFileHandler();
+
+    @NotNull
+    @Override
+    protected CodeInsightActionHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    protected boolean isValidForFile(@NotNull Project project,
+                                     @NotNull Editor editor,
+                                     @NotNull PsiFile file) {
+        return handler.isValidFor(editor, file);
+    }
+}
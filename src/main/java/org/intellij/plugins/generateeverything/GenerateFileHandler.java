@@ -0,0 +1,78 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.lang.LanguageCodeInsightActionHandler;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorModificationUtil;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.intellij.plugins.generateeverything.GenerateOptionCollector.collectFields;
+
+/**
+ * Generates for the top level class and every static nested class of a file in one pass, using the options last chosen
+ * in the field chooser and all of each class' fields.
+ */
+public class GenerateFileHandler implements LanguageCodeInsightActionHandler, DumbAware {
+    @Override
+    public boolean isValidFor(Editor editor, PsiFile file) {
+        if (!(file instanceof PsiJavaFile))
+            return false;
+
+        for (final PsiClass psiClass : GenerateUtils.getStaticAndTopLevelClasses(file)) {
+            final List<PsiFieldMember> fields = collectFields(psiClass);
+            if (fields != null && !fields.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    @Override
+    public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
+        final PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
+        final Document currentDocument = psiDocumentManager.getDocument(file);
+        if (currentDocument == null) {
+            return;
+        }
+
+        psiDocumentManager.commitDocument(currentDocument);
+
+        if (!EditorModificationUtil.checkModificationAllowed(editor)) {
+            return;
+        }
+
+        if (!FileDocumentManager.getInstance().requestWriting(editor.getDocument(), project)) {
+            return;
+        }
+
+        final Map<PsiClass, List<PsiFieldMember>> targets = new LinkedHashMap<>();
+        for (final PsiClass psiClass : GenerateUtils.getStaticAndTopLevelClasses(file)) {
+            final List<PsiFieldMember> fields = collectFields(psiClass);
+            if (fields != null && !fields.isEmpty()) {
+                targets.put(psiClass, fields);
+            }
+        }
+
+        if (!targets.isEmpty()) {
+            GenerateGenerator.generate(project, file, targets);
+        }
+    }
+}
@@ -1,89 +1,296 @@
 package org.intellij.plugins.generateeverything;
 
 import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.ide.util.PropertiesComponent;
-import com.intellij.lang.jvm.JvmModifier;
-import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.*;
-import com.intellij.psi.codeStyle.CodeStyleManager;
-import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.PatternSyntaxException;
 
+import static org.intellij.plugins.generateeverything.GenerateUtils.stripJavaLang;
 import static org.intellij.plugins.generateeverything.GenerateUtils.toLowerSnakeCase;
 import static org.intellij.plugins.generateeverything.GenerateUtils.toUpperSnakeCase;
 
-public class GenerateGenerator implements Runnable {
+public class GenerateGenerator {
 
     private static final Logger LOGGER = Logger.getInstance(GenerateGenerator.class);
 
+    public static final String POOL_THREAD_LOCAL_PROPERTY = "GenerateGenerator.pool.threadLocal";
+
+    public static final String TO_STRING_MAX_CHARS_PROPERTY = "GenerateGenerator.toString.maxFieldChars";
+    public static final String TO_STRING_MAX_ELEMENTS_PROPERTY = "GenerateGenerator.toString.maxElements";
+    public static final String TO_STRING_REDACTED_PROPERTY = "GenerateGenerator.toString.redactedNames";
+    public static final String TO_STRING_SKIPPED_PROPERTY = "GenerateGenerator.toString.skippedNames";
+
+    private static final String POOL_SUFFIX = "Pool";
+
+    private static final int POOL_CAPACITY = 64;
+
+    private static final String INTERN_CACHE_CLASS = "Interned";
+
+    private static final int INTERN_CACHE_SIZE = 256;
+
+    // The options that let an interned instance change or be created without going through the factory
+    private static final Set<GenerateOption> INTERN_CONFLICTS = EnumSet.of(GenerateOption.EMPTY_CONSTRUCTOR,
+                                                                           GenerateOption.SUPER_ARGS_CONSTRUCTOR,
+                                                                           GenerateOption.SUPER_OBJECT_CONSTRUCTOR,
+                                                                           GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR,
+                                                                           GenerateOption.SETTERS,
+                                                                           GenerateOption.DIRTY_TRACKING,
+                                                                           GenerateOption.OBJECT_POOL,
+                                                                           GenerateOption.REUSABLE_BUILDER);
+
+    private static final String JSON_STRING_WRITER = "writeJsonString";
+
+    // The most characters a primitive can take written as JSON, a char may need a unicode escape
+    private static final Map<String, Integer> JSON_WIDTHS = new HashMap<>();
+
+    // What estimateJsonSize() allows for a value of any other type
+    private static final int UNKNOWN_JSON_WIDTH = 16;
+
+    static {
+        JSON_WIDTHS.put("boolean", 5);
+        JSON_WIDTHS.put("byte", 4);
+        JSON_WIDTHS.put("short", 6);
+        JSON_WIDTHS.put("char", 8);
+        JSON_WIDTHS.put("int", 11);
+        JSON_WIDTHS.put("float", 15);
+        JSON_WIDTHS.put("long", 20);
+        JSON_WIDTHS.put("double", 24);
+    }
+
     private final Project project;
 
     private final PsiFile file;
 
-    private final Editor editor;
+    private final PsiClass targetClass;
 
     private final List<PsiFieldMember> selectedFields;
 
     private final PsiElementFactory psiElementFactory;
 
+    // while indexing nothing is resolved, types are taken as written and the super constructors are skipped
+    private final boolean dumb;
+
+    private final AccessorStrategy accessorStrategy;
+
+    // whether List.copyOf and friends can be used in the target class
+    private final boolean java10;
+
+    // the class as the engine's templates see it
+    private final ClassModel model;
+
+    private final Map<PsiField, FieldModel> fieldModels = new HashMap<>();
+
+    // whether the setters mark their field in the dirty mask, set along with the options
+    private boolean dirtyTracking;
+
+    // whether the interning factory is generated, set along with the options once the class is known to be immutable
+    private boolean interning;
+
+    // the fields whose getters cache a view the other writers have to reset, set along with the options
+    private Set<String> viewedFields = Collections.emptySet();
+
+    // the fields packed into bitfields, null unless packing was asked for and some fields can be packed
+    @Nullable
+    private final BitfieldPacking packing;
+
+    /**
+     * Generate the members for the target class.
+     *
+     * @param project the project.
+     * @param targetClass the class to generate members for.
+     * @param psiFile the file containing the class.
+     * @param selectedFields the fields to generate for.
+     */
     public static void generate(final Project project,
-                                final Editor editor,
+                                final PsiClass targetClass,
                                 final PsiFile psiFile,
                                 final List<PsiFieldMember> selectedFields) {
-        final Runnable genGen = new GenerateGenerator(project, psiFile, editor, selectedFields);
-        ApplicationManager.getApplication().runWriteAction(genGen);
+        generate(project, psiFile, Collections.singletonMap(targetClass, selectedFields));
+    }
+
+    /**
+     * Generate the members for every target class of a file in two phases. The member texts and the existing members
+     * they replace are computed in a cancellable read action under a progress bar, then the result is inserted in a
+     * single write command so the write lock is only held for the insertion. References are shortened and each class
+     * reformatted once at the end, however many classes were generated.
+     *
+     * @param project the project.
+     * @param psiFile the file containing the classes.
+     * @param targets the fields to generate for, by class.
+     */
+    public static void generate(final Project project,
+                                final PsiFile psiFile,
+                                final Map<PsiClass, List<PsiFieldMember>> targets) {
+        final GenerationPlan plan;
+        try {
+            plan = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> ReadAction.nonBlocking(() -> computePlan(project, psiFile, targets)).executeSynchronously(),
+                    "Computing Generated Members",
+                    true,
+                    project);
+        } catch (ProcessCanceledException ignored) {
+            LOGGER.trace("Generation cancelled for : " + psiFile.getName() + ".");
+            return;
+        }
+
+        if (plan == null) {
+            return;
+        }
+        if (!plan.isEmpty()) {
+            WriteCommandAction.writeCommandAction(project, psiFile)
+                              .withName("Generate Everything")
+                              .run(() -> plan.apply(project));
+        }
+        if (!plan.getSkipped().isEmpty()) {
+            Messages.showWarningDialog(project, String.join("\n", plan.getSkipped()), "Generate Everything");
+        }
+        if (plan.isEmpty()) {
+            return;
+        }
+
+        final Set<GenerateOption> options = currentOptions();
+        for (final PsiClass targetClass : targets.keySet()) {
+            if (targetClass.isValid()) {
+                GeneratedClassRecords.record(project, targetClass, options);
+            }
+        }
+
+        // Packed flags are no longer fields, regenerating from the fields left would drop them
+        if (RegenerationService.isEnabled() && !options.contains(GenerateOption.PACKED_FLAGS)) {
+            final RegenerationService regenerationService = RegenerationService.getInstance(project);
+            for (final Map.Entry<PsiClass, List<PsiFieldMember>> target : targets.entrySet()) {
+                if (target.getKey().isValid()) {
+                    regenerationService.record(target.getKey(), options, target.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Work out the members of a previously generated class affected by a change to its fields: the accessors that
+     * are missing or no longer match their field's type, the all args constructor, toString, the reusable builder
+     * and the object pool, as far as the class was generated with them. Only reads the PSI and expects the IDE not to
+     * be indexing.
+     *
+     * @param project the project.
+     * @param targetClass the class to regenerate.
+     * @param fields the fields to generate for now.
+     * @param options the options the class was generated with.
+     * @param previousFieldNames the fields the class was last generated for, to find the old all args constructor.
+     * @param previousFieldTypes the canonical types of those fields, to find the old interning factory.
+     * @return the plan, applied with {@link GenerationPlan#applyInPlace(Project)}.
+     */
+    static GenerationPlan computeRegenerationPlan(final Project project,
+                                                  final PsiClass targetClass,
+                                                  final List<PsiFieldMember> fields,
+                                                  final Set<GenerateOption> options,
+                                                  final List<String> previousFieldNames,
+                                                  final List<String> previousFieldTypes) {
+        final PsiFile psiFile = targetClass.getContainingFile();
+        final GenerationPlan plan = new GenerationPlan(psiFile);
+        new GenerateGenerator(project, psiFile, targetClass, fields, false, false)
+                .computeRegenerationPlan(plan, options, previousFieldNames, previousFieldTypes);
+        return plan;
+    }
+
+    private static GenerationPlan computePlan(final Project project,
+                                              final PsiFile psiFile,
+                                              final Map<PsiClass, List<PsiFieldMember>> targets) {
+        final Set<GenerateOption> options = currentOptions();
+        final boolean dumb = DumbService.isDumb(project);
+        if (dumb) {
+            LOGGER.trace("Indexing in progress - skipping the super constructors, packing flags and the object pool.");
+            options.removeAll(EnumSet.of(GenerateOption.SUPER_ARGS_CONSTRUCTOR,
+                                         GenerateOption.SUPER_OBJECT_CONSTRUCTOR,
+                                         GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR,
+                                         GenerateOption.PACKED_FLAGS,
+                                         GenerateOption.OBJECT_POOL));
+        }
+
+        final GenerationPlan plan = new GenerationPlan(psiFile);
+        for (final Map.Entry<PsiClass, List<PsiFieldMember>> target : targets.entrySet()) {
+            ProgressManager.checkCanceled();
+            new GenerateGenerator(project,
+                                  psiFile,
+                                  target.getKey(),
+                                  target.getValue(),
+                                  dumb,
+                                  options.contains(GenerateOption.PACKED_FLAGS)).computePlan(plan, options);
+        }
+        return plan;
     }
 
     private GenerateGenerator(final Project project,
                               final PsiFile file,
-                              final Editor editor,
-                              final List<PsiFieldMember> selectedFields) {
+                              final PsiClass targetClass,
+                              final List<PsiFieldMember> selectedFields,
+                              final boolean dumb,
+                              final boolean packFlags) {
         this.project = project;
         this.file = file;
-        this.editor = editor;
+        this.targetClass = targetClass;
         this.selectedFields = selectedFields;
+        this.dumb = dumb;
+        this.accessorStrategy = AccessorStrategy.getCurrent();
+        this.java10 = PsiUtil.getLanguageLevel(targetClass).isAtLeast(LanguageLevel.JDK_10);
+        this.packing = packFlags && targetClass.isValid()
+                       ? BitfieldPacking.plan(targetClass, selectedFields, BitfieldPacking.isPackingEnums())
+                       : null;
+        this.model = ClassModelAdapter.adapt(project, targetClass, selectedFields, dumb, packing);
+        for (int i = 0; i < selectedFields.size(); i++) {
+            fieldModels.put(selectedFields.get(i).getElement(), model.getFields().get(i));
+        }
         psiElementFactory = JavaPsiFacade.getInstance(project).getElementFactory();
     }
 
-    @Override
-    public void run() {
-        final PsiClass targetClass = GenerateUtils.getStaticOrTopLevelClass(file, editor);
-        if (targetClass == null) {
+    /**
+     * Work out the text of every member to generate along with the existing member it replaces. Only reads the PSI,
+     * so this can run in a background read action.
+     *
+     * @param generationPlan the plan to add this class' members to.
+     * @param options the enabled options.
+     */
+    private void computePlan(final GenerationPlan generationPlan, final Set<GenerateOption> options) {
+        if (!targetClass.isValid()) {
             return;
         }
-        final Set<GenerateOption> options = currentOptions();
+        final GenerationPlan.ClassPlan plan = generationPlan.forClass(targetClass);
+        dirtyTracking = canTrackDirty(generationPlan, options);
+        interning = canIntern(generationPlan, options);
+        viewedFields = viewedFields(options);
 
         String targetClassName = targetClass.getName();
         LOGGER.trace("Operating on class : " + targetClassName +".");
 
-        PsiElement lastAddedElement = null;
-
         if (options.contains(GenerateOption.EMPTY_CONSTRUCTOR)) {
             LOGGER.trace("Adding empty constructor.");
 
-            lastAddedElement = addMethod(targetClass,
-                                         null,
-                                         generateEmptyConstructor(targetClass),
-                                         true);
+            addMethod(plan, targetClass, MemberTemplates.emptyConstructor(model));
         }
 
         if (options.contains(GenerateOption.SUPER_ARGS_CONSTRUCTOR)) {
             LOGGER.trace("Adding super constructor.");
 
-            PsiMethod superConstructor = generateSuperConstructor(targetClass);
+            String superConstructor = MemberTemplates.superConstructor(model);
             if (superConstructor != null) {
                 LOGGER.trace("Has super - adding constructor : " + superConstructor + ".");
-                lastAddedElement = addMethod(targetClass,
-                                             lastAddedElement,
-                                             superConstructor,
-                                             true);
+                addMethod(plan, targetClass, superConstructor);
             } else {
                 LOGGER.trace("Super constructor returned null - skipping.");
             }
@@ -92,505 +299,1541 @@ public class GenerateGenerator implements Runnable {
         if (options.contains(GenerateOption.SUPER_OBJECT_CONSTRUCTOR)) {
             LOGGER.trace("Adding super object constructor.");
 
-            PsiMethod superObjConstructor = generateSuperObjectConstructor(targetClass);
+            String superObjConstructor = MemberTemplates.superObjectConstructor(model);
             if (superObjConstructor != null) {
                 LOGGER.trace("Has super - adding object constructor : " + superObjConstructor + ".");
-                lastAddedElement = addMethod(targetClass,
-                                             lastAddedElement,
-                                             superObjConstructor,
-                                             true);
+                addMethod(plan, targetClass, superObjConstructor);
             } else {
                 LOGGER.trace("Super object constructor returned null - skipping.");
             }
         }
 
-        if (options.contains(GenerateOption.ALL_ARGS_CONSTRUCTOR)) {
+        // The interning factory needs the all args constructor, kept private so every instance goes through it, and the
+        // reusable builder builds through it
+        if (options.contains(GenerateOption.ALL_ARGS_CONSTRUCTOR)
+            || interning
+            || hasReusableBuilder(options)) {
             LOGGER.trace("Adding all args constructor.");
 
-            PsiMethod allArgsConstructor = genAllArgsConstr(targetClass);
-            if (allArgsConstructor != null) {
-                LOGGER.trace("Has all args - adding constructor : " + allArgsConstructor + ".");
-                lastAddedElement = addMethod(targetClass,
-                                             lastAddedElement,
-                                             allArgsConstructor,
-                                             true);
-            } else {
-                LOGGER.trace("All args constructor returned null - skipping.");
-            }
+            String allArgsConstructor = MemberTemplates.allArgsConstructor(model, allArgsVisibility());
+            LOGGER.trace("Has all args - adding constructor : " + allArgsConstructor + ".");
+            addMethod(plan, targetClass, allArgsConstructor);
         }
 
-        if (options.contains(GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR)
-            && targetClass.getSuperClass() != null
-            && !CommonClassNames.JAVA_LANG_OBJECT.equals(targetClass.getSuperClass().getQualifiedName())) {
+        if (options.contains(GenerateOption.ALL_ARGS_SUPER_CONSTRUCTOR)) {
 
             LOGGER.info("Generating all args super constructor(s).");
 
-            PsiMethod allArgsSuperConstructor = generateAllArgsSuperConstructor(targetClass);
+            String allArgsSuperConstructor = MemberTemplates.allArgsSuperConstructor(model);
             if (allArgsSuperConstructor != null) {
                 LOGGER.trace("Has all args super - adding constructor : " + allArgsSuperConstructor + ".");
-                try {
-                    lastAddedElement = addMethod(targetClass, lastAddedElement, allArgsSuperConstructor, true);
-                } catch (Exception e) {
-                    LOGGER.error("Exception thrown : " + e);
-                    e.printStackTrace();
-                }
+                addMethod(plan, targetClass, allArgsSuperConstructor);
             } else {
                 LOGGER.trace("All args super constructor returned null - skipping.");
             }
         }
 
-        PsiField[] fields = targetClass.getFields();
-        for (PsiField field : fields) {
+        // Accessors are only generated for the selected fields declared in this class, superclass fields have theirs
+        for (PsiFieldMember fieldMember : selectedFields) {
+            ProgressManager.checkCanceled();
+            final PsiField field = fieldMember.getElement();
+            if (isInherited(field)) {
+                continue;
+            }
             LOGGER.trace("Adding get/set for : "+field.getName()+".");
 
+            // a packed field is only left with its accessors, whatever the options
+            if (packing != null && packing.isPacked(field)) {
+                addMethod(plan, targetClass, packing.getter(field));
+                addMethod(plan, targetClass, packing.setter(field, dirtyMark(field)));
+                continue;
+            }
+
+            if (options.contains(GenerateOption.GETTERS) || options.contains(GenerateOption.SETTERS)) {
+                addViewField(plan, field);
+            }
+
             if (options.contains(GenerateOption.GETTERS)) {
-                lastAddedElement = addMethod(targetClass, lastAddedElement, generateGetter(field), true);
+                addMethod(plan, targetClass, generateGetter(field));
             }
 
             if (options.contains(GenerateOption.SETTERS)) {
-                lastAddedElement = addMethod(targetClass, lastAddedElement, generateSetter(field), true);
+                addMethod(plan, targetClass, generateSetter(field));
             }
         }
 
         if (options.contains(GenerateOption.TO_STRING)) {
             LOGGER.trace("Adding tostring.");
-            addMethod(targetClass, lastAddedElement, addToString(targetClass), true);
+            addToString(plan, options);
         }
 
-        JavaCodeStyleManager.getInstance(project).shortenClassReferences(file);
-        CodeStyleManager.getInstance(project).reformat(targetClass);
+        if (interning) {
+            LOGGER.trace("Adding interning factory.");
+            addInterningFactory(plan, targetClass, null);
+        }
 
-        LOGGER.trace("Generation complete for class : "+targetClassName+".");
-    }
+        if (options.contains(GenerateOption.JSON_WRITER)) {
+            LOGGER.trace("Adding json writer.");
+            addJsonWriter(generationPlan, plan, targetClass, options.contains(GenerateOption.INHERITED_FIELDS));
+        }
+
+        if (hasReusableBuilder(options)) {
+            LOGGER.trace("Adding reusable builder.");
+            addReusableBuilder(plan, targetClass);
+        }
 
-    private PsiMethod addToString(PsiClass targetClass) {
-        PsiClassType stringClassType =
-                psiElementFactory.createTypeByFQClassName(CommonClassNames.JAVA_LANG_STRING);
-        PsiMethod toStringMethod = psiElementFactory.createMethod("toString", stringClassType);
-        PsiModifierList modifierList = toStringMethod.getModifierList();
-        modifierList.setModifierProperty(PsiModifier.PUBLIC, true);
-        modifierList.addAnnotation("java.lang.Override");
+        if (options.contains(GenerateOption.PROPERTY_TABLE)) {
+            LOGGER.trace("Adding property table.");
+            addPropertyTable(plan, targetClass);
+        }
 
-        // This tostring method needs to contain :
-        // return "<class name>{"
-        StringBuilder assignText = new StringBuilder("return \"" + targetClass.getName() + "{");
+        if (dirtyTracking) {
+            LOGGER.trace("Adding dirty tracking.");
+            addDirtyTracking(plan, targetClass);
+        }
 
-        // If there's a super method
-        // {<super.toString()>},<space>
-        if (targetClass.getSuperClass() != null
-            && targetClass.getSuperClass().getFields().length > 0) {
-            assignText.append("{\" + super.toString() + " + "\"}, ");
+        if (options.contains(GenerateOption.OBJECT_POOL)) {
+            LOGGER.trace("Adding object pool.");
+            addObjectPool(generationPlan, options);
+        }
+
+        if (packing != null) {
+            LOGGER.trace("Packing flags : " + packing + ".");
+            addPackedFields(plan);
+        }
+
+        LOGGER.trace("Generation planned for class : "+targetClassName+".");
+    }
+
+    private void computeRegenerationPlan(final GenerationPlan generationPlan,
+                                         final Set<GenerateOption> options,
+                                         final List<String> previousFieldNames,
+                                         final List<String> previousFieldTypes) {
+        final GenerationPlan.ClassPlan plan = generationPlan.forClass(targetClass);
+        dirtyTracking = canTrackDirty(generationPlan, options);
+        interning = canIntern(generationPlan, options);
+        viewedFields = viewedFields(options);
+        if (options.contains(GenerateOption.ALL_ARGS_CONSTRUCTOR)
+            || interning
+            || hasReusableBuilder(options)) {
+            final String allArgsConstructor = MemberTemplates.allArgsConstructor(model, allArgsVisibility());
+            final PsiMethod previous = findConstructorByParameterNames(previousFieldNames);
+            if (previous != null) {
+                plan.add(allArgsConstructor, previous);
+            } else {
+                addMethod(plan, targetClass, allArgsConstructor);
+            }
         }
 
-        // If there's fields in the class, assign each one, otherwise just end with }";
-        if (targetClass.getFields().length > 0) {
+        if (interning) {
+            addInterningFactory(plan, targetClass, previousFieldTypes);
+        }
 
-            // This needs to assign each field as name=value with single quotes if it's a string
-            // name='bob', age=200, isFat=true, dob=1900-01-01T03:50:12.0000000T
-            for (PsiField field : targetClass.getFields()) {
-                assignText.append("\"\n + \"")
-                          .append(field.getName())
-                          .append("=")
-                          .append(field.getType()
-                                       .getCanonicalText()
-                                       .equals(CommonClassNames.JAVA_LANG_STRING) ? "\'" : "")
-                          .append("\" + ")
-                          .append(field.getName())
-                          .append(" + \"")
-                          .append(field.getType()
-                                       .getCanonicalText()
-                                       .equals(CommonClassNames.JAVA_LANG_STRING) ? "\'" : "")
-                          .append(", ");
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            ProgressManager.checkCanceled();
+            final PsiField field = fieldMember.getElement();
+            if (isInherited(field)) {
+                continue;
+            }
+            if (options.contains(GenerateOption.GETTERS) || options.contains(GenerateOption.SETTERS)) {
+                addViewField(plan, field);
+            }
+            if (options.contains(GenerateOption.GETTERS)) {
+                addAccessorIfStale(plan, generateGetter(field), null);
+            }
+            if (options.contains(GenerateOption.SETTERS)) {
+                addAccessorIfStale(plan, generateSetter(field), dirtyMark(field));
             }
-            // Delete the last two chars which should be <comma><space>
-            assignText.deleteCharAt(assignText.length() - 1);
-            assignText.deleteCharAt(assignText.length() - 1);
+        }
 
-            // Then add the terminating brace and semi-colon
-            assignText.append("}\";");
+        if (options.contains(GenerateOption.TO_STRING)) {
+            addToString(plan, options);
         }
-        else {
-            // Nothing in class so just add the brace and semi-colon
-            assignText.append("+ \"}\";");
+
+        if (hasReusableBuilder(options)) {
+            addReusableBuilder(plan, targetClass);
         }
 
-        toStringMethod.getBody()
-                      .add(psiElementFactory.createStatementFromText(assignText.toString(), null));
-        return toStringMethod;
-    }
+        // the indexes and the mask's size follow the fields
+        if (dirtyTracking) {
+            addDirtyTracking(plan, targetClass);
+        }
 
-    @Override
-    public String toString() {
-        return "GenerateGenerator{" + "project=" + project + ", file=" + file + ", editor=" + editor
-               + ", selectedFields=" + selectedFields + ", psiElementFactory=" + psiElementFactory
-               + '}';
+        if (options.contains(GenerateOption.OBJECT_POOL)) {
+            addObjectPool(generationPlan, options);
+        }
     }
 
     /**
-     * Add a single setter for a field.
+     * Plan an accessor unless an identical one exists. An accessor with the same name and parameter count but other
+     * types, left from before the field's type changed, is replaced. So is a setter not marking its field dirty the way
+     * the new one does, left from before the dirty tracking was enabled or the mask spilled into an array.
      *
-     * @param field the field to add the setter for.
-     * @return a setter taking the argument with the field's type and setting this.field.
+     * @param plan the plan to add the accessor to.
+     * @param methodText the accessor.
+     * @param dirtyMark the statement the setter marks its field dirty with, null for a getter.
      */
-    private PsiMethod generateSetter(PsiField field) {
-        LOGGER.trace("Generating setter for : " + field.getName());
+    private void addAccessorIfStale(final GenerationPlan.ClassPlan plan,
+                                    final String methodText,
+                                    @Nullable final String dirtyMark) {
+        final PsiMethod newMethod = psiElementFactory.createMethodFromText(methodText, targetClass);
+        final PsiMethod existing = targetClass.findMethodBySignature(newMethod, false);
+        if (existing != null) {
+            final PsiType existingType = existing.getReturnType();
+            final PsiType newType = newMethod.getReturnType();
+            if (existingType != null
+                && newType != null
+                && existingType.getCanonicalText().equals(newType.getCanonicalText())
+                && (dirtyMark == null || MemberTemplates.hasDirtyMark(existing.getText(), dirtyMark))) {
+                return;
+            }
+            plan.add(methodText, existing);
+            return;
+        }
 
-        PsiMethod setMethod = psiElementFactory.createMethod(
-                "set" + toUpperSnakeCase(field.getName()), PsiType.VOID);
-        setMethod.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
-        setMethod.getParameterList()
-                 .add(psiElementFactory.createParameter(toLowerSnakeCase(field.getName()),
-                                                        field.getType()));
-        String assignText = "this." + toLowerSnakeCase(field.getName()) + " = " + toLowerSnakeCase(
-                field.getName()) + ";";
-        setMethod.getBody().add(psiElementFactory.createStatementFromText(assignText, null));
-        return setMethod;
+        final int parameterCount = newMethod.getParameterList().getParametersCount();
+        for (final PsiMethod method : targetClass.findMethodsByName(newMethod.getName(), false)) {
+            if (method.getParameterList().getParametersCount() == parameterCount) {
+                plan.add(methodText, method);
+                return;
+            }
+        }
+        plan.add(methodText, null);
     }
 
     /**
-     * Add a single getter for a field.
+     * Find the constructor whose parameters are named after the given fields, the way the all args constructor's are.
+     */
+    @Nullable
+    private PsiMethod findConstructorByParameterNames(final List<String> fieldNames) {
+        for (final PsiMethod constructor : targetClass.getConstructors()) {
+            final PsiParameter[] parameters = constructor.getParameterList().getParameters();
+            if (parameters.length != fieldNames.size() || parameters.length == 0) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameters.length; i++) {
+                matches &= parameters[i].getName().equals(toLowerSnakeCase(fieldNames.get(i)));
+            }
+            if (matches) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Only the selected fields are listed, superclass fields first when listing flat.
      *
-     * @param field the field to add the getter for.
-     * @return a getter returning this.field.
+     * @param flat whether the superclass fields are listed along with the class' own.
+     * @return the fields to list.
      */
-    private PsiMethod generateGetter(PsiField field) {
-        LOGGER.trace("Generating getter for : " + field.getName());
+    private List<PsiField> listedFields(final boolean flat) {
+        final List<PsiField> fields = new ArrayList<>(selectedFields.size());
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            if (flat || !isInherited(fieldMember.getElement())) {
+                fields.add(fieldMember.getElement());
+            }
+        }
+        return fields;
+    }
+
+    private FieldModel fieldModel(final PsiField field) {
+        return fieldModels.get(field);
+    }
 
-        PsiMethod getMethod = psiElementFactory.createMethod(
-                "get" + toUpperSnakeCase(field.getName()), field.getType());
-        getMethod.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
-        String assignText = "return this." + toLowerSnakeCase(field.getName()) + ";";
-        getMethod.getBody().add(psiElementFactory.createStatementFromText(assignText, null));
-        return getMethod;
+    private String typeText(final PsiField field) {
+        return fieldModel(field).getTypeText();
+    }
+
+    private String allArgsVisibility() {
+        return interning ? "private" : "public";
     }
 
     /**
-     * Add a method to the existing PSI Tree. If this has an existing method overwrite it, if there is no existing
-     * method, create a new one, placing it after the parameter after otherwise just adding it.
+     * Can the setters mark the fields they set in a dirty mask? Only when a field can be set, and the class doesn't
+     * have a field of its own by the mask's name the mask would replace. Tells the user why the mask was left out.
      *
-     * @param target the target class to operate on.
-     * @param after the target element to attempt to add the new method after (either an existing element or null).
-     * @param newMethod the new method to add.
-     * @param replace whether or not to replace existing elements, if this is false and a method already exists, the
-     *                new method WILL NOT be added.
+     * @param generationPlan the plan to record why the mask was left out in.
+     * @param options the enabled options.
+     * @return whether the mask is generated.
+     */
+    private boolean canTrackDirty(final GenerationPlan generationPlan, final Set<GenerateOption> options) {
+        if (!options.contains(GenerateOption.DIRTY_TRACKING) || MemberTemplates.dirtyFields(model).isEmpty()) {
+            return false;
+        }
+        final PsiField dirtyBits = targetClass.findFieldByName(MemberTemplates.DIRTY_BITS_FIELD, false);
+        if (dirtyBits != null && !GenerateUtils.isGeneratedState(dirtyBits)) {
+            LOGGER.trace("Can't track dirty fields of " + targetClass.getName() + " - it has its own "
+                         + MemberTemplates.DIRTY_BITS_FIELD + ".");
+            generationPlan.addSkipped("No dirty tracking for " + targetClass.getName() + ": its own field "
+                                      + MemberTemplates.DIRTY_BITS_FIELD + " would be replaced by the mask.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Can every instance of the class be shared through the interning factory? Only when nothing can change an
+     * instance after it is created and the factory is the only way to create one: every selected and own field is
+     * final and no option adds a setter, a builder, a pool or another public constructor. Generic classes, inner
+     * classes needing an outer instance and local classes are skipped too. Tells the user why the factory was left
+     * out.
      *
-     * @return the element as modified.
+     * @param generationPlan the plan to record why the factory was left out in.
+     * @param options the enabled options.
+     * @return whether the factory is generated.
      */
-    private PsiElement addMethod(@NotNull final PsiClass target,
-                                 @Nullable final PsiElement after,
-                                 @NotNull final PsiMethod newMethod,
-                                 final boolean replace) {
-        LOGGER.trace("Adding method to target : " + target.getName());
+    private boolean canIntern(final GenerationPlan generationPlan, final Set<GenerateOption> options) {
+        if (!options.contains(GenerateOption.INTERNING_FACTORY)) {
+            return false;
+        }
+        final String reason = internBlocker(options);
+        if (reason != null) {
+            LOGGER.trace("Can't intern " + targetClass.getName() + " - " + reason + ".");
+            generationPlan.addSkipped("No interning factory for " + targetClass.getName() + ": " + reason + ".");
+            return false;
+        }
+        return true;
+    }
 
-        // Get the existing method if it exists.
-        PsiMethod existingMethod = target.findMethodBySignature(newMethod, false);
+    @Nullable
+    private String internBlocker(final Set<GenerateOption> options) {
+        if (targetClass.getName() == null || PsiUtil.isLocalOrAnonymousClass(targetClass)) {
+            return "local and anonymous classes can't have a static factory";
+        }
+        if (targetClass.hasTypeParameters()) {
+            return "a shared cache can't be typed for a generic class";
+        }
+        if (targetClass.getContainingClass() != null && !targetClass.hasModifierProperty(PsiModifier.STATIC)) {
+            return "an inner class needs an outer instance, make it static";
+        }
+        if (selectedFields.isEmpty()) {
+            return "no fields are selected";
+        }
+        for (final GenerateOption option : INTERN_CONFLICTS) {
+            if (options.contains(option)) {
+                return "a shared instance mustn't be changed or created past the factory, turn off "
+                       + option.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+            }
+        }
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            final PsiField field = fieldMember.getElement();
+            if (!field.hasModifierProperty(PsiModifier.FINAL)) {
+                return "a shared instance has to be immutable, " + field.getName() + " isn't final";
+            }
+            if (fieldRead(field) == null) {
+                return field.getName() + " can't be read to compare instances";
+            }
+        }
+        for (final PsiField field : targetClass.getFields()) {
+            if (!field.hasModifierProperty(PsiModifier.STATIC) && !field.hasModifierProperty(PsiModifier.FINAL)) {
+                return "a shared instance has to be immutable, " + field.getName() + " isn't final";
+            }
+        }
+        return null;
+    }
 
-        // If there's no existing method and the new method is a constructor, set this to be the constructor
-        if (existingMethod == null && newMethod.isConstructor()) {
-            for (final PsiMethod constructor : target.getConstructors()) {
-                if (GenerateUtils.areParameterListsEqual(constructor.getParameterList(),
-                                                         newMethod.getParameterList())) {
-                    existingMethod = constructor;
-                    break;
+    /**
+     * Add a static of(...) factory taking every selected field that hands out a cached instance when an equal one was
+     * created before, along with the cache itself in a nested holder class so it is only allocated on first use.
+     * <p>
+     * The cache is direct mapped like a CPU cache: the hash of the values picks a single slot, a hit returns the
+     * instance in it and a miss overwrites it, so it never grows past its size and a lookup never locks. The slots
+     * are an AtomicReferenceArray so an instance is safely published to other threads even if its fields aren't
+     * final. Generic classes are skipped, a shared cache can't be typed for them.
+     *
+     * @param plan the plan to add the members to.
+     * @param targetClass the target class.
+     * @param previousFieldTypes the canonical types of the fields the factory was last generated for when
+     *                           regenerating, otherwise null.
+     */
+    private void addInterningFactory(final GenerationPlan.ClassPlan plan,
+                                     final PsiClass targetClass,
+                                     @Nullable final List<String> previousFieldTypes) {
+        final String className = targetClass.getName();
+
+        final List<String> parameters = new ArrayList<>();
+        for (final FieldModel field : model.getFields()) {
+            parameters.add(field.getTypeText() + " " + toLowerSnakeCase(field.getName()));
+        }
+        final Set<String> parameterNames = new HashSet<>();
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            parameterNames.add(toLowerSnakeCase(fieldMember.getElement().getName()));
+        }
+        final String hash = uniqueName("hash", parameterNames);
+        final String entries = uniqueName("entries", parameterNames);
+        final String index = uniqueName("index", parameterNames);
+        final String cached = uniqueName("cached", parameterNames);
+        final String created = uniqueName("created", parameterNames);
+
+        final StringBuilder hashing = new StringBuilder();
+        final StringBuilder matching = new StringBuilder();
+        final List<String> arguments = new ArrayList<>();
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            final PsiField field = fieldMember.getElement();
+            final String fieldRead = Objects.requireNonNull(fieldRead(field));
+            final String parameter = toLowerSnakeCase(field.getName());
+            final String typeText = stripJavaLang(typeText(field));
+
+            hashing.append(hashing.length() == 0 ? "int " + hash + " = " : hash + " = 31 * " + hash + " + ")
+                   .append(hashExpression(typeText, parameter))
+                   .append(";\n");
+            matching.append("\n&& ").append(equalsExpression(typeText, cached + "." + fieldRead, parameter));
+            arguments.add(parameter);
+        }
+
+        final String cacheType = "java.util.concurrent.atomic.AtomicReferenceArray<" + className + ">";
+        plan.addInnerClass("private static final class " + INTERN_CACHE_CLASS + " {\n"
+                           + "// a power of two\n"
+                           + "static final int SIZE = " + INTERN_CACHE_SIZE + ";\n"
+                           + "static final " + cacheType + " ENTRIES = "
+                           + "new java.util.concurrent.atomic.AtomicReferenceArray<>(SIZE);\n"
+                           + "}",
+                           targetClass.findInnerClassByName(INTERN_CACHE_CLASS, false));
+
+        final String factory = "public static " + className + " of(" + String.join(", ", parameters) + ") {\n"
+                               + hashing
+                               + hash + " ^= " + hash + " >>> 16;\n"
+                               + cacheType + " " + entries + " = " + INTERN_CACHE_CLASS + ".ENTRIES;\n"
+                               + "int " + index + " = " + hash + " & (" + entries + ".length() - 1);\n"
+                               + className + " " + cached + " = " + entries + ".get(" + index + ");\n"
+                               + "if (" + cached + " != null" + matching + ") {\n"
+                               + "return " + cached + ";\n"
+                               + "}\n"
+                               + className + " " + created + " = new " + className + "("
+                               + String.join(", ", arguments) + ");\n"
+                               + entries + ".set(" + index + ", " + created + ");\n"
+                               + "return " + created + ";\n"
+                               + "}";
+
+        // when the fields changed the old factory has the old parameter types, any other of(...) is left alone
+        PsiMethod previous = null;
+        if (previousFieldTypes != null) {
+            for (final PsiMethod method : targetClass.findMethodsByName("of", false)) {
+                if (method.hasModifierProperty(PsiModifier.STATIC)
+                    && parameterTypes(method).equals(previousFieldTypes)) {
+                    previous = method;
                 }
             }
         }
+        if (previous != null) {
+            plan.add(factory, previous);
+        } else {
+            addMethod(plan, targetClass, factory);
+        }
+    }
 
-        // If the existing method is null, add this method after the after element, if there's no after element just
-        // add it to the tree.
-        if (existingMethod == null) {
-            if (after != null) {
-                return target.addAfter(newMethod, after);
-            }
-            else {
-                return target.add(newMethod);
-            }
+    private static List<String> parameterTypes(final PsiMethod method) {
+        final List<String> types = new ArrayList<>();
+        for (final PsiParameter parameter : method.getParameterList().getParameters()) {
+            types.add(parameter.getType().getCanonicalText());
         }
-        // Otherwise replace the method
-        else if (replace) {
-            existingMethod.replace(newMethod);
+        return types;
+    }
+
+    /**
+     * @return the expression hashing a value of the given type without boxing it.
+     */
+    private static String hashExpression(final String typeText, final String value) {
+        if (typeText.endsWith("[]")) {
+            return "java.util.Arrays.hashCode(" + value + ")";
+        }
+        switch (typeText) {
+            case "int":
+            case "short":
+            case "byte":
+            case "char":
+                return value;
+            case "boolean":
+            case "long":
+            case "float":
+            case "double":
+                return MemberTemplates.boxedType(typeText) + ".hashCode(" + value + ")";
+            default:
+                return "java.util.Objects.hashCode(" + value + ")";
         }
+    }
 
-        // Return the new tree
-        return existingMethod;
+    /**
+     * @return the expression comparing two values of the given type, floating point by bits so NaN matches itself.
+     */
+    private static String equalsExpression(final String typeText, final String left, final String right) {
+        if (typeText.endsWith("[]")) {
+            return "java.util.Arrays.equals(" + left + ", " + right + ")";
+        }
+        switch (typeText) {
+            case "float":
+            case "double":
+                return MemberTemplates.boxedType(typeText) + ".compare(" + left + ", " + right + ") == 0";
+            default:
+                return MemberTemplates.boxedType(typeText) != null
+                       ? left + " == " + right
+                       : "java.util.Objects.equals(" + left + ", " + right + ")";
+        }
     }
 
     /**
-     * Get enable options for generation.
-     * @return a list of the enums that have been set.
+     * @return the name, numbered if it is already taken.
      */
-    private static EnumSet<GenerateOption> currentOptions() {
-        final EnumSet<GenerateOption> options = EnumSet.noneOf(GenerateOption.class);
-        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
-        for (final GenerateOption option : GenerateOption.values()) {
-            final boolean currentSetting = propertiesComponent.getBoolean(option.getProperty(),
-                                                                          false);
-            if (currentSetting) {
-                options.add(option);
-            }
+    private static String uniqueName(final String name, final Set<String> taken) {
+        String unique = name;
+        for (int i = 2; taken.contains(unique); i++) {
+            unique = name + i;
         }
-        return options;
+        return unique;
     }
 
     /**
-     * Generate an empty constructor with no arguments and no super to allow new class();.
-     *
-     * @param targetClass the target class to generate for.
-     * @return the empty constructor.
+     * Add toString, bounded along with its helpers when that is enabled.
      */
-    private PsiMethod generateEmptyConstructor(final PsiClass targetClass) {
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
-        LOGGER.trace("Adding constructor :\r\n" + constructor.getText());
-        return constructor;
+    private void addToString(final GenerationPlan.ClassPlan plan, final Set<GenerateOption> options) {
+        final boolean flat = options.contains(GenerateOption.INHERITED_FIELDS);
+        if (!options.contains(GenerateOption.BOUNDED_TO_STRING)) {
+            addMethod(plan, targetClass, MemberTemplates.toStringMethod(model, flat));
+            return;
+        }
+        final ToStringLimits limits = currentToStringLimits();
+        addMethod(plan, targetClass, MemberTemplates.boundedToStringMethod(model, flat, limits));
+        for (final String helper : MemberTemplates.boundedToStringHelpers(model, flat, limits)) {
+            addMethod(plan, targetClass, helper);
+        }
     }
 
     /**
-     * Generate a super constructor with no other arguments.
+     * Read the bounded toString limits from the settings. A limit that isn't a valid number falls back to its default
+     * and an invalid name pattern is ignored.
      *
-     * @param targetClass the target class to generate a super constructor for.
-     * @return the super constructor all args method.
-     */
-    private PsiMethod generateSuperConstructor(final PsiClass targetClass) {
-        // Initial sanity checks
-        if (targetClass == null
-            || targetClass.getName() == null
-            || targetClass.getSuperClass() == null) {
-            LOGGER.error("Failed to generate super, targetClass, class name or superclass is null " + targetClass);
-            return null;
+     * @return the limits.
+     */
+    public static ToStringLimits currentToStringLimits() {
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        final ToStringLimits.Builder builder = ToStringLimits.newBuilder();
+        try {
+            builder.withMaxFieldChars(propertiesComponent.getInt(TO_STRING_MAX_CHARS_PROPERTY,
+                                                                 ToStringLimits.DEFAULT_MAX_FIELD_CHARS));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring an invalid toString limit : " + e.getMessage());
         }
+        try {
+            builder.withMaxElements(propertiesComponent.getInt(TO_STRING_MAX_ELEMENTS_PROPERTY,
+                                                               ToStringLimits.DEFAULT_MAX_ELEMENTS));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring an invalid toString limit : " + e.getMessage());
+        }
+        final String redactedNames = propertiesComponent.getValue(TO_STRING_REDACTED_PROPERTY,
+                                                                  ToStringLimits.DEFAULT_REDACTED_NAMES);
+        for (final String pattern : ToStringLimits.splitNamePatterns(redactedNames)) {
+            try {
+                builder.withRedactedName(pattern);
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Ignoring invalid redacted name pattern : " + pattern);
+            }
+        }
+        final String skippedNames = propertiesComponent.getValue(TO_STRING_SKIPPED_PROPERTY, "");
+        for (final String pattern : ToStringLimits.splitNamePatterns(skippedNames)) {
+            try {
+                builder.withSkippedName(pattern);
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Ignoring invalid skipped name pattern : " + pattern);
+            }
+        }
+        return builder.build();
+    }
 
-        LOGGER.trace("Generating a super constructor for : " + targetClass.getName());
-
-        // Create the constructor method and mark it as private?
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
+    /**
+     * @return whether the generated object pools keep an instance per thread out of their shared queue.
+     */
+    public static boolean isPoolThreadLocal() {
+        return PropertiesComponent.getInstance().getBoolean(POOL_THREAD_LOCAL_PROPERTY, false);
+    }
 
-        // Get the super class' fields
-        List<PsiMethod> psiMethods = Arrays.asList(targetClass.getSuperClass().getConstructors());
+    /**
+     * Add a ClassNamePool companion class next to the target class, handing out instances with acquire() and taking
+     * them back with release(instance), which clears the selected fields to their type's default.
+     * <p>
+     * The free instances wait in a lock free ConcurrentLinkedQueue, bounded by an AtomicInteger that counts them since
+     * the queue's own size() walks it. A slot is reserved before an instance is queued, so a release past the capacity
+     * leaves the instance to the garbage collector instead. Hits and misses are counted in LongAdders so threads don't
+     * contend on the counters. When enabled in the settings a ThreadLocal holds one instance per thread in front of the
+     * queue. Generic classes, inner classes needing an outer instance and local classes are skipped. So are private
+     * nested classes, which the pool can't reach, classes with a selected field the pool can't clear and classes with
+     * a hand written class in the way of the pool, with the reason reported to the user.
+     *
+     * @param generationPlan the plan to add the companion class to.
+     * @param options the enabled options, the setters the release calls may only be about to be generated.
+     */
+    private void addObjectPool(final GenerationPlan generationPlan, final Set<GenerateOption> options) {
+        final String className = targetClass.getName();
+        final String qualifiedName = targetClass.getQualifiedName();
+        if (className == null
+            || qualifiedName == null
+            || targetClass.hasTypeParameters()
+            || targetClass.isInterface()
+            || targetClass.isEnum()
+            || targetClass.isRecord()
+            || targetClass.getContainingClass() != null && !targetClass.hasModifierProperty(PsiModifier.STATIC)) {
+            LOGGER.trace("Can't pool " + className + " - skipping.");
+            return;
+        }
+        for (PsiClass psiClass = targetClass; psiClass != null; psiClass = psiClass.getContainingClass()) {
+            if (psiClass.hasModifierProperty(PsiModifier.PRIVATE)) {
+                LOGGER.trace("Can't pool the private " + className + " - skipping.");
+                generationPlan.addSkipped("No object pool for " + className + ": a pool of its own file can't reach "
+                                          + "a private nested class.");
+                return;
+            }
+        }
 
-        // Get the largest one (hopefully all fields)
-        psiMethods.sort(Comparator.comparingInt(o -> o.getParameterList().getParametersCount()));
+        final String poolName = className + POOL_SUFFIX;
+        final StringBuilder clearing = new StringBuilder();
+        final List<String> unclearedFields = new ArrayList<>();
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            final PsiField field = fieldMember.getElement();
+            final String clear = clearStatement(field, options);
+            if (clear != null) {
+                clearing.append(clear);
+            } else {
+                unclearedFields.add(field.getName());
+            }
+        }
+        // a released instance still holding a value would hand it to whoever acquires it next
+        if (!unclearedFields.isEmpty()) {
+            LOGGER.trace("Can't clear " + unclearedFields + " from " + poolName + " - skipping.");
+            generationPlan.addSkipped("No object pool for " + className + ": " + String.join(", ", unclearedFields)
+                                      + " can't be cleared on release, being final or, without a setter, out of the "
+                                      + "pool's reach or caching a view out of its reach.");
+            return;
+        }
+        final String existingPool = existingPoolBlocker(poolName);
+        if (existingPool != null) {
+            LOGGER.trace("Not replacing " + poolName + " - " + existingPool + ".");
+            generationPlan.addSkipped("No object pool for " + className + ": " + existingPool + ".");
+            return;
+        }
+        // clearing went through the setters, which marked every field
+        if (dirtyTracking) {
+            clearing.append("instance.clearDirty();\n");
+        }
 
-        // Create a list of constructor parameters to add to for our constructor
-        List<PsiParameter> constructorParams = new ArrayList<>();
+        final boolean defaultConstructor = !targetClass.hasModifierProperty(PsiModifier.ABSTRACT)
+                                           && (options.contains(GenerateOption.EMPTY_CONSTRUCTOR)
+                                               || hasNoArgsConstructor());
+        final boolean threadLocal = isPoolThreadLocal();
+        final String queue = "java.util.concurrent.ConcurrentLinkedQueue";
+        final String counter = "java.util.concurrent.atomic.LongAdder";
+        final String supplier = "java.util.function.Supplier<" + qualifiedName + ">";
+
+        generationPlan.addCompanionClass(
+                poolName,
+                "public final class " + poolName + " {\n"
+                + "public static final int DEFAULT_CAPACITY = " + POOL_CAPACITY + ";\n"
+                + "private final " + supplier + " factory;\n"
+                + "private final int capacity;\n"
+                + "private final " + queue + "<" + qualifiedName + "> free = new " + queue + "<>();\n"
+                + "// the queue's size() walks it, so the free instances are counted here\n"
+                + "private final java.util.concurrent.atomic.AtomicInteger size = "
+                + "new java.util.concurrent.atomic.AtomicInteger();\n"
+                + "private final " + counter + " hits = new " + counter + "();\n"
+                + "private final " + counter + " misses = new " + counter + "();\n"
+                + (threadLocal
+                   ? "// an instance per thread kept out of the queue\n"
+                     + "private final java.lang.ThreadLocal<" + qualifiedName + "> local = "
+                     + "new java.lang.ThreadLocal<>();\n"
+                   : "")
+                + (defaultConstructor
+                   ? "public " + poolName + "() {\n"
+                     + "this(" + qualifiedName + "::new, DEFAULT_CAPACITY);\n"
+                     + "}\n"
+                   : "")
+                + "public " + poolName + "(" + supplier + " factory, int capacity) {\n"
+                + "if (capacity < 1) {\n"
+                + "throw new java.lang.IllegalArgumentException(\"capacity must be positive: \" + capacity);\n"
+                + "}\n"
+                + "this.factory = java.util.Objects.requireNonNull(factory, \"factory\");\n"
+                + "this.capacity = capacity;\n"
+                + "}\n"
+                + "public " + qualifiedName + " acquire() {\n"
+                + (threadLocal
+                   ? qualifiedName + " instance = local.get();\n"
+                     + "if (instance != null) {\n"
+                     + "local.set(null);\n"
+                     + "hits.increment();\n"
+                     + "return instance;\n"
+                     + "}\n"
+                     + "instance = free.poll();\n"
+                   : qualifiedName + " instance = free.poll();\n")
+                + "if (instance != null) {\n"
+                + "size.decrementAndGet();\n"
+                + "hits.increment();\n"
+                + "return instance;\n"
+                + "}\n"
+                + "misses.increment();\n"
+                + "return factory.get();\n"
+                + "}\n"
+                + "public void release(" + qualifiedName + " instance) {\n"
+                + "clear(instance);\n"
+                + (threadLocal
+                   ? "if (local.get() == null) {\n"
+                     + "local.set(instance);\n"
+                     + "return;\n"
+                     + "}\n"
+                   : "")
+                + "// a slot is taken before the offer so the queue never holds more than the capacity\n"
+                + "if (size.incrementAndGet() <= capacity) {\n"
+                + "free.offer(instance);\n"
+                + "} else {\n"
+                + "size.decrementAndGet();\n"
+                + "}\n"
+                + "}\n"
+                + "private static void clear(" + qualifiedName + " instance) {\n"
+                + clearing
+                + "}\n"
+                + "public int size() {\n"
+                + "return size.get();\n"
+                + "}\n"
+                + "public int capacity() {\n"
+                + "return capacity;\n"
+                + "}\n"
+                + "public long hits() {\n"
+                + "return hits.sum();\n"
+                + "}\n"
+                + "public long misses() {\n"
+                + "return misses.sum();\n"
+                + "}\n"
+                + "}");
+    }
 
-        // If there are super class constructor fields to add, do it
-        if (!psiMethods.isEmpty()) {
-            // Get the largest constuctor
-            PsiMethod longestSuperCon = psiMethods.get(psiMethods.size() - 1);
-            // Get the parameter list
-            PsiParameterList parameterList = longestSuperCon.getParameterList();
+    /**
+     * Check that the pool's file holds no class but a pool generated before, which the new one may replace. Generated
+     * pools are recognized by their members, since a pool hand written under the same name would be lost.
+     *
+     * @param poolName the name of the pool class.
+     * @return why the pool can't be written, or null if it can.
+     */
+    @Nullable
+    private String existingPoolBlocker(final String poolName) {
+        final PsiDirectory directory = file.getContainingDirectory();
+        final String fileName = poolName + "." + JavaFileType.DEFAULT_EXTENSION;
+        final PsiFile existingFile = directory == null ? null : directory.findFile(fileName);
+        if (existingFile == null) {
+            return null;
+        }
+        if (!(existingFile instanceof PsiJavaFile)) {
+            return fileName + " exists and isn't a Java file";
+        }
+        for (final PsiClass existing : ((PsiJavaFile) existingFile).getClasses()) {
+            if (poolName.equals(existing.getName())) {
+                return isGeneratedPool(existing) ? null : poolName + " exists and wasn't generated, so it's left alone";
+            }
+        }
+        return fileName + " exists without a " + poolName + " class";
+    }
 
-            // If the fields aren't marked private, add them to our constructor as parameters
-            constructorParams = Arrays.stream(parameterList.getParameters())
-                                      .filter(pl -> !pl.hasModifier(JvmModifier.PRIVATE))
-                                      .collect(Collectors.toList());
-            constructorParams.forEach(cp -> constructor.getParameterList().add(cp));
-        } else {
-            // If there are no super constructor parameters just add an empty super
-            LOGGER.trace("Super has no visible methods or constructors v0v.");
+    /**
+     * Does the class have the members a generated pool of the target class has?
+     */
+    private boolean isGeneratedPool(final PsiClass pool) {
+        for (final String fieldName : new String[]{"DEFAULT_CAPACITY", "factory", "capacity", "free", "size", "hits",
+                                                   "misses"}) {
+            if (pool.findFieldByName(fieldName, false) == null) {
+                return false;
+            }
         }
+        final String qualifiedName = targetClass.getQualifiedName();
+        for (final String methodName : new String[]{"release", "clear"}) {
+            boolean found = false;
+            for (final PsiMethod method : pool.findMethodsByName(methodName, false)) {
+                final PsiParameter[] parameters = method.getParameterList().getParameters();
+                found |= parameters.length == 1
+                         && parameters[0].getType() instanceof PsiClassType
+                         && Objects.equals(qualifiedName,
+                                           ((PsiClassType) parameters[0].getType()).rawType().getCanonicalText());
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return pool.findMethodsByName("acquire", false).length == 1;
+    }
 
-        // Create the super constructor and add it to the body before adding local parameters to constructor
-        String superText =
-                "super(" + constructorParams.stream()
-                                            .map(PsiNamedElement::getName)
-                                            .collect(Collectors.joining(", ")) + ");";
-        if (constructor.getBody() == null) {
-            LOGGER.error("Failed to get null constructor body!");
+    /**
+     * Build the statement the object pool clears a field with: its setter when it has or is about to get one,
+     * otherwise a direct assignment when the pool in the same package can reach the field. The assignment resets the
+     * view the getter caches of the field too, so a field whose view the pool can't reach can't be cleared.
+     *
+     * @return the statement, or null if the pool can't clear the field.
+     */
+    @Nullable
+    private String clearStatement(final PsiField field, final Set<GenerateOption> options) {
+        if (field.hasModifierProperty(PsiModifier.FINAL)) {
             return null;
         }
-        constructor.getBody().add(psiElementFactory.createStatementFromText(superText, null));
+        final String value = MemberTemplates.defaultValue(typeText(field));
+        final boolean packed = packing != null && packing.isPacked(field);
+        final String setterName = packed ? packing.setterName(field) : "set" + toUpperSnakeCase(field.getName());
+        if (packed || options.contains(GenerateOption.SETTERS) && !isInherited(field) || hasSetter(setterName)) {
+            return "instance." + setterName + "(" + value + ");\n";
+        }
+        if (field.hasModifierProperty(PsiModifier.PRIVATE)
+            || !JavaPsiFacade.getInstance(project).arePackagesTheSame(field, targetClass)) {
+            return null;
+        }
+        final String assignment = "instance." + field.getName() + " = " + value + ";\n";
+        final PsiClass owner = field.getContainingClass();
+        final PsiField view = owner == null ? null : owner.findFieldByName(viewFieldName(field), false);
+        final boolean viewed = !isInherited(field) && viewedFields.contains(field.getName())
+                               || view != null && GenerateUtils.isGeneratedState(view);
+        if (!viewed) {
+            return assignment;
+        }
+        // generated views are private, only one opened up by hand can be reset from the pool
+        return view != null
+               && !view.hasModifierProperty(PsiModifier.PRIVATE)
+               && JavaPsiFacade.getInstance(project).arePackagesTheSame(view, targetClass)
+               ? assignment + "instance." + view.getName() + " = null;\n"
+               : null;
+    }
 
-        LOGGER.trace("Adding constructor :\r\n" + constructor.getText());
+    private boolean hasSetter(final String setterName) {
+        for (final PsiMethod method : targetClass.findMethodsByName(setterName, true)) {
+            if (method.getParameterList().getParametersCount() == 1
+                && !method.hasModifierProperty(PsiModifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return constructor;
+    private boolean hasNoArgsConstructor() {
+        final PsiMethod[] constructors = targetClass.getConstructors();
+        if (constructors.length == 0) {
+            return true;
+        }
+        for (final PsiMethod constructor : constructors) {
+            if (constructor.getParameterList().isEmpty() && !constructor.hasModifierProperty(PsiModifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Generate a super constructor as a single object with no other arguments.
+     * Add a writeJson(StringBuilder) that appends the listed fields as a JSON object without reflection, along with
+     * estimateJsonSize() to presize the buffer and the string escaping helper both use.
+     * <p>
+     * The field names are known up front so the punctuation and quoted names between two values are folded into a
+     * single literal. Primitives and their boxes are appended directly, a null box appends null just like JSON wants.
+     * Floating point values go through a helper writing NaN and the infinities as null, JSON has no number for them.
+     * Strings, chars and enums are written as escaped strings, types with a writeJson(StringBuilder) of their own
+     * through it. Arrays and Iterables are written as JSON arrays and maps as objects, their elements the same way.
+     * A field of any other type has no JSON form, so it is left out and the user told why.
      *
-     * @param targetClass the target class to generate a super constructor for.
-     * @return the super constructor all args method.
-     */
-    private PsiMethod generateSuperObjectConstructor(final PsiClass targetClass) {
-        // Initial sanity checks
-        if (targetClass == null
-            || targetClass.getName() == null
-            || targetClass.getSuperClass() == null
-            || targetClass.getSuperClass().getName() == null) {
-            LOGGER.error("Failed to generate super, targetClass, class name or superclass is null " + targetClass);
-            return null;
+     * @param generationPlan the plan to report the left out fields to.
+     * @param plan the plan to add the members to.
+     * @param targetClass the target class.
+     * @param flat whether the superclass fields are listed along with the class' own.
+     */
+    private void addJsonWriter(final GenerationPlan generationPlan,
+                               final GenerationPlan.ClassPlan plan,
+                               final PsiClass targetClass,
+                               final boolean flat) {
+        final StringBuilder write = new StringBuilder();
+        final StringBuilder chain = new StringBuilder("out");
+        final StringBuilder estimate = new StringBuilder();
+        String pending = "{";
+        int literalSize = 0;
+        boolean first = true;
+        // the floating point types written, each needs its own helper
+        final Set<String> numberTypes = new LinkedHashSet<>();
+        final List<String> leftOut = new ArrayList<>();
+
+        for (final PsiField field : listedFields(flat)) {
+            ProgressManager.checkCanceled();
+            final String fieldRead = fieldRead(field);
+            if (fieldRead == null) {
+                continue;
+            }
+            final PsiType type = jsonType(field);
+            final String value = jsonValue(type, fieldRead, 0, numberTypes);
+            if (value == null) {
+                leftOut.add(field.getName());
+                continue;
+            }
+            pending += (first ? "" : ",") + "\"" + field.getName() + "\":";
+            first = false;
+            literalSize += pending.length();
+            chain.append(".append(").append(jsonLiteral(pending)).append(")");
+            pending = "";
+            estimate.append("size += ").append(jsonWidth(type, fieldRead)).append(";\n");
+
+            if (isJsonNumber(type)) {
+                chain.append(".append(").append(fieldRead).append(")");
+                continue;
+            }
+            // Anything else is a separate statement
+            write.append(chain).append(";\n").append(value);
+            chain.setLength(0);
+            chain.append("out");
+        }
+        pending += "}";
+        literalSize += pending.length();
+        chain.append(".append(").append(jsonLiteral(pending)).append(")");
+        write.append(chain).append(";\n");
+
+        if (!leftOut.isEmpty()) {
+            LOGGER.trace("No JSON form for " + leftOut + " - leaving them out.");
+            generationPlan.addSkipped("writeJson of " + targetClass.getName() + " leaves out "
+                                      + String.join(", ", leftOut) + ": "
+                                      + (dumb
+                                         ? "only primitives, strings and arrays of them can be written while indexing."
+                                         : "their types have no JSON form, give them a writeJson(StringBuilder)."));
         }
-        PsiClass superClass = targetClass.getSuperClass();
 
-        LOGGER.trace("Generating a single object super constructor for : " + targetClass.getName());
+        final String stringBuilder = dumb ? "StringBuilder" : CommonClassNames.JAVA_LANG_STRING_BUILDER;
+        addMethod(plan, targetClass, "public void writeJson(" + stringBuilder + " out) {\n" + write + "}");
+        addMethod(plan,
+                  targetClass,
+                  "public int estimateJsonSize() {\n"
+                  + "int size = " + literalSize + ";\n"
+                  + estimate
+                  + "return size;\n"
+                  + "}");
+        addMethod(plan,
+                  targetClass,
+                  "private static void " + JSON_STRING_WRITER + "(" + stringBuilder + " out, "
+                  + (dumb ? "CharSequence" : "java.lang.CharSequence") + " value) {\n"
+                  + "if (value == null) {\n"
+                  + "out.append(\"null\");\n"
+                  + "return;\n"
+                  + "}\n"
+                  + "out.append('\"');\n"
+                  + "for (int i = 0; i < value.length(); i++) {\n"
+                  + "char c = value.charAt(i);\n"
+                  + "if (c == '\"' || c == '\\\\') {\n"
+                  + "out.append('\\\\').append(c);\n"
+                  + "} else if (c < 0x20) {\n"
+                  + "out.append(c < 0x10 ? \"\\\\u000\" : \"\\\\u001\").append(Character.forDigit(c & 0xF, 16));\n"
+                  + "} else {\n"
+                  + "out.append(c);\n"
+                  + "}\n"
+                  + "}\n"
+                  + "out.append('\"');\n"
+                  + "}");
+        for (final String numberType : numberTypes) {
+            addMethod(plan, targetClass, MemberTemplates.jsonNumberWriter(numberType, stringBuilder));
+        }
+    }
 
-        // If there are no object superclass constructors then don't attempt this
-        boolean hasObjectConstructor = Arrays.stream(superClass.getConstructors())
-                                             .map(PsiMethod::getParameterList)
-                                             .filter(pl -> pl.getParameters().length > 0)
-                                             .map(pl -> pl.getParameter(0))
-                                             .filter(Objects::nonNull)
-                                             .map(p -> p.getType().getCanonicalText())
-                                             .anyMatch(ct -> ct.equals(superClass.getQualifiedName()));
-        if (!hasObjectConstructor) {
-            LOGGER.trace("No object superclass constructor found, exiting.");
-            return null;
+    /**
+     * @param json raw JSON text, only ever punctuation and field names.
+     * @return the Java string literal for it.
+     */
+    private static String jsonLiteral(final String json) {
+        return MemberTemplates.javaString(json);
+    }
+
+    /**
+     * @return the field's type as seen from the target class, as written while indexing.
+     */
+    private PsiType jsonType(final PsiField field) {
+        return dumb ? field.getType() : psiElementFactory.createTypeFromText(typeText(field), targetClass);
+    }
+
+    /**
+     * @return the primitive a primitive or box type holds, null for any other type.
+     */
+    @Nullable
+    private static String jsonPrimitive(@Nullable final PsiType type) {
+        if (type instanceof PsiPrimitiveType) {
+            return type.getCanonicalText();
         }
+        if (type instanceof PsiClassType) {
+            return MemberTemplates.unboxedType(stripJavaLang(((PsiClassType) type).rawType().getCanonicalText()));
+        }
+        return null;
+    }
 
-        // Create the constructor method and mark it as public
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
+    /**
+     * Is the type a number or boolean appended as it is, a null box included?
+     */
+    private static boolean isJsonNumber(final PsiType type) {
+        final String primitive = jsonPrimitive(type);
+        return primitive != null && !"char".equals(primitive) && !"float".equals(primitive)
+               && !"double".equals(primitive);
+    }
 
-        // Get the super class
-        if (superClass.getName() == null) {
-            LOGGER.error("Failed to get super class.");
+    /**
+     * Build the statements appending a value as JSON, elements of arrays, Iterables and maps in loops of their own.
+     *
+     * @param type the value's type.
+     * @param value the expression for the value.
+     * @param depth how many loops the value is nested in, to keep the loop variables apart.
+     * @param numberTypes the floating point types written so far, to add any written here to.
+     * @return the statements, or null if the type has no JSON form.
+     */
+    @Nullable
+    private String jsonValue(final PsiType type, final String value, final int depth, final Set<String> numberTypes) {
+        if (type instanceof PsiPrimitiveType) {
+            return jsonScalar(type.getCanonicalText(), type.getCanonicalText(), value, numberTypes);
+        }
+        if (type instanceof PsiArrayType) {
+            final PsiType componentType = ((PsiArrayType) type).getComponentType();
+            return jsonArray(componentType, value, depth, numberTypes);
+        }
+        if (!(type instanceof PsiClassType)) {
             return null;
         }
 
-        final PsiParameter conParam =
-                psiElementFactory.createParameter(toLowerSnakeCase(superClass.getName()),
-                                                  targetClass.getSuperTypes()[0]);
-        constructor.getParameterList().add(conParam);
+        final PsiClassType classType = (PsiClassType) type;
+        final String rawText = stripJavaLang(classType.rawType().getCanonicalText());
+        if ("String".equals(rawText) || "CharSequence".equals(rawText)) {
+            return JSON_STRING_WRITER + "(out, " + value + ");\n";
+        }
+        final String unboxed = MemberTemplates.unboxedType(rawText);
+        if (unboxed != null) {
+            return jsonScalar(unboxed, type.getCanonicalText(), value, numberTypes);
+        }
 
-        // Add the single super class parameter
-        String superText =
-                "super(" + toLowerSnakeCase(superClass.getName()) + ");";
-        if (constructor.getBody() == null) {
-            LOGGER.error("Failed to get null constructor body!");
+        final PsiClass valueClass = dumb ? null : classType.resolve();
+        if (valueClass == null) {
             return null;
         }
-        constructor.getBody().add(psiElementFactory.createStatementFromText(superText, null));
+        if (valueClass.isEnum()) {
+            return JSON_STRING_WRITER + "(out, " + value + " == null ? null : " + value + ".name());\n";
+        }
+        if (hasMethod(valueClass, "writeJson", CommonClassNames.JAVA_LANG_STRING_BUILDER)) {
+            return "if (" + value + " == null) {\n"
+                   + "out.append(\"null\");\n"
+                   + "} else {\n"
+                   + value + ".writeJson(out);\n"
+                   + "}\n";
+        }
+        if (InheritanceUtil.isInheritor(valueClass, CommonClassNames.JAVA_UTIL_MAP)) {
+            return jsonObject(type, value, depth, numberTypes);
+        }
+        if (InheritanceUtil.isInheritor(valueClass, CommonClassNames.JAVA_LANG_ITERABLE)) {
+            final PsiType elementType = PsiUtil.substituteTypeParameter(type,
+                                                                        CommonClassNames.JAVA_LANG_ITERABLE,
+                                                                        0,
+                                                                        false);
+            final PsiType elementBound = upperBound(elementType);
+            return elementBound == null ? null : jsonArray(elementBound, value, depth, numberTypes);
+        }
+        return null;
+    }
 
-        LOGGER.trace("Adding constructor :\r\n" + constructor.getText());
+    /**
+     * @return a primitive or box written as a number, a floating point one through its helper, or a char as a string.
+     */
+    private static String jsonScalar(final String primitive,
+                                     final String typeText,
+                                     final String value,
+                                     final Set<String> numberTypes) {
+        if ("float".equals(primitive) || "double".equals(primitive)) {
+            numberTypes.add(typeText);
+            return MemberTemplates.JSON_NUMBER_WRITER + "(out, " + value + ");\n";
+        }
+        if ("char".equals(primitive)) {
+            return JSON_STRING_WRITER + "(out, "
+                   + (primitive.equals(typeText) ? "" : value + " == null ? null : ")
+                   + "String.valueOf(" + value + "));\n";
+        }
+        return "out.append(" + value + ");\n";
+    }
 
-        return constructor;
+    /**
+     * @return the statements writing an array or Iterable as a JSON array, or null if its elements have no JSON form.
+     */
+    @Nullable
+    private String jsonArray(final PsiType elementType,
+                             final String value,
+                             final int depth,
+                             final Set<String> numberTypes) {
+        final String element = "element" + depth;
+        final String elementJson = jsonValue(elementType, element, depth + 1, numberTypes);
+        if (elementJson == null) {
+            return null;
+        }
+        final String firstElement = "first" + depth;
+        return "if (" + value + " == null) {\n"
+               + "out.append(\"null\");\n"
+               + "} else {\n"
+               + "out.append('[');\n"
+               + "boolean " + firstElement + " = true;\n"
+               + "for (" + elementType.getCanonicalText() + " " + element + " : " + value + ") {\n"
+               + "if (" + firstElement + ") {\n"
+               + firstElement + " = false;\n"
+               + "} else {\n"
+               + "out.append(',');\n"
+               + "}\n"
+               + elementJson
+               + "}\n"
+               + "out.append(']');\n"
+               + "}\n";
     }
 
     /**
-     * Generate a super constructor with all arguments.
-     *
-     * @param targetClass the target class to generate a super constructor for.
-     * @return the super constructor all args method.
-     */
-    private PsiMethod generateAllArgsSuperConstructor(final PsiClass targetClass) {
-        // Initial sanity checks
-        if (targetClass == null
-            || targetClass.getName() == null
-            || targetClass.getSuperClass() == null) {
-            LOGGER.error("Failed to generate super, targetClass, class name or superclass is null " + targetClass);
+     * @return the statements writing a map as a JSON object, or null if its keys or values have no JSON form. Keys are
+     * written as strings, so only strings, boxes and enums are taken as keys.
+     */
+    @Nullable
+    private String jsonObject(final PsiType mapType,
+                              final String value,
+                              final int depth,
+                              final Set<String> numberTypes) {
+        final PsiType keyType = PsiUtil.substituteTypeParameter(mapType, CommonClassNames.JAVA_UTIL_MAP, 0, false);
+        final PsiType valueType = PsiUtil.substituteTypeParameter(mapType, CommonClassNames.JAVA_UTIL_MAP, 1, false);
+        final PsiType keyBound = upperBound(keyType);
+        final PsiType valueBound = upperBound(valueType);
+        if (!(keyBound instanceof PsiClassType) || valueBound == null) {
             return null;
         }
 
-        LOGGER.trace("Generating all args super constructor for : " + targetClass.getName());
+        final String entry = "entry" + depth;
+        final String key = entry + ".getKey()";
+        final String keyText;
+        final PsiClass keyClass = ((PsiClassType) keyBound).resolve();
+        final String keyRawText = stripJavaLang(((PsiClassType) keyBound).rawType().getCanonicalText());
+        if ("String".equals(keyRawText) || "CharSequence".equals(keyRawText)
+            || MemberTemplates.unboxedType(keyRawText) != null) {
+            keyText = "String.valueOf(" + key + ")";
+        } else if (keyClass != null && keyClass.isEnum()) {
+            keyText = key + " == null ? \"null\" : " + key + ".name()";
+        } else {
+            return null;
+        }
+        final String valueJson = jsonValue(valueBound, entry + ".getValue()", depth + 1, numberTypes);
+        if (valueJson == null) {
+            return null;
+        }
 
-        // Create the constructor method and mark it as public
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
+        final String firstEntry = "first" + depth;
+        return "if (" + value + " == null) {\n"
+               + "out.append(\"null\");\n"
+               + "} else {\n"
+               + "out.append('{');\n"
+               + "boolean " + firstEntry + " = true;\n"
+               + "for (java.util.Map.Entry<" + keyType.getCanonicalText() + ", " + valueType.getCanonicalText()
+               + "> " + entry + " : " + value + ".entrySet()) {\n"
+               + "if (" + firstEntry + ") {\n"
+               + firstEntry + " = false;\n"
+               + "} else {\n"
+               + "out.append(',');\n"
+               + "}\n"
+               + JSON_STRING_WRITER + "(out, " + keyText + ");\n"
+               + "out.append(':');\n"
+               + valueJson
+               + "}\n"
+               + "out.append('}');\n"
+               + "}\n";
+    }
 
-        // Get the super class' fields
-        List<PsiMethod> psiMethods = Arrays.asList(targetClass.getSuperClass().getConstructors());
+    /**
+     * @return the type an element of a wildcard type argument can be read as, or null if there's none to go on.
+     */
+    @Nullable
+    private static PsiType upperBound(@Nullable final PsiType type) {
+        if (type instanceof PsiWildcardType) {
+            final PsiWildcardType wildcard = (PsiWildcardType) type;
+            return wildcard.isExtends() ? wildcard.getExtendsBound() : null;
+        }
+        return type;
+    }
 
-        // Get the largest one (hopefully all fields)
-        psiMethods.sort(Comparator.comparingInt(o -> o.getParameterList().getParametersCount()));
+    /**
+     * @return the expression estimateJsonSize() adds for a value, arrays, collections and maps by their size.
+     */
+    private String jsonWidth(final PsiType type, final String value) {
+        if (type instanceof PsiPrimitiveType) {
+            return String.valueOf(JSON_WIDTHS.get(type.getCanonicalText()));
+        }
+        if (type instanceof PsiArrayType) {
+            return value + " == null ? 4 : 2 + " + value + ".length * "
+                   + (elementWidth(((PsiArrayType) type).getComponentType()) + 1);
+        }
+        if (!(type instanceof PsiClassType)) {
+            return String.valueOf(UNKNOWN_JSON_WIDTH);
+        }
+        final PsiClassType classType = (PsiClassType) type;
+        final String rawText = stripJavaLang(classType.rawType().getCanonicalText());
+        if ("String".equals(rawText) || "CharSequence".equals(rawText)) {
+            return value + " == null ? 4 : " + value + ".length() + 2";
+        }
+        if (jsonPrimitive(type) != null) {
+            return String.valueOf(JSON_WIDTHS.get(jsonPrimitive(type)));
+        }
+        final PsiClass valueClass = dumb ? null : classType.resolve();
+        if (valueClass == null) {
+            return String.valueOf(UNKNOWN_JSON_WIDTH);
+        }
+        final boolean nested = hasMethod(valueClass, "writeJson", CommonClassNames.JAVA_LANG_STRING_BUILDER);
+        if (nested && hasMethod(valueClass, "estimateJsonSize")) {
+            return value + " == null ? 4 : " + value + ".estimateJsonSize()";
+        }
+        if (!nested && InheritanceUtil.isInheritor(valueClass, CommonClassNames.JAVA_UTIL_MAP)) {
+            return value + " == null ? 4 : 2 + " + value + ".size() * " + (2 * UNKNOWN_JSON_WIDTH + 2);
+        }
+        if (!nested && InheritanceUtil.isInheritor(valueClass, CommonClassNames.JAVA_UTIL_COLLECTION)) {
+            final PsiType elementType =
+                upperBound(PsiUtil.substituteTypeParameter(type, CommonClassNames.JAVA_UTIL_COLLECTION, 0, false));
+            return value + " == null ? 4 : 2 + " + value + ".size() * " + (elementWidth(elementType) + 1);
+        }
+        return String.valueOf(UNKNOWN_JSON_WIDTH);
+    }
 
-        // Create a list of constructor parameters to add to for our constructor
-        List<PsiParameter> constructorParams = new ArrayList<>();
+    /**
+     * @return the width allowed for each element of an array or collection, the widest a primitive or box takes.
+     */
+    private static int elementWidth(@Nullable final PsiType elementType) {
+        final String primitive = jsonPrimitive(elementType);
+        return primitive != null ? JSON_WIDTHS.get(primitive) : UNKNOWN_JSON_WIDTH;
+    }
 
-        // If there are super class constructor fields to add, do it
-        if (!psiMethods.isEmpty()) {
-            // Get the largest constuctor
-            PsiMethod longestSuperCon = psiMethods.get(psiMethods.size() - 1);
-            // Get the parameter list
-            PsiParameterList parameterList = longestSuperCon.getParameterList();
+    /**
+     * Does the class have a method with the given parameter types?
+     */
+    private static boolean hasMethod(final PsiClass psiClass, final String name, final String... parameterTypes) {
+        for (final PsiMethod method : psiClass.findMethodsByName(name, true)) {
+            final PsiParameter[] parameters = method.getParameterList().getParameters();
+            if (parameters.length != parameterTypes.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameters.length; i++) {
+                matches &= parameters[i].getType().getCanonicalText().equals(parameterTypes[i]);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            // If the fields aren't marked private, add them to our constructor as parameters
-            constructorParams = Arrays.stream(parameterList.getParameters())
-                                      .filter(pl -> !pl.hasModifier(JvmModifier.PRIVATE))
-                                      .collect(Collectors.toList());
-            constructorParams.forEach(cp -> constructor.getParameterList().add(cp));
-        } else {
-            // If there are no super constructor parameters just add an empty super
-            LOGGER.trace("Super has no visible methods or constructors v0v.");
+    /**
+     * Add a reflection free property table:a nested Meta class with an index constant per selected field, plus
+     * get(int)/set(int, Object) and unboxed variants per primitive type that dispatch on the index through a switch.
+     *
+     * @param plan the plan to add the members to.
+     * @param targetClass the target class.
+     */
+    private void addPropertyTable(final GenerationPlan.ClassPlan plan, final PsiClass targetClass) {
+        plan.addInnerClass(MemberTemplates.propertyTable(model),
+                           targetClass.findInnerClassByName(MemberTemplates.PROPERTY_TABLE_CLASS, false));
+        for (final String accessor : MemberTemplates.propertyAccessors(model, dirtyTracking, viewedFields)) {
+            addMethod(plan, targetClass, accessor);
         }
+    }
 
-        // Create the super constructor and add it to the body before adding local parameters to constructor
-        String superText =
-                "super(" + constructorParams.stream()
-                                            .map(PsiNamedElement::getName)
-                                            .collect(Collectors.joining(", ")) + ");";
-        if (constructor.getBody() == null) {
-            LOGGER.error("Failed to get null constructor body!");
-            return null;
+    /**
+     * Can the class have a reusable builder? Its all args constructor has to be callable from a nested class without an
+     * outer instance, so abstract, generic and inner classes are skipped.
+     */
+    private boolean hasReusableBuilder(final Set<GenerateOption> options) {
+        if (!options.contains(GenerateOption.REUSABLE_BUILDER)) {
+            return false;
+        }
+        if (targetClass.hasModifierProperty(PsiModifier.ABSTRACT)
+            || targetClass.hasTypeParameters()
+            || targetClass.isInterface()
+            || targetClass.isEnum()
+            || targetClass.isRecord()
+            || targetClass.getContainingClass() != null && !targetClass.hasModifierProperty(PsiModifier.STATIC)) {
+            LOGGER.trace("Can't build " + targetClass.getName() + " from a nested builder - skipping.");
+            return false;
         }
-        constructor.getBody().add(psiElementFactory.createStatementFromText(superText, null));
+        return true;
+    }
+
+    /**
+     * Add a nested Builder to be reused through reset() instead of allocated per instance, with a scratch field per
+     * selected field, build() through the all args constructor and buildInto(existing) filling an existing instance
+     * the way the setters would, cached views reset and fields marked dirty.
+     *
+     * @param plan the plan to add the builder to.
+     * @param targetClass the target class.
+     */
+    private void addReusableBuilder(final GenerationPlan.ClassPlan plan, final PsiClass targetClass) {
+        plan.addInnerClass(MemberTemplates.reusableBuilder(model, dirtyTracking, viewedFields),
+                           targetClass.findInnerClassByName(MemberTemplates.BUILDER_CLASS, false));
+    }
 
-        // Loop through local class fields and add them as params
+    /**
+     * Add a dirty mask with a bit per own selected field that can be set, set by the setters, the property table and
+     * the builder's buildInto, a nested Dirty class with each field's bit index, and isDirty(int)/dirtyMask()/
+     * clearDirty() so a persistence layer can write only the changed fields. The mask goes after the last own selected
+     * field.
+     *
+     * @param plan the plan to add the members to.
+     * @param targetClass the target class.
+     */
+    private void addDirtyTracking(final GenerationPlan.ClassPlan plan, final PsiClass targetClass) {
+        PsiField lastField = null;
         for (final PsiFieldMember fieldMember : selectedFields) {
-            final PsiField field = fieldMember.getElement();
+            if (!isInherited(fieldMember.getElement())) {
+                lastField = fieldMember.getElement();
+            }
+        }
+        if (lastField == null) {
+            return;
+        }
 
-            // Create the param and add it to the parameter list
-            final PsiParameter conParam =
-                    psiElementFactory.createParameter(toLowerSnakeCase(field.getName()),
-                                                      field.getType());
-            constructor.getParameterList().add(conParam);
+        plan.addInnerClass(MemberTemplates.dirtyFieldsClass(model),
+                           targetClass.findInnerClassByName(MemberTemplates.DIRTY_FIELDS_CLASS, false));
+        plan.addField(MemberTemplates.dirtyBitsField(model),
+                      targetClass.findFieldByName(MemberTemplates.DIRTY_BITS_FIELD, false),
+                      lastField);
+        for (final String method : MemberTemplates.dirtyTrackingMethods(model)) {
+            addMethod(plan, targetClass, method);
         }
+    }
 
-        // Add the local set statements for local fields
-        for (PsiFieldMember fieldMember : selectedFields) {
-            final PsiField field = fieldMember.getElement();
+    /**
+     * Replace the packed fields with their words, declared where the first of them was, and rewrite every reference
+     * to them in the file to go through their accessors. The fields are removed last, once the members anchored on
+     * them are in place.
+     *
+     * @param plan the plan to add the changes to.
+     */
+    private void addPackedFields(final GenerationPlan.ClassPlan plan) {
+        PsiField firstField = null;
+        for (final PsiField field : packing.getFields()) {
+            if (firstField == null || field.getTextOffset() < firstField.getTextOffset()) {
+                firstField = field;
+            }
+        }
 
-            final String assignText =
-                    "this." + field.getName() + " = " + toLowerSnakeCase(field.getName()) + ";";
-            constructor.getBody().add(psiElementFactory.createStatementFromText(assignText, null));
+        // each declaration goes right after the first field, so they are added last to first
+        final List<String> declarations = packing.fieldDeclarations();
+        for (int i = declarations.size() - 1; i >= 0; i--) {
+            plan.addField(declarations.get(i), null, firstField);
+        }
+        for (final Map.Entry<PsiExpression, String> rewrite : packing.getRewrites().entrySet()) {
+            plan.replaceExpression(rewrite.getKey(), rewrite.getValue());
+        }
+        for (final PsiField field : packing.getFields()) {
+            plan.removeField(field);
         }
+    }
 
-        LOGGER.trace("Adding constructor :\r\n" + constructor.getText());
+    /**
+     * Is the field declared in a superclass of the target class?
+     */
+    private boolean isInherited(final PsiField field) {
+        return fieldModel(field).isInherited();
+    }
 
-        return constructor;
+    /**
+     * @return the expression reading the field from the target class, or null if it can't be read.
+     */
+    @Nullable
+    private String fieldRead(final PsiField field) {
+        return fieldModel(field).getReadExpression();
+    }
+
+    @Override
+    public String toString() {
+        return "GenerateGenerator{" + "project=" + project + ", file=" + file + ", targetClass=" + targetClass
+               + ", selectedFields=" + selectedFields + ", psiElementFactory=" + psiElementFactory
+               + '}';
     }
 
     /**
-     * Generate an all args constructor for the target class.
-     *
-     * @param targetClass the target class to operate on.
+     * Add a single setter for a field.
      *
-     * @return the all args constructor.
+     * @param field the field to add the setter for.
+     * @return a setter taking the argument with the field's type and setting this.field.
      */
-    private PsiMethod genAllArgsConstr(final PsiClass targetClass) {
-        // Initial sanity checks
-        if (targetClass == null
-            || targetClass.getName() == null) {
-            LOGGER.error("Failed to generate all args, targetClass, class name is null " + targetClass);
-            return null;
+    private String generateSetter(PsiField field) {
+        LOGGER.trace("Generating setter for : " + field.getName());
+
+        final String name = toLowerSnakeCase(field.getName());
+        final String typeText = typeText(field);
+        final AccessorStrategy strategy = accessorStrategy.resolve(typeText, !dumb);
+        final String dirtyMark = dirtyMark(field);
+        if (strategy == AccessorStrategy.RAW) {
+            return MemberTemplates.setter(fieldModel(field), dirtyMark);
         }
+        // the stored copy stays mutable for the class' own code, only the getter's copy may be unmodifiable
+        final String value = strategy == AccessorStrategy.COPY
+                             ? AccessorStrategy.copyExpression(typeText, !dumb, name, false)
+                             : name;
+
+        return "public void set" + toUpperSnakeCase(field.getName()) + "("
+               + typeText + " " + name + ") {\n"
+               + "this." + name + " = " + value + ";\n"
+               + (strategy == AccessorStrategy.VIEW ? "this." + viewFieldName(field) + " = null;\n" : "")
+               + dirtyMark
+               + "}";
+    }
+
+    /**
+     * Add a single getter for a field.
+     *
+     * @param field the field to add the getter for.
+     * @return a getter returning this.field.
+     */
+    private String generateGetter(PsiField field) {
+        LOGGER.trace("Generating getter for : " + field.getName());
 
-        LOGGER.trace("Generating all args constructor for : " + targetClass.getName());
+        final String name = toLowerSnakeCase(field.getName());
+        final String typeText = typeText(field);
+        final String getter = "public " + typeText + " get" + toUpperSnakeCase(field.getName()) + "() {\n";
+        switch (accessorStrategy.resolve(typeText, !dumb)) {
+            case COPY:
+                return getter
+                       + "return " + AccessorStrategy.copyExpression(typeText, !dumb, "this." + name, java10) + ";\n"
+                       + "}";
+            case VIEW:
+                // the view is created once per value set, racing threads at worst create one each
+                return getter
+                       + typeText + " view = this." + viewFieldName(field) + ";\n"
+                       + "if (view == null && this." + name + " != null) {\n"
+                       + "view = " + AccessorStrategy.viewExpression(typeText, !dumb, "this." + name) + ";\n"
+                       + "this." + viewFieldName(field) + " = view;\n"
+                       + "}\n"
+                       + "return view;\n"
+                       + "}";
+            default:
+                return MemberTemplates.getter(fieldModel(field));
+        }
+    }
 
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
+    /**
+     * @return the statement marking the field in the dirty mask, empty when not tracking dirty fields.
+     */
+    private String dirtyMark(final PsiField field) {
+        return dirtyTracking ? MemberTemplates.dirtyMark(model, fieldModel(field)) : "";
+    }
 
+    /**
+     * @return the own selected fields with a view field, one about to be added along with the accessors or one left
+     * from accessors generated before.
+     */
+    private Set<String> viewedFields(final Set<GenerateOption> options) {
+        final boolean accessors = options.contains(GenerateOption.GETTERS) || options.contains(GenerateOption.SETTERS);
+        final Set<String> viewed = new HashSet<>();
         for (final PsiFieldMember fieldMember : selectedFields) {
             final PsiField field = fieldMember.getElement();
+            if (isInherited(field) || packing != null && packing.isPacked(field)) {
+                continue;
+            }
+            final PsiField existing = targetClass.findFieldByName(viewFieldName(field), false);
+            if (accessors && accessorStrategy.resolve(typeText(field), !dumb) == AccessorStrategy.VIEW
+                || existing != null && GenerateUtils.isGeneratedState(existing)) {
+                viewed.add(field.getName());
+            }
+        }
+        return viewed;
+    }
+
+    private static String viewFieldName(final PsiField field) {
+        return field.getName() + AccessorStrategy.VIEW_SUFFIX;
+    }
 
-            final PsiParameter conParam =
-                    psiElementFactory.createParameter(toLowerSnakeCase(field.getName()),
-                                                      field.getType());
-            constructor.getParameterList().add(conParam);
+    /**
+     * Plan the field caching a field's unmodifiable view, right after the field, if its accessors use one.
+     *
+     * @param plan the plan to add the field to.
+     * @param field the viewed field.
+     */
+    private void addViewField(final GenerationPlan.ClassPlan plan, final PsiField field) {
+        final String typeText = typeText(field);
+        if (accessorStrategy.resolve(typeText, !dumb) != AccessorStrategy.VIEW) {
+            return;
         }
+        // an existing view of the same type is left alone
+        final PsiField existing = targetClass.findFieldByName(viewFieldName(field), false);
+        final PsiTypeElement existingType = existing == null ? null : existing.getTypeElement();
+        final PsiTypeElement fieldType = field.getTypeElement();
+        if (existingType != null && fieldType != null && existingType.getText().equals(fieldType.getText())) {
+            return;
+        }
+        plan.addField("private transient " + typeText + " " + viewFieldName(field) + ";", existing, field);
+    }
 
-        for (PsiFieldMember fieldMember : selectedFields) {
-            final PsiField field = fieldMember.getElement();
+    /**
+     * Plan a method for the PSI Tree. If this has an existing method it will be overwritten, if there is no existing
+     * method it will be placed after the previously planned member.
+     *
+     * @param plan the plan to add the method to.
+     * @param target the target class to operate on.
+     * @param methodText the full text of the new method.
+     */
+    private void addMethod(@NotNull final GenerationPlan.ClassPlan plan,
+                           @NotNull final PsiClass target,
+                           @NotNull final String methodText) {
+        LOGGER.trace("Adding method to target : " + target.getName());
+
+        final PsiMethod newMethod = psiElementFactory.createMethodFromText(methodText, target);
+
+        // While indexing signatures can't be resolved, so match on the parameter types as written
+        if (dumb) {
+            plan.add(methodText, findMethodSyntactically(target, newMethod));
+            return;
+        }
+
+        // Get the existing method if it exists.
+        PsiMethod existingMethod = target.findMethodBySignature(newMethod, false);
+
+        // If there's no existing method and the new method is a constructor, set this to be the constructor
+        if (existingMethod == null && newMethod.isConstructor()) {
+            for (final PsiMethod constructor : target.getConstructors()) {
+                if (GenerateUtils.areParameterListsEqual(constructor.getParameterList(),
+                                                         newMethod.getParameterList())) {
+                    existingMethod = constructor;
+                    break;
+                }
+            }
+        }
+
+        // If the existing method is null the method is inserted after the last one, otherwise it replaces it
+        plan.add(methodText, existingMethod);
+    }
 
-            final String assignText =
-                    "this." + field.getName() + " = " + toLowerSnakeCase(field.getName()) + ";";
-            constructor.getBody().add(psiElementFactory.createStatementFromText(assignText, null));
+    /**
+     * Find a method or constructor of the target class with the same name and parameter types as written.
+     *
+     * @param target the class to search.
+     * @param newMethod the new method.
+     * @return the matching method, or null if there isn't one.
+     */
+    @Nullable
+    private static PsiMethod findMethodSyntactically(final PsiClass target, final PsiMethod newMethod) {
+        final List<String> newParameterTypes = parameterTypeTexts(newMethod);
+        for (final PsiMethod method : target.getMethods()) {
+            if (method.isConstructor() == newMethod.isConstructor()
+                && (method.isConstructor() || method.getName().equals(newMethod.getName()))
+                && parameterTypeTexts(method).equals(newParameterTypes)) {
+                return method;
+            }
         }
+        return null;
+    }
 
-        LOGGER.trace("Adding constructor :\r\n" + constructor.getText());
+    private static List<String> parameterTypeTexts(final PsiMethod method) {
+        final List<String> typeTexts = new ArrayList<>();
+        for (final PsiParameter parameter : method.getParameterList().getParameters()) {
+            final PsiTypeElement typeElement = parameter.getTypeElement();
+            typeTexts.add(ClassShape.normalizeType(typeElement == null ? "" : typeElement.getText()));
+        }
+        return typeTexts;
+    }
 
-        return constructor;
+    /**
+     * Get enable options for generation.
+     * @return a list of the enums that have been set.
+     */
+    private static EnumSet<GenerateOption> currentOptions() {
+        final EnumSet<GenerateOption> options = EnumSet.noneOf(GenerateOption.class);
+        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+        for (final GenerateOption option : GenerateOption.values()) {
+            final boolean currentSetting = propertiesComponent.getBoolean(option.getProperty(),
+                                                                          false);
+            if (currentSetting) {
+                options.add(option);
+            }
+        }
+        return options;
     }
 }
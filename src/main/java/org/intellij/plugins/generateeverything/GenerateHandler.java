@@ -7,7 +7,9 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorModificationUtil;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
@@ -18,7 +20,7 @@ import java.util.List;
 import static org.intellij.plugins.generateeverything.GenerateOptionCollector.collectFields;
 import static org.intellij.plugins.generateeverything.GenerateOptionSelector.selectFieldsAndOptions;
 
-public class GenerateHandler implements LanguageCodeInsightActionHandler {
+public class GenerateHandler implements LanguageCodeInsightActionHandler, DumbAware {
     @Override
     public boolean isValidFor(Editor editor, PsiFile file) {
         if (!(file instanceof PsiJavaFile))
@@ -68,7 +70,12 @@ public class GenerateHandler implements LanguageCodeInsightActionHandler {
                 return;
             }
 
-            GenerateGenerator.generate(project, editor, file, selectedFields);
+            final PsiClass targetClass = GenerateUtils.getStaticOrTopLevelClass(file, editor);
+            if (targetClass == null) {
+                return;
+            }
+
+            GenerateGenerator.generate(project, targetClass, file, selectedFields);
         }
     }
 
@@ -1,19 +1,29 @@
 package org.intellij.plugins.generateeverything;
 
 import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.*;
-import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.psi.util.TypeConversionUtil;
+import com.intellij.psi.util.*;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.intellij.plugins.generateeverything.GenerateUtils.hasLowerCaseChar;
+import static org.intellij.plugins.generateeverything.GenerateUtils.isGeneratedState;
 
 public final class GenerateOptionCollector {
 
+    private static final Key<CachedValue<ConcurrentMap<String, List<PsiField>>>> INHERITED_FIELDS =
+            Key.create("GenerateOptionCollector.INHERITED_FIELDS");
+
     @Nullable
     public static List<PsiFieldMember> collectFields(final PsiFile file, final Editor editor) {
         final int offset = editor.getCaretModel().getOffset();
@@ -23,29 +33,117 @@ public final class GenerateOptionCollector {
         }
 
         final PsiClass clazz = PsiTreeUtil.getParentOfType(element, PsiClass.class);
-        if (clazz == null || clazz.hasModifierProperty(PsiModifier.ABSTRACT)) {
+        if (clazz == null) {
             return null;
         }
 
+        return collectFields(element, clazz);
+    }
+
+    /**
+     * Collect the fields of a class without reference to the caret, eg. when generating for a whole file.
+     *
+     * @param clazz the class to collect the fields of.
+     * @return the fields, or null if the class can't be generated for.
+     */
+    @Nullable
+    public static List<PsiFieldMember> collectFields(final PsiClass clazz) {
+        return collectFields(clazz, clazz);
+    }
+
+    @Nullable
+    private static List<PsiFieldMember> collectFields(final PsiElement element, final PsiClass clazz) {
+        if (clazz.hasModifierProperty(PsiModifier.ABSTRACT)) {
+            return null;
+        }
+
+        // nothing can be resolved while indexing, so only this class' fields are collected from the source text
+        if (DumbService.isDumb(clazz.getProject())) {
+            return collectFieldsSyntactically(element, clazz);
+        }
+
         final List<PsiFieldMember> allFields = new ArrayList<PsiFieldMember>();
 
         final List<PsiFieldMember> classFieldMembers = collectFieldsInClass(element, clazz, clazz);
         allFields.addAll(0, classFieldMembers);
 
+        // superclass fields go first, in the order they are declared down the hierarchy
+        if (PropertiesComponent.getInstance().getBoolean(GenerateOption.INHERITED_FIELDS.getProperty(), false)) {
+            final List<PsiFieldMember> inheritedFieldMembers = new ArrayList<PsiFieldMember>();
+            for (final PsiField field : collectInheritedFields(clazz.getSuperClass(), clazz)) {
+                final PsiClass containingClass = field.getContainingClass();
+                if (containingClass != null) {
+                    inheritedFieldMembers.add(buildFieldMember(field, containingClass, clazz));
+                }
+            }
+            allFields.addAll(0, inheritedFieldMembers);
+        }
+
         return allFields;
     }
 
+    /**
+     * Collect the fields of the whole superclass chain that are accessible, directly or through a setter, from a
+     * subclass. The result for each superclass is cached against the package it is accessed from and the exclusion
+     * rules, and dropped on any PSI change, so sibling classes and repeated runs don't walk the hierarchy again.
+     *
+     * @param superClass the superclass to start from.
+     * @param accessObjectClass the subclass the fields will be accessed from.
+     * @return the accessible fields, the topmost superclass' first.
+     */
+    private static List<PsiField> collectInheritedFields(@Nullable final PsiClass superClass,
+                                                         final PsiClass accessObjectClass) {
+        if (superClass == null || CommonClassNames.JAVA_LANG_OBJECT.equals(superClass.getQualifiedName())) {
+            return Collections.emptyList();
+        }
+
+        final String accessPackage = StringUtil.notNullize(PsiUtil.getPackageName(accessObjectClass))
+                                     + '#' + FieldExclusionRules.getInstance().getGeneration();
+        final ConcurrentMap<String, List<PsiField>> fieldsByPackage =
+                CachedValuesManager.getCachedValue(superClass, INHERITED_FIELDS, () -> CachedValueProvider.Result.create(
+                        new ConcurrentHashMap<String, List<PsiField>>(),
+                        PsiModificationTracker.getInstance(superClass.getProject())));
+
+        final List<PsiField> cachedFields = fieldsByPackage.get(accessPackage);
+        if (cachedFields != null) {
+            return cachedFields;
+        }
+
+        final List<PsiField> fields =
+                new ArrayList<PsiField>(collectInheritedFields(superClass.getSuperClass(), accessObjectClass));
+        fields.addAll(collectAccessibleFields(superClass, accessObjectClass, superClass));
+
+        final List<PsiField> inheritedFields = Collections.unmodifiableList(fields);
+        final List<PsiField> previous = fieldsByPackage.putIfAbsent(accessPackage, inheritedFields);
+        return previous != null ? previous : inheritedFields;
+    }
+
     private static List<PsiFieldMember> collectFieldsInClass(final PsiElement element,
                                                              final PsiClass accessObjectClass,
                                                              final PsiClass clazz) {
         final List<PsiFieldMember> classFieldMembers = new ArrayList<PsiFieldMember>();
+        for (final PsiField field : collectAccessibleFields(element, accessObjectClass, clazz)) {
+            final PsiClass containingClass = field.getContainingClass();
+            if (containingClass != null) {
+                classFieldMembers.add(buildFieldMember(field, containingClass, clazz));
+            }
+        }
+
+        return classFieldMembers;
+    }
+
+    private static List<PsiField> collectAccessibleFields(final PsiElement element,
+                                                          final PsiClass accessObjectClass,
+                                                          final PsiClass clazz) {
+        final List<PsiField> classFields = new ArrayList<PsiField>();
+        final FieldExclusionRules exclusionRules = FieldExclusionRules.getInstance();
         final PsiResolveHelper helper =
                 JavaPsiFacade.getInstance(clazz.getProject()).getResolveHelper();
 
         for (final PsiField field : clazz.getFields()) {
 
             // check access to the field from the builder container class (eg. private superclass fields)
-            if ((helper.isAccessible(field, clazz, accessObjectClass) || hasSetter(clazz,
+            if ((helper.isAccessible(field, accessObjectClass, accessObjectClass) || hasSetter(clazz,
                                                                                    field.getName()))
                 && !PsiTreeUtil.isAncestor(field, element, false)) {
 
@@ -59,17 +157,13 @@ public final class GenerateOptionCollector {
                     continue;
                 }
 
-                // skip eventual logging fields
-                final String fieldType = field.getType().getCanonicalText();
-                if ("org.apache.log4j.Logger".equals(fieldType) || "org.apache.logging.log4j.Logger"
-                        .equals(fieldType) || "java.util.logging.Logger".equals(fieldType)
-                    || "org.slf4j.Logger".equals(fieldType)
-                    || "ch.qos.logback.classic.Logger".equals(fieldType)
-                    || "net.sf.microlog.core.Logger".equals(fieldType)
-                    || "org.apache.commons.logging.Log".equals(fieldType)
-                    || "org.pmw.tinylog.Logger".equals(fieldType)
-                    || "org.jboss.logging.Logger".equals(fieldType) || "jodd.log.Logger".equals(
-                        fieldType)) {
+                // skip logging fields and anything else the exclusion rules leave out
+                if (exclusionRules.isExcluded(field)) {
+                    continue;
+                }
+
+                // skip the state kept for the generated members
+                if (isGeneratedState(field)) {
                     continue;
                 }
 
@@ -83,17 +177,42 @@ public final class GenerateOptionCollector {
                     }
                 }
 
-                final PsiClass containingClass = field.getContainingClass();
-                if (containingClass != null) {
-                    classFieldMembers.add(buildFieldMember(field, containingClass, clazz));
-                }
+                classFields.add(field);
             }
         }
 
-        return classFieldMembers;
+        return classFields;
     }
 
 
+    /**
+     * Collect the fields declared in a class going only on the source, for use while the IDE is indexing. Accessibility
+     * and superclasses can't be worked out, the exclusion rules are matched against the text as written.
+     */
+    private static List<PsiFieldMember> collectFieldsSyntactically(final PsiElement element, final PsiClass clazz) {
+        final List<PsiFieldMember> classFieldMembers = new ArrayList<PsiFieldMember>();
+        final FieldExclusionRules exclusionRules = FieldExclusionRules.getInstance();
+
+        for (final PsiField field : clazz.getFields()) {
+            if (field.hasModifierProperty(PsiModifier.STATIC)
+                || !hasLowerCaseChar(field.getName())
+                || PsiTreeUtil.isAncestor(field, element, false)
+                || exclusionRules.isExcludedSyntactically(field)
+                || isGeneratedState(field)) {
+                continue;
+            }
+
+            // skip final fields that are assigned in the declaration
+            if (field.hasModifierProperty(PsiModifier.FINAL) && field.hasInitializer()) {
+                continue;
+            }
+
+            classFieldMembers.add(new PsiFieldMember(field));
+        }
+
+        return classFieldMembers;
+    }
+
     private static boolean hasSetter(PsiClass clazz, String name) {
         for (int i = 0; i < clazz.getAllMethods().length; i++) {
             if (clazz.getAllMethods()[i].getName().equals(String.format("set%s",
@@ -5,10 +5,12 @@ import com.intellij.ide.util.MemberChooser;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.ui.NonFocusableCheckBox;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.awt.FlowLayout;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
@@ -17,8 +19,19 @@ import java.util.List;
 public class GenerateOptionSelector {
     private static final List<SelectorOption> OPTIONS = createGeneratorOptions();
 
+    // values() hands out a new array on every call, the combo box only reads it
+    private static final AccessorStrategy[] STRATEGIES = AccessorStrategy.values();
+    private static final String STRATEGY_CAPTION = "Collection accessors:";
+    private static final char STRATEGY_MNEMONIC = 'l';
+    private static final String STRATEGY_TOOL_TIP = "How getters and setters of arrays and java.util collections hand "
+                                                    + "out and take in the value. Auto views collections and copies "
+                                                    + "arrays, other types are always returned as is";
+
+    // Above this many fields the stock chooser, which builds a tree node per field, gets slow to open and filter
+    private static final int LARGE_CLASS_FIELD_COUNT = 200;
+
     private static List<SelectorOption> createGeneratorOptions() {
-        final List<SelectorOption> options = new ArrayList<SelectorOption>(8);
+        final List<SelectorOption> options = new ArrayList<SelectorOption>(17);
 
         options.add(SelectorOption.newBuilder()
                                   .withCaption("Add an empty constructor")
@@ -68,6 +81,75 @@ public class GenerateOptionSelector {
                                   .withToolTip("Generate  a toString")
                                   .withOption(GenerateOption.TO_STRING)
                                   .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Bound the toString output")
+                                  .withMnemonic('u')
+                                  .withToolTip("Cut long fields and list only the first elements of collections, maps "
+                                               + "and arrays after their size, hiding or leaving out the fields named "
+                                               + "in the settings")
+                                  .withOption(GenerateOption.BOUNDED_TO_STRING)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Include superclass fields")
+                                  .withMnemonic('i')
+                                  .withToolTip("Collect accessible fields from the whole superclass chain, "
+                                               + "the toString lists them flat instead of calling super.toString()")
+                                  .withOption(GenerateOption.INHERITED_FIELDS)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Generate a property table")
+                                  .withMnemonic('p')
+                                  .withToolTip("Generate a Meta class of property indexes with get(int)/"
+                                               + "set(int, Object) and unboxed variants dispatched through a switch")
+                                  .withOption(GenerateOption.PROPERTY_TABLE)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Generate a JSON writer")
+                                  .withMnemonic('j')
+                                  .withToolTip("Generate writeJson(StringBuilder) and estimateJsonSize() writing the "
+                                               + "fields without reflection")
+                                  .withOption(GenerateOption.JSON_WRITER)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Generate an interning factory")
+                                  .withMnemonic('n')
+                                  .withToolTip("Generate a static of(...) handing out cached instances from a bounded "
+                                               + "cache, the all args constructor becomes private. Only for "
+                                               + "immutable value classes, every field final and no setters, builder, "
+                                               + "pool or other constructors")
+                                  .withOption(GenerateOption.INTERNING_FACTORY)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Track dirty fields in setters")
+                                  .withMnemonic('k')
+                                  .withToolTip("The setters set a bit per field in a dirty mask, with isDirty(int), "
+                                               + "dirtyMask(), clearDirty() and a Dirty class of field indexes")
+                                  .withOption(GenerateOption.DIRTY_TRACKING)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Pack boolean flags into bitfields")
+                                  .withMnemonic('f')
+                                  .withToolTip("Replace the private boolean fields, and enums if enabled in the "
+                                               + "settings, with an int or long word read and written through "
+                                               + "accessors named after them")
+                                  .withOption(GenerateOption.PACKED_FLAGS)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Generate an object pool")
+                                  .withMnemonic('o')
+                                  .withToolTip("Generate a companion ClassNamePool with acquire() and release(instance) "
+                                               + "over a bounded lock free queue, clearing the fields on release and "
+                                               + "counting hits and misses")
+                                  .withOption(GenerateOption.OBJECT_POOL)
+                                  .build());
+        options.add(SelectorOption.newBuilder()
+                                  .withCaption("Generate a reusable builder")
+                                  .withMnemonic('r')
+                                  .withToolTip("Generate a nested Builder kept across instances through reset(), "
+                                               + "with build() through the all args constructor and "
+                                               + "buildInto(existing) filling an instance you already have")
+                                  .withOption(GenerateOption.REUSABLE_BUILDER)
+                                  .build());
 
         return options;
     }
@@ -83,7 +165,12 @@ public class GenerateOptionSelector {
             return members;
         }
 
-        final JCheckBox[] optionCheckBoxes = buildOptionCheckBoxes();
+        final JComponent[] optionControls = buildOptionControls(PropertiesComponent.getInstance());
+
+        if (members.size() > LARGE_CLASS_FIELD_COUNT) {
+            final FieldChooserDialog dialog = new FieldChooserDialog(project, members, optionControls);
+            return dialog.showAndGet() ? dialog.getSelectedElements() : null;
+        }
 
         final PsiFieldMember[] memberArray = members.toArray(new PsiFieldMember[members.size()]);
 
@@ -94,7 +181,7 @@ public class GenerateOptionSelector {
 // allowMultiSelection
                                                                                         project,
                                                                                         null,
-                                                                                        optionCheckBoxes);
+                                                                                        optionControls);
 
         chooser.setTitle("Select Fields and Options for the Builder");
         chooser.selectElements(memberArray);
@@ -105,15 +192,41 @@ public class GenerateOptionSelector {
         return null;
     }
 
-    private static JCheckBox[] buildOptionCheckBoxes() {
-        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+    /**
+     * Build the controls for a single dialog from the options above, which are only built once. A Swing component
+     * belongs to the one dialog it was added to, and its listener writes to the settings of that dialog's session, so
+     * only the components themselves are new each time.
+     */
+    private static JComponent[] buildOptionControls(final PropertiesComponent propertiesComponent) {
         final int optionCount = OPTIONS.size();
-        final JCheckBox[] checkBoxesArray = new JCheckBox[optionCount];
+        final JComponent[] controlsArray = new JComponent[optionCount + 1];
         for (int i = 0; i < optionCount; i++) {
-            checkBoxesArray[i] = buildOptionCheckBox(propertiesComponent, OPTIONS.get(i));
+            controlsArray[i] = buildOptionCheckBox(propertiesComponent, OPTIONS.get(i));
         }
+        controlsArray[optionCount] = buildAccessorStrategyControl(propertiesComponent);
+
+        return controlsArray;
+    }
+
+    private static JComponent buildAccessorStrategyControl(final PropertiesComponent propertiesComponent) {
+        final ComboBox<AccessorStrategy> strategyComboBox = new ComboBox<>(STRATEGIES);
+        strategyComboBox.setSelectedItem(AccessorStrategy.getCurrent());
+        strategyComboBox.setToolTipText(STRATEGY_TOOL_TIP);
+        strategyComboBox.addItemListener(event -> {
+            if (event.getStateChange() == ItemEvent.SELECTED) {
+                propertiesComponent.setValue(AccessorStrategy.PROPERTY,
+                                             ((AccessorStrategy) event.getItem()).name());
+            }
+        });
+
+        final JLabel label = new JLabel(STRATEGY_CAPTION);
+        label.setLabelFor(strategyComboBox);
+        label.setDisplayedMnemonic(STRATEGY_MNEMONIC);
 
-        return checkBoxesArray;
+        final JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        panel.add(label);
+        panel.add(strategyComboBox);
+        return panel;
     }
 
     private static JCheckBox buildOptionCheckBox(final PropertiesComponent propertiesComponent,
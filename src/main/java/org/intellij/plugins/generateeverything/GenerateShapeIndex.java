@@ -0,0 +1,149 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.*;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Indexes the {@link ClassShape} of every Java class keyed by its qualified name, so classes whose generated members
+ * have gone stale can be found without resolving each file.
+ */
+public final class GenerateShapeIndex extends FileBasedIndexExtension<String, ClassShape> {
+
+    public static final ID<String, ClassShape> NAME =
+            ID.create("org.intellij.plugins.generateeverything.GenerateShapeIndex");
+
+    @NotNull
+    @Override
+    public ID<String, ClassShape> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, ClassShape, FileContent> getIndexer() {
+        return inputData -> {
+            final PsiFile psiFile = inputData.getPsiFile();
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return Collections.emptyMap();
+            }
+
+            final Map<String, ClassShape> shapes = new HashMap<>();
+            for (final PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                indexClass(psiClass, shapes);
+            }
+            return shapes;
+        };
+    }
+
+    private static void indexClass(final PsiClass psiClass, final Map<String, ClassShape> shapes) {
+        for (final PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.hasModifierProperty(PsiModifier.STATIC)) {
+                indexClass(innerClass, shapes);
+            }
+        }
+
+        final String qualifiedName = psiClass.getQualifiedName();
+        if (qualifiedName == null
+            || psiClass.isInterface()
+            || psiClass.isEnum()
+            || psiClass.isRecord()
+            || psiClass.hasModifierProperty(PsiModifier.ABSTRACT)) {
+            return;
+        }
+
+        final List<ClassShape.FieldShape> fields = new ArrayList<>();
+        for (final PsiField field : psiClass.getFields()) {
+            final PsiTypeElement typeElement = field.getTypeElement();
+            if (field.hasModifierProperty(PsiModifier.STATIC) || typeElement == null) {
+                continue;
+            }
+            fields.add(new ClassShape.FieldShape(field.getName(),
+                                                 typeElement.getText(),
+                                                 field.hasModifierProperty(PsiModifier.FINAL)
+                                                 && field.hasInitializer()
+                                                 || GenerateUtils.isGeneratedState(field),
+                                                 !field.hasModifierProperty(PsiModifier.FINAL)));
+        }
+
+        final List<List<String>> constructors = new ArrayList<>();
+        final List<String> methods = new ArrayList<>();
+        List<String> toStringNames = null;
+        for (final PsiMethod method : psiClass.getMethods()) {
+            final List<String> parameterTypes = new ArrayList<>();
+            for (final PsiParameter parameter : method.getParameterList().getParameters()) {
+                final PsiTypeElement typeElement = parameter.getTypeElement();
+                parameterTypes.add(typeElement == null ? "" : typeElement.getText());
+            }
+
+            if (method.isConstructor()) {
+                constructors.add(parameterTypes);
+                continue;
+            }
+
+            final PsiTypeElement returnType = method.getReturnTypeElement();
+            methods.add(ClassShape.signature(method.getName(),
+                                             parameterTypes,
+                                             returnType == null ? "" : returnType.getText()));
+
+            if ("toString".equals(method.getName()) && parameterTypes.isEmpty() && method.getBody() != null) {
+                toStringNames = referencedNames(method.getBody());
+            }
+        }
+
+        shapes.put(qualifiedName, new ClassShape(fields, constructors, methods, toStringNames));
+    }
+
+    /**
+     * Collect the unqualified or this-qualified names referenced in a code block, without resolving them.
+     */
+    private static List<String> referencedNames(final PsiCodeBlock body) {
+        final Set<String> names = new LinkedHashSet<>();
+        body.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitReferenceExpression(@NotNull final PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                final PsiExpression qualifier = expression.getQualifierExpression();
+                if ((qualifier == null || qualifier instanceof PsiThisExpression)
+                    && expression.getReferenceName() != null) {
+                    names.add(expression.getReferenceName());
+                }
+            }
+        });
+        return new ArrayList<>(names);
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<ClassShape> getValueExternalizer() {
+        return ClassShape.EXTERNALIZER;
+    }
+
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+}
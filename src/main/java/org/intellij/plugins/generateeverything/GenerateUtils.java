@@ -7,9 +7,12 @@ import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class GenerateUtils {
     @NonNls
-    static final String JAVA_DOT_LANG = "java.lang.";
+    static final String JAVA_DOT_LANG = Naming.JAVA_DOT_LANG;
 
 
     /**
@@ -34,6 +37,29 @@ public final class GenerateUtils {
             return null;
     }
 
+    /**
+     * @param file psi file
+     * @return the top level classes of the file and all of their static nested classes, outermost first.
+     */
+    public static List<PsiClass> getStaticAndTopLevelClasses(PsiFile file) {
+        final List<PsiClass> classes = new ArrayList<>();
+        if (file instanceof PsiClassOwner) {
+            for (final PsiClass topLevelClass : ((PsiClassOwner) file).getClasses()) {
+                addStaticClasses(topLevelClass, classes);
+            }
+        }
+        return classes;
+    }
+
+    private static void addStaticClasses(PsiClass psiClass, List<PsiClass> classes) {
+        classes.add(psiClass);
+        for (final PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.hasModifierProperty(PsiModifier.STATIC)) {
+                addStaticClasses(innerClass, classes);
+            }
+        }
+    }
+
     static boolean areParameterListsEqual(PsiParameterList paramList1, PsiParameterList paramList2) {
         if (paramList1.getParametersCount() != paramList2.getParametersCount()) {
             return false;
@@ -64,50 +90,60 @@ public final class GenerateUtils {
     }
 
     static String stripJavaLang(String typeString) {
-        return typeString.startsWith(JAVA_DOT_LANG) ? typeString.substring(JAVA_DOT_LANG.length()) : typeString;
+        return Naming.stripJavaLang(typeString);
     }
 
     public static String capitalize(String str) {
-        return hasOneLetterPrefix(str) ?
-               Character.toUpperCase(str.charAt(1)) + str.substring(2) :
-               Character.toUpperCase(str.charAt(0)) + str.substring(1);
+        return Naming.capitalize(str);
     }
 
     public static boolean hasOneLetterPrefix(String str) {
-        return Character.isLowerCase(str.charAt(0)) && Character.isUpperCase(str.charAt(1));
+        return Naming.hasOneLetterPrefix(str);
+    }
+
+    public static boolean hasLowerCaseChar(String str) {
+        return Naming.hasLowerCaseChar(str);
     }
 
     /**
-     * Does the string have a lowercase character?
+     * Is the field state kept for the generated members rather than one of the class' own fields: the cached
+     * unmodifiable view of another field, or the dirty mask of the setters? Goes only on the source so it also works
+     * while indexing.
      *
-     * @param str the string to test.
-     * @return true if the string has a lowercase character, false if not.
+     * @param field the field to test.
+     * @return true if it is a transient field named after a field of the same class with the view suffix, or the dirty
+     * mask of a class with the nested class of its indexes.
      */
-    public static boolean hasLowerCaseChar(String str) {
-        for (int i = 0; i < str.length(); i++) {
-            if (Character.isLowerCase(str.charAt(i))) {
-                return true;
-            }
+    public static boolean isGeneratedState(PsiField field) {
+        final String name = field.getName();
+        final PsiTypeElement typeElement = field.getTypeElement();
+        final PsiClass containingClass = field.getContainingClass();
+        if (MemberTemplates.DIRTY_BITS_FIELD.equals(name)) {
+            // the class' own field unless the indexes the setters mark it by are there too
+            final String typeText = typeElement == null ? null : typeElement.getText();
+            return ("long".equals(typeText) || "long[]".equals(typeText))
+                   && containingClass != null
+                   && containingClass.findInnerClassByName(MemberTemplates.DIRTY_FIELDS_CLASS, false) != null;
         }
 
-        return false;
+        return field.hasModifierProperty(PsiModifier.TRANSIENT)
+               && name.endsWith(AccessorStrategy.VIEW_SUFFIX)
+               && name.length() > AccessorStrategy.VIEW_SUFFIX.length()
+               && containingClass != null
+               && containingClass.findFieldByName(name.substring(0, name.length()
+                                                                    - AccessorStrategy.VIEW_SUFFIX.length()),
+                                                  false) != null;
     }
 
     public static String toLowerSnakeCase(final String str) {
-        if (str.length() == 0)
-            return "";
-
-        if (Character.isUpperCase(str.charAt(0)))
-            return (str.charAt(0) + "").toLowerCase() + str.substring(1);
-        else return str;
+        return Naming.toLowerSnakeCase(str);
     }
 
     public static String toUpperSnakeCase(final String str) {
-        if (str.length() == 0)
-            return "";
+        return Naming.toUpperSnakeCase(str);
+    }
 
-        if (Character.isLowerCase(str.charAt(0)))
-            return (str.charAt(0) + "").toUpperCase() + str.substring(1);
-        else return str;
+    public static String toConstantCase(final String str) {
+        return Naming.toConstantCase(str);
     }
 }
@@ -0,0 +1,81 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+
+import java.util.*;
+
+/**
+ * The options each class of a project was last generated with, kept in the project's workspace so staleness is judged
+ * against what was actually generated for the class and only the classes generated for are looked up.
+ */
+public final class GeneratedClassRecords {
+
+    private static final Logger LOGGER = Logger.getInstance(GeneratedClassRecords.class);
+
+    public static final String RECORDS_PROPERTY = "GenerateGenerator.generatedClasses";
+
+    private GeneratedClassRecords() {
+    }
+
+    /**
+     * Remember the options a class was generated with, replacing any it was generated with before.
+     *
+     * @param project the project.
+     * @param targetClass the generated class.
+     * @param options the options it was generated with.
+     */
+    public static synchronized void record(final Project project,
+                                           final PsiClass targetClass,
+                                           final Set<GenerateOption> options) {
+        final String qualifiedName = targetClass.getQualifiedName();
+        if (qualifiedName == null) {
+            return;
+        }
+        final Map<String, Set<GenerateOption>> records = getRecords(project);
+        records.put(qualifiedName, options.isEmpty() ? EnumSet.noneOf(GenerateOption.class) : EnumSet.copyOf(options));
+
+        final List<String> values = new ArrayList<>(records.size());
+        for (final Map.Entry<String, Set<GenerateOption>> record : records.entrySet()) {
+            final StringJoiner optionNames = new StringJoiner(",", record.getKey() + "=", "");
+            for (final GenerateOption option : record.getValue()) {
+                optionNames.add(option.name());
+            }
+            values.add(optionNames.toString());
+        }
+        PropertiesComponent.getInstance(project).setList(RECORDS_PROPERTY, values);
+    }
+
+    /**
+     * @param project the project.
+     * @return the options of every class generated for, by qualified name.
+     */
+    public static synchronized Map<String, Set<GenerateOption>> getRecords(final Project project) {
+        final Map<String, Set<GenerateOption>> records = new LinkedHashMap<>();
+        final List<String> values = PropertiesComponent.getInstance(project).getList(RECORDS_PROPERTY);
+        if (values == null) {
+            return records;
+        }
+        for (final String value : values) {
+            final int separator = value.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            final Set<GenerateOption> options = EnumSet.noneOf(GenerateOption.class);
+            for (final String optionName : value.substring(separator + 1).split(",")) {
+                if (optionName.isEmpty()) {
+                    continue;
+                }
+                try {
+                    options.add(GenerateOption.valueOf(optionName));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Ignoring unknown recorded option : " + optionName);
+                }
+            }
+            records.put(value.substring(0, separator), options);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,425 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The precomputed result of a generation run: for each target class, the text of each member to insert and, where one
+ * already exists, the member it replaces, along with any expressions to rewrite and fields to remove, and the companion
+ * classes to write next to the file. Computing a plan only needs a read action, applying it is the only part that
+ * needs the write lock.
+ */
+public final class GenerationPlan {
+
+    private static final Logger LOGGER = Logger.getInstance(GenerationPlan.class);
+
+    private final PsiFile file;
+
+    private final List<ClassPlan> classPlans = new ArrayList<>();
+
+    // top level classes with a file of their own in the same package, by name
+    private final Map<String, String> companionClasses = new LinkedHashMap<>();
+
+    // why members the options asked for were left out, for the user
+    private final List<String> skipped = new ArrayList<>();
+
+    public GenerationPlan(final PsiFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Start planning the members of another class in the file.
+     *
+     * @param targetClass the class the members will be inserted into.
+     * @return the plan for that class.
+     */
+    public ClassPlan forClass(final PsiClass targetClass) {
+        final ClassPlan classPlan = new ClassPlan(targetClass);
+        classPlans.add(classPlan);
+        return classPlan;
+    }
+
+    /**
+     * Queue a top level class for the file's package, in a file of its own. An existing class of the same name in
+     * that file is replaced, so the caller checks beforehand that it may be.
+     *
+     * @param name the name of the class.
+     * @param text the full text of the class, without the package statement.
+     */
+    public void addCompanionClass(@NotNull final String name, @NotNull final String text) {
+        companionClasses.put(name, text);
+    }
+
+    /**
+     * Record that members the options asked for were left out, so the user can be told why.
+     *
+     * @param reason what was left out and why.
+     */
+    public void addSkipped(@NotNull final String reason) {
+        skipped.add(reason);
+    }
+
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+    public boolean isEmpty() {
+        if (!companionClasses.isEmpty()) {
+            return false;
+        }
+        for (final ClassPlan classPlan : classPlans) {
+            if (!classPlan.members.isEmpty()
+                || !classPlan.rewrites.isEmpty()
+                || !classPlan.removedFields.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public PsiFile getFile() {
+        return file;
+    }
+
+    /**
+     * Insert the planned members into every target class and write the companion classes, then shorten references
+     * over the files and reformat each outermost class once. Must be called inside a write command. While the IDE is
+     * indexing the shortening is deferred until indexing finishes.
+     *
+     * @param project the project the file belongs to.
+     */
+    public void apply(final Project project) {
+        final PsiElementFactory psiElementFactory = JavaPsiFacade.getInstance(project).getElementFactory();
+        final List<PsiClass> targets = new ArrayList<>();
+
+        for (final ClassPlan classPlan : classPlans) {
+            final PsiClass target = classPlan.targetClass.getElement();
+            if (target == null) {
+                LOGGER.warn("Target class was invalidated before the generated members could be inserted.");
+                continue;
+            }
+
+            classPlan.apply(psiElementFactory, target);
+            targets.add(target);
+        }
+        targets.addAll(applyCompanionClasses(project));
+
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // References can't be resolved while indexing, so shortening waits until it has finished
+        if (DumbService.isDumb(project)) {
+            DumbService.getInstance(project).runWhenSmart(() -> shortenReferencesLater(project));
+        } else {
+            JavaCodeStyleManager.getInstance(project).shortenClassReferences(file);
+            for (final PsiClass target : targets) {
+                if (target.getContainingFile() != file) {
+                    JavaCodeStyleManager.getInstance(project).shortenClassReferences(target.getContainingFile());
+                }
+            }
+        }
+
+        // Nested targets are reformatted along with the class that contains them
+        final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        for (final PsiClass target : targets) {
+            if (targets.stream().noneMatch(other -> other != target && PsiTreeUtil.isAncestor(other, target, true))) {
+                codeStyleManager.reformat(target);
+            }
+        }
+    }
+
+    /**
+     * Insert the planned members, shortening references in and reformatting only the inserted members so nothing
+     * else in the file is touched. Must be called inside a write command while the IDE is not indexing.
+     *
+     * @param project the project the file belongs to.
+     */
+    public void applyInPlace(final Project project) {
+        final PsiElementFactory psiElementFactory = JavaPsiFacade.getInstance(project).getElementFactory();
+        final JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(project);
+        final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+
+        for (final ClassPlan classPlan : classPlans) {
+            final PsiClass target = classPlan.targetClass.getElement();
+            if (target == null) {
+                LOGGER.warn("Target class was invalidated before the generated members could be inserted.");
+                continue;
+            }
+
+            for (final PsiElement inserted : classPlan.apply(psiElementFactory, target)) {
+                codeStyleManager.reformat(javaCodeStyleManager.shortenClassReferences(inserted));
+            }
+        }
+        for (final PsiClass companionClass : applyCompanionClasses(project)) {
+            codeStyleManager.reformat(javaCodeStyleManager.shortenClassReferences(companionClass));
+        }
+    }
+
+    /**
+     * Replace or create each companion class in the directory of the file.
+     *
+     * @return the classes written.
+     */
+    private List<PsiClass> applyCompanionClasses(final Project project) {
+        final List<PsiClass> written = new ArrayList<>(companionClasses.size());
+        final PsiDirectory directory = file.getContainingDirectory();
+        if (companionClasses.isEmpty() || directory == null || !(file instanceof PsiJavaFile)) {
+            return written;
+        }
+
+        final String packageName = ((PsiJavaFile) file).getPackageName();
+        final PsiFileFactory psiFileFactory = PsiFileFactory.getInstance(project);
+        for (final Map.Entry<String, String> companionClass : companionClasses.entrySet()) {
+            final String fileName = companionClass.getKey() + "." + JavaFileType.DEFAULT_EXTENSION;
+            final PsiJavaFile newFile = (PsiJavaFile) psiFileFactory.createFileFromText(
+                    fileName,
+                    JavaFileType.INSTANCE,
+                    (packageName.isEmpty() ? "" : "package " + packageName + ";\n\n") + companionClass.getValue());
+            final PsiClass newClass = newFile.getClasses()[0];
+
+            final PsiFile existingFile = directory.findFile(fileName);
+            final PsiClass existing = existingFile instanceof PsiJavaFile
+                                      ? findClass((PsiJavaFile) existingFile, companionClass.getKey())
+                                      : null;
+            if (existing != null) {
+                written.add((PsiClass) existing.replace(newClass));
+            } else if (existingFile == null) {
+                written.add(((PsiJavaFile) directory.add(newFile)).getClasses()[0]);
+            } else {
+                LOGGER.warn(fileName + " exists without a " + companionClass.getKey() + " class - skipping it.");
+            }
+        }
+        return written;
+    }
+
+    @Nullable
+    private static PsiClass findClass(final PsiJavaFile javaFile, final String name) {
+        for (final PsiClass psiClass : javaFile.getClasses()) {
+            if (name.equals(psiClass.getName())) {
+                return psiClass;
+            }
+        }
+        return null;
+    }
+
+    private void shortenReferencesLater(final Project project) {
+        if (!file.isValid()) {
+            return;
+        }
+        WriteCommandAction.writeCommandAction(project, file)
+                          .withName("Generate Everything: Shorten References")
+                          .run(() -> JavaCodeStyleManager.getInstance(project).shortenClassReferences(file));
+    }
+
+    @Override
+    public String toString() {
+        return "GenerationPlan{" + "file=" + file + ", classPlans=" + classPlans + ", companionClasses="
+               + companionClasses.keySet() + '}';
+    }
+
+    /**
+     * The members planned for a single class.
+     */
+    public static final class ClassPlan {
+        private final SmartPsiElementPointer<PsiClass> targetClass;
+
+        private final List<Member> members = new ArrayList<>();
+
+        private final List<Rewrite> rewrites = new ArrayList<>();
+
+        private final List<SmartPsiElementPointer<PsiField>> removedFields = new ArrayList<>();
+
+        private ClassPlan(final PsiClass targetClass) {
+            this.targetClass = SmartPointerManager.createPointer(targetClass);
+        }
+
+        /**
+         * Queue a method or constructor for insertion.
+         *
+         * @param text the full text of the member.
+         * @param replaces the existing member it replaces, or null to insert it after the previously added member.
+         */
+        public void add(@NotNull final String text, @Nullable final PsiMember replaces) {
+            add(MemberKind.METHOD, text, replaces);
+        }
+
+        /**
+         * Queue a nested class for insertion.
+         *
+         * @param text the full text of the nested class.
+         * @param replaces the existing class it replaces, or null to insert it after the previously added member.
+         */
+        public void addInnerClass(@NotNull final String text, @Nullable final PsiClass replaces) {
+            add(MemberKind.CLASS, text, replaces);
+        }
+
+        /**
+         * Queue a field for insertion. Fields don't move the insertion point of the members after them.
+         *
+         * @param text the full text of the field declaration.
+         * @param replaces the existing field it replaces, or null to insert it after the anchor.
+         * @param anchor the field to insert it after.
+         */
+        public void addField(@NotNull final String text, @Nullable final PsiField replaces, final PsiField anchor) {
+            members.add(new Member(MemberKind.FIELD,
+                                   text,
+                                   replaces == null ? null : SmartPointerManager.createPointer(replaces),
+                                   SmartPointerManager.createPointer(anchor)));
+        }
+
+        /**
+         * Queue an expression anywhere in the file for rewriting, before any member is inserted. The expressions
+         * rewritten mustn't overlap.
+         *
+         * @param expression the expression to replace.
+         * @param text the text of the expression replacing it.
+         */
+        public void replaceExpression(@NotNull final PsiExpression expression, @NotNull final String text) {
+            rewrites.add(new Rewrite(SmartPointerManager.createPointer(expression), text));
+        }
+
+        /**
+         * Queue a field for removal, once every member is inserted so it can still anchor new fields.
+         *
+         * @param field the field to remove.
+         */
+        public void removeField(@NotNull final PsiField field) {
+            removedFields.add(SmartPointerManager.createPointer(field));
+        }
+
+        private void add(final MemberKind kind, final String text, @Nullable final PsiMember replaces) {
+            members.add(new Member(kind,
+                                   text,
+                                   replaces == null ? null : SmartPointerManager.createPointer(replaces),
+                                   null));
+        }
+
+        private List<PsiElement> apply(final PsiElementFactory psiElementFactory, final PsiClass target) {
+            for (final Rewrite rewrite : rewrites) {
+                final PsiExpression expression = rewrite.expression.getElement();
+                if (expression == null) {
+                    LOGGER.warn("Expression was invalidated before it could be rewritten to : " + rewrite.text + ".");
+                    continue;
+                }
+                expression.replace(psiElementFactory.createExpressionFromText(rewrite.text, expression));
+            }
+
+            final List<PsiElement> inserted = new ArrayList<>(members.size());
+            PsiElement lastAddedElement = null;
+            for (final Member member : members) {
+                final PsiMember newMember = member.create(psiElementFactory, target);
+                final PsiElement existing = member.replaces == null ? null : member.replaces.getElement();
+
+                if (member.kind == MemberKind.FIELD) {
+                    final PsiElement anchor = member.anchor == null ? null : member.anchor.getElement();
+                    inserted.add(existing != null ? existing.replace(newMember)
+                                 : anchor != null ? target.addAfter(newMember, anchor)
+                                 : target.add(newMember));
+                    continue;
+                }
+
+                if (existing != null) {
+                    lastAddedElement = existing.replace(newMember);
+                } else if (lastAddedElement != null) {
+                    lastAddedElement = target.addAfter(newMember, lastAddedElement);
+                } else {
+                    lastAddedElement = target.add(newMember);
+                }
+                inserted.add(lastAddedElement);
+            }
+
+            for (final SmartPsiElementPointer<PsiField> removedField : removedFields) {
+                final PsiField field = removedField.getElement();
+                if (field != null) {
+                    field.delete();
+                }
+            }
+            return inserted;
+        }
+
+        @Override
+        public String toString() {
+            return "ClassPlan{" + "targetClass=" + targetClass + ", members=" + members + ", rewrites=" + rewrites
+                   + ", removedFields=" + removedFields + '}';
+        }
+    }
+
+    private static final class Rewrite {
+        private final SmartPsiElementPointer<PsiExpression> expression;
+
+        private final String text;
+
+        private Rewrite(final SmartPsiElementPointer<PsiExpression> expression, final String text) {
+            this.expression = expression;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return "Rewrite{" + "expression=" + expression + ", text='" + text + '\'' + '}';
+        }
+    }
+
+    private enum MemberKind {
+        METHOD,
+        CLASS,
+        FIELD
+    }
+
+    private static final class Member {
+        private final MemberKind kind;
+
+        private final String text;
+
+        @Nullable
+        private final SmartPsiElementPointer<? extends PsiMember> replaces;
+
+        // only fields are inserted after an anchor of their own
+        @Nullable
+        private final SmartPsiElementPointer<? extends PsiMember> anchor;
+
+        private Member(final MemberKind kind,
+                       final String text,
+                       @Nullable final SmartPsiElementPointer<? extends PsiMember> replaces,
+                       @Nullable final SmartPsiElementPointer<? extends PsiMember> anchor) {
+            this.kind = kind;
+            this.text = text;
+            this.replaces = replaces;
+            this.anchor = anchor;
+        }
+
+        private PsiMember create(final PsiElementFactory psiElementFactory, final PsiClass target) {
+            switch (kind) {
+                case CLASS:
+                    // the factory wraps the text in a dummy class
+                    return psiElementFactory.createClassFromText(text, target).getInnerClasses()[0];
+                case FIELD:
+                    return psiElementFactory.createFieldFromText(text, target);
+                case METHOD:
+                default:
+                    return psiElementFactory.createMethodFromText(text, target);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Member{" + "kind=" + kind + ", text='" + text + '\'' + ", replaces=" + replaces + ", anchor="
+                   + anchor + '}';
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.CodeInsightActionHandler;
+import com.intellij.ide.util.ClassFilter;
+import com.intellij.ide.util.TreeClassChooser;
+import com.intellij.ide.util.TreeClassChooserFactory;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorFontType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+/**
+ * Generates a mapper copying the fields of the class under the caret to a class picked from the project. The matched
+ * and unmatched fields are shown before anything is written, the mapper then goes next to the class under the caret.
+ */
+public class MapperHandler implements CodeInsightActionHandler {
+
+    public boolean isValidFor(Editor editor, PsiFile file) {
+        final PsiClass sourceClass = GenerateUtils.getStaticOrTopLevelClass(file, editor);
+        return file instanceof PsiJavaFile && sourceClass != null && isMappable(sourceClass);
+    }
+
+    /**
+     * Only plain named classes are mapped, a generic one would need its type arguments picked too, and a private
+     * nested one can't be reached from the mapper's own file.
+     */
+    private static boolean isMappable(final PsiClass psiClass) {
+        return psiClass.getQualifiedName() != null
+               && !psiClass.isInterface()
+               && !psiClass.isEnum()
+               && !psiClass.isRecord()
+               && !psiClass.hasTypeParameters()
+               && isReachableFrom(psiClass, psiClass);
+    }
+
+    /**
+     * Can a top level class in the package of another class name the class, every class enclosing it included?
+     */
+    private static boolean isReachableFrom(final PsiClass psiClass, final PsiClass from) {
+        for (PsiClass enclosing = psiClass; enclosing != null; enclosing = enclosing.getContainingClass()) {
+            if (enclosing.hasModifierProperty(PsiModifier.PRIVATE)
+                || !enclosing.hasModifierProperty(PsiModifier.PUBLIC)
+                   && !JavaPsiFacade.getInstance(enclosing.getProject()).arePackagesTheSame(enclosing, from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    @Override
+    public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
+        final PsiClass sourceClass = GenerateUtils.getStaticOrTopLevelClass(file, editor);
+        if (sourceClass == null) {
+            return;
+        }
+
+        // the mapper goes in the source class' package, so the target has to be reachable from there
+        final ClassFilter mappableTarget = candidate -> isMappable(candidate)
+                                                        && isReachableFrom(candidate, sourceClass);
+        final TreeClassChooser chooser = TreeClassChooserFactory.getInstance(project)
+                                                                .createWithInnerClassesScopeChooser(
+                                                                        "Map " + sourceClass.getName() + " To",
+                                                                        GlobalSearchScope.projectScope(project),
+                                                                        mappableTarget,
+                                                                        null);
+        chooser.showDialog();
+        final PsiClass targetClass = chooser.getSelected();
+        if (targetClass == null) {
+            return;
+        }
+
+        final FieldMapping mapping = FieldMapping.match(sourceClass, targetClass);
+        final MappingDialog dialog = new MappingDialog(project, mapping.toReport(), mapping.hasCopies());
+        if (!dialog.showAndGet()) {
+            return;
+        }
+
+        final GenerationPlan plan = new GenerationPlan(file);
+        plan.addCompanionClass(mapping.getMapperName(), mapping.mapperText());
+        WriteCommandAction.writeCommandAction(project, file)
+                          .withName("Generate Mapper")
+                          .run(() -> plan.apply(project));
+    }
+
+    private static final class MappingDialog extends DialogWrapper {
+        private final String report;
+
+        private MappingDialog(final Project project, final String report, final boolean hasCopies) {
+            super(project);
+            this.report = report;
+            setTitle("Field Mapping");
+            setOKButtonText("Generate Mapper");
+            setOKActionEnabled(hasCopies);
+            init();
+        }
+
+        @Nullable
+        @Override
+        protected JComponent createCenterPanel() {
+            final JBTextArea textArea = new JBTextArea(report);
+            textArea.setEditable(false);
+            textArea.setFont(EditorColorsManager.getInstance().getGlobalScheme().getFont(EditorFontType.PLAIN));
+            final JBScrollPane scrollPane = new JBScrollPane(textArea);
+            scrollPane.setPreferredSize(JBUI.size(640, 420));
+            return scrollPane;
+        }
+    }
+}
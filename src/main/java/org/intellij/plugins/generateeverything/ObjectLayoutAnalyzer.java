@@ -0,0 +1,404 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Estimates the instance footprint of a class on a 64-bit HotSpot JVM with compressed oops and class pointers: a 12
+ * byte header, 4 byte references and 8 byte object alignment.
+ * <p>
+ * Fields are laid out a class at a time from the top of the hierarchy down. Within a class the JVM orders fields by
+ * size, largest first, filling the gap before the first 8 byte field with smaller ones, and each class' block ends on
+ * a 4 byte boundary. The declaration order in the source never changes the layout, so the savings reported come from
+ * narrowing types and from the padding between and after the class blocks.
+ */
+public final class ObjectLayoutAnalyzer {
+
+    static final int HEADER_SIZE = 12;
+
+    static final int REFERENCE_SIZE = 4;
+
+    static final int OBJECT_ALIGNMENT = 8;
+
+    // Boxed type -> primitive, with the size of the boxed object itself
+    private static final Map<String, String> UNBOXED = new HashMap<>();
+    private static final Map<String, Integer> BOXED_SIZE = new HashMap<>();
+
+    static {
+        addBoxed(CommonClassNames.JAVA_LANG_BOOLEAN, "boolean", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_BYTE, "byte", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_SHORT, "short", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_CHARACTER, "char", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_INTEGER, "int", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_FLOAT, "float", 16);
+        addBoxed(CommonClassNames.JAVA_LANG_LONG, "long", 24);
+        addBoxed(CommonClassNames.JAVA_LANG_DOUBLE, "double", 24);
+    }
+
+    private static void addBoxed(final String boxed, final String primitive, final int size) {
+        UNBOXED.put(boxed, primitive);
+        BOXED_SIZE.put(boxed, size);
+    }
+
+    private ObjectLayoutAnalyzer() { }
+
+    /**
+     * Lay out every instance field of the class and its superclasses.
+     *
+     * @param psiClass the class to analyze.
+     * @return the estimated layout.
+     */
+    public static Layout analyze(final PsiClass psiClass) {
+        final List<PsiClass> hierarchy = new ArrayList<>();
+        for (PsiClass current = psiClass;
+             current != null && !CommonClassNames.JAVA_LANG_OBJECT.equals(current.getQualifiedName());
+             current = current.getSuperClass()) {
+            hierarchy.add(0, current);
+        }
+
+        final Layout layout = new Layout(psiClass);
+        int offset = HEADER_SIZE;
+        for (final PsiClass current : hierarchy) {
+            final List<PsiField> fields = new ArrayList<>();
+            for (final PsiField field : current.getFields()) {
+                if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                    fields.add(field);
+                }
+            }
+            offset = layoutClassBlock(layout, fields, offset);
+        }
+
+        final int instanceSize = align(offset, OBJECT_ALIGNMENT);
+        if (instanceSize > offset) {
+            layout.slots.add(new Slot(offset, instanceSize - offset, null, "(object alignment)"));
+        }
+        layout.instanceSize = instanceSize;
+        return layout;
+    }
+
+    /**
+     * Place one class' fields starting at the given offset.
+     *
+     * @return the offset the next class' block starts at.
+     */
+    private static int layoutClassBlock(final Layout layout, final List<PsiField> fields, final int start) {
+        // stable sort keeps the declaration order between fields of the same size
+        final List<PsiField> remaining = new ArrayList<>(fields);
+        remaining.sort(Comparator.comparingInt(ObjectLayoutAnalyzer::sizeOf).reversed());
+
+        int offset = start;
+        if (!remaining.isEmpty() && sizeOf(remaining.get(0)) == 8 && offset % 8 != 0) {
+            // fill the gap before the first 8 byte field with the largest smaller fields that fit
+            final int gapEnd = align(offset, 8);
+            for (final PsiField field : new ArrayList<>(remaining)) {
+                final int size = sizeOf(field);
+                if (size < 8 && align(offset, size) + size <= gapEnd) {
+                    offset = place(layout, field, offset);
+                    remaining.remove(field);
+                }
+            }
+        }
+
+        for (final PsiField field : remaining) {
+            offset = place(layout, field, offset);
+        }
+
+        final int end = align(offset, REFERENCE_SIZE);
+        if (end > offset) {
+            layout.slots.add(new Slot(offset, end - offset, null, "(class block padding)"));
+        }
+        return end;
+    }
+
+    private static int place(final Layout layout, final PsiField field, final int offset) {
+        final int size = sizeOf(field);
+        final int aligned = align(offset, size);
+        if (aligned > offset) {
+            layout.slots.add(new Slot(offset, aligned - offset, null, "(alignment gap)"));
+        }
+        layout.slots.add(new Slot(aligned, size, field, field.getType().getPresentableText() + " " + field.getName()));
+        return aligned + size;
+    }
+
+    static int sizeOf(final PsiField field) {
+        return sizeOf(field.getType());
+    }
+
+    static int sizeOf(final PsiType type) {
+        if (PsiType.LONG.equals(type) || PsiType.DOUBLE.equals(type)) {
+            return 8;
+        }
+        if (PsiType.INT.equals(type) || PsiType.FLOAT.equals(type)) {
+            return 4;
+        }
+        if (PsiType.SHORT.equals(type) || PsiType.CHAR.equals(type)) {
+            return 2;
+        }
+        if (PsiType.BYTE.equals(type) || PsiType.BOOLEAN.equals(type)) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+
+    static int align(final int offset, final int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * @param field the field.
+     * @return the primitive the field's boxed type could be narrowed to, or null if it isn't a boxed type.
+     */
+    @Nullable
+    static String unboxedType(final PsiField field) {
+        return UNBOXED.get(field.getType().getCanonicalText());
+    }
+
+    /**
+     * Work out how many bytes narrowing a boxed field to its primitive would save per instance: the difference in the
+     * field slot plus the boxed object it no longer points to. Small cached values (Boolean, Integer.valueOf etc.)
+     * don't allocate, so this is an upper bound.
+     *
+     * @param field the boxed field.
+     * @return the bytes saved.
+     */
+    static int narrowingSaving(final PsiField field) {
+        final String boxed = field.getType().getCanonicalText();
+        final String primitive = UNBOXED.get(boxed);
+        if (primitive == null) {
+            return 0;
+        }
+        final int primitiveSize = "long".equals(primitive) || "double".equals(primitive) ? 8
+                                  : "int".equals(primitive) || "float".equals(primitive) ? 4
+                                  : "short".equals(primitive) || "char".equals(primitive) ? 2 : 1;
+        return BOXED_SIZE.get(boxed) + REFERENCE_SIZE - primitiveSize;
+    }
+
+    /**
+     * A field or a gap at an offset in the instance.
+     */
+    public static final class Slot {
+        private final int offset;
+
+        private final int size;
+
+        @Nullable
+        private final PsiField field;
+
+        private final String description;
+
+        private Slot(final int offset, final int size, @Nullable final PsiField field, final String description) {
+            this.offset = offset;
+            this.size = size;
+            this.field = field;
+            this.description = description;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Nullable
+        public PsiField getField() {
+            return field;
+        }
+
+        public boolean isPadding() {
+            return field == null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%4d %4d  %s", offset, size, description);
+        }
+    }
+
+    /**
+     * The estimated layout of a class.
+     */
+    public static final class Layout {
+        private final PsiClass psiClass;
+
+        private final List<Slot> slots = new ArrayList<>();
+
+        private int instanceSize;
+
+        private Layout(final PsiClass psiClass) {
+            this.psiClass = psiClass;
+        }
+
+        public List<Slot> getSlots() {
+            return slots;
+        }
+
+        public int getInstanceSize() {
+            return instanceSize;
+        }
+
+        public int getPadding() {
+            int padding = 0;
+            for (final Slot slot : slots) {
+                if (slot.isPadding()) {
+                    padding += slot.size;
+                }
+            }
+            return padding;
+        }
+
+        /**
+         * @return the fields declared in the analyzed class itself in the order they are laid out.
+         */
+        public List<PsiField> getOwnFieldsInLayoutOrder() {
+            final List<PsiField> fields = new ArrayList<>();
+            for (final Slot slot : slots) {
+                if (slot.field != null && psiClass.getManager().areElementsEquivalent(slot.field.getContainingClass(),
+                                                                                      psiClass)) {
+                    fields.add(slot.field);
+                }
+            }
+            return fields;
+        }
+
+        /**
+         * Follow the layout order as far as the initializers allow: a field whose initializer reads other fields of
+         * the class stays after them, declaring it first would be an illegal forward reference.
+         *
+         * @return the fields declared in the analyzed class itself in the order to declare them in.
+         */
+        public List<PsiField> getOwnFieldsInDeclarableOrder() {
+            final List<PsiField> remaining = new ArrayList<>(getOwnFieldsInLayoutOrder());
+            final Map<PsiField, Set<PsiField>> dependencies = new HashMap<>();
+            for (final PsiField field : remaining) {
+                dependencies.put(field, readFields(field, remaining));
+            }
+
+            final List<PsiField> ordered = new ArrayList<>(remaining.size());
+            while (!remaining.isEmpty()) {
+                PsiField next = null;
+                for (final PsiField field : remaining) {
+                    if (ordered.containsAll(dependencies.get(field))) {
+                        next = field;
+                        break;
+                    }
+                }
+                // only reachable in code that doesn't compile, the rest keep their layout order
+                if (next == null) {
+                    ordered.addAll(remaining);
+                    break;
+                }
+                ordered.add(next);
+                remaining.remove(next);
+            }
+            return ordered;
+        }
+
+        /**
+         * @return the fields of the candidates the field's initializer reads, unqualified or through this.
+         */
+        private static Set<PsiField> readFields(final PsiField field, final List<PsiField> candidates) {
+            final Set<PsiField> read = new HashSet<>();
+            final PsiExpression initializer = field.getInitializer();
+            if (initializer == null) {
+                return read;
+            }
+            initializer.accept(new JavaRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitReferenceExpression(@NotNull final PsiReferenceExpression expression) {
+                    super.visitReferenceExpression(expression);
+                    final PsiExpression qualifier = expression.getQualifierExpression();
+                    if (qualifier == null || qualifier instanceof PsiThisExpression) {
+                        final PsiElement target = expression.resolve();
+                        if (target instanceof PsiField && target != field && candidates.contains(target)) {
+                            read.add((PsiField) target);
+                        }
+                    }
+                }
+            });
+            return read;
+        }
+
+        /**
+         * @return whether the declarations are in another order than the one to declare them in.
+         */
+        public boolean canReorder() {
+            final List<PsiField> declarationOrder = new ArrayList<>();
+            for (final PsiField field : psiClass.getFields()) {
+                if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                    declarationOrder.add(field);
+                }
+            }
+            return !getOwnFieldsInDeclarableOrder().equals(declarationOrder);
+        }
+
+        /**
+         * Build the footprint report, with the narrowing suggestions for the given fields.
+         *
+         * @param collectedFields the fields narrowing is suggested for.
+         * @return the report text.
+         */
+        public String toReport(final List<PsiField> collectedFields) {
+            final StringBuilder report = new StringBuilder();
+            report.append(psiClass.getName())
+                  .append(" - estimated ")
+                  .append(instanceSize)
+                  .append(" bytes per instance (64-bit HotSpot, compressed oops)\n\n")
+                  .append(" off size  field\n")
+                  .append(String.format("%4d %4d  %s%n", 0, HEADER_SIZE, "(object header)"));
+            for (final Slot slot : slots) {
+                report.append(slot).append('\n');
+            }
+            report.append("\nFields: ")
+                  .append(instanceSize - HEADER_SIZE - getPadding())
+                  .append(" bytes, header: ")
+                  .append(HEADER_SIZE)
+                  .append(" bytes, padding: ")
+                  .append(getPadding())
+                  .append(" bytes\n");
+
+            final List<String> suggestions = new ArrayList<>();
+            int totalSaving = 0;
+            for (final PsiField field : collectedFields) {
+                final String primitive = unboxedType(field);
+                if (primitive != null) {
+                    final int saving = narrowingSaving(field);
+                    totalSaving += saving;
+                    suggestions.add("  " + field.getType().getPresentableText() + " " + field.getName() + " -> "
+                                    + primitive + ": up to " + saving + " bytes per instance if it can't be null");
+                }
+            }
+            if (!suggestions.isEmpty()) {
+                report.append("\nType narrowing (")
+                      .append("up to ")
+                      .append(totalSaving)
+                      .append(" bytes per instance, including the boxed objects):\n");
+                for (final String suggestion : suggestions) {
+                    report.append(suggestion).append('\n');
+                }
+            }
+
+            if (canReorder()) {
+                final List<PsiField> layoutOrder = getOwnFieldsInDeclarableOrder();
+                report.append("\nThe JVM already packs fields by size whatever order they are declared in. Reordering ")
+                      .append("the declarations to match the layout makes the source show the real layout, fields ")
+                      .append("initialized from other fields staying after them:\n  ");
+                for (int i = 0; i < layoutOrder.size(); i++) {
+                    report.append(i == 0 ? "" : ", ").append(layoutOrder.get(i).getName());
+                }
+                report.append('\n');
+            }
+
+            return report.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "Layout{" + "psiClass=" + psiClass + ", slots=" + slots + ", instanceSize=" + instanceSize + '}';
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.CodeInsightActionHandler;
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorFontType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.psi.*;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the estimated instance footprint of the class under the caret and optionally reorders its field declarations
+ * to match the layout, then regenerates the constructors and accessors so they follow the new order.
+ */
+public class ObjectLayoutHandler implements CodeInsightActionHandler {
+
+    public boolean isValidFor(Editor editor, PsiFile file) {
+        return file instanceof PsiJavaFile && GenerateUtils.getStaticOrTopLevelClass(file, editor) != null;
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    @Override
+    public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
+        final PsiClass targetClass = GenerateUtils.getStaticOrTopLevelClass(file, editor);
+        if (targetClass == null) {
+            return;
+        }
+
+        final List<PsiField> collectedFields = new ArrayList<>();
+        final List<PsiFieldMember> fieldMembers = GenerateOptionCollector.collectFields(targetClass);
+        if (fieldMembers != null) {
+            for (final PsiFieldMember fieldMember : fieldMembers) {
+                collectedFields.add(fieldMember.getElement());
+            }
+        }
+
+        final ObjectLayoutAnalyzer.Layout layout = ObjectLayoutAnalyzer.analyze(targetClass);
+        final boolean canReorder = targetClass.isWritable()
+                                   && targetClass.getFields().length > 1
+                                   && layout.canReorder();
+        final LayoutDialog dialog = new LayoutDialog(project, layout.toReport(collectedFields), canReorder);
+        if (!dialog.showAndGet()) {
+            return;
+        }
+
+        WriteCommandAction.writeCommandAction(project, file)
+                          .withName("Reorder Fields by Layout")
+                          .run(() -> reorderFields(targetClass));
+
+        final List<PsiFieldMember> reorderedFields = GenerateOptionCollector.collectFields(targetClass);
+        if (reorderedFields != null && !reorderedFields.isEmpty()) {
+            GenerateGenerator.generate(project, targetClass, file, reorderedFields);
+        }
+    }
+
+    /**
+     * Move the instance field declarations into the order the JVM lays them out, as far as their initializers allow,
+     * keeping them where the first one was declared.
+     */
+    private static void reorderFields(final PsiClass targetClass) {
+        // split declarations like "int a, b;" so each field can move on its own
+        for (final PsiField field : targetClass.getFields()) {
+            field.normalizeDeclaration();
+        }
+
+        PsiField anchor = null;
+        for (final PsiField field : targetClass.getFields()) {
+            if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                anchor = field;
+                break;
+            }
+        }
+        if (anchor == null) {
+            return;
+        }
+
+        final List<PsiField> layoutOrder = ObjectLayoutAnalyzer.analyze(targetClass).getOwnFieldsInDeclarableOrder();
+        for (final PsiField field : layoutOrder) {
+            targetClass.addBefore(field.copy(), anchor);
+        }
+        for (final PsiField field : layoutOrder) {
+            field.delete();
+        }
+    }
+
+    private static final class LayoutDialog extends DialogWrapper {
+        private final String report;
+
+        private LayoutDialog(final Project project, final String report, final boolean canReorder) {
+            super(project);
+            this.report = report;
+            setTitle("Object Layout");
+            setOKButtonText("Reorder and Regenerate");
+            setCancelButtonText("Close");
+            setOKActionEnabled(canReorder);
+            init();
+        }
+
+        @Nullable
+        @Override
+        protected JComponent createCenterPanel() {
+            final JBTextArea textArea = new JBTextArea(report);
+            textArea.setEditable(false);
+            textArea.setFont(EditorColorsManager.getInstance().getGlobalScheme().getFont(EditorFontType.PLAIN));
+            final JBScrollPane scrollPane = new JBScrollPane(textArea);
+            scrollPane.setPreferredSize(JBUI.size(640, 420));
+            return scrollPane;
+        }
+    }
+}
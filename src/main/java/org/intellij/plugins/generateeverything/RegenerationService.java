@@ -0,0 +1,339 @@
+package org.intellij.plugins.generateeverything;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the classes generated in this session up to date as their fields change, when enabled in the settings.
+ * <p>
+ * Every class Generate Everything runs on is remembered along with the options and fields it was generated with. A
+ * PSI listener queues a class whenever one of its fields is added, removed, renamed or changes type, and the queue
+ * merges the changes to a class until it has been left alone for a moment. The new members are then worked out in a
+ * background read action and only the accessors that are missing or out of date, the all args constructor and
+ * toString are replaced, in a small write command of their own. Accessors of removed fields are left for the user to
+ * delete.
+ */
+@Service(Service.Level.PROJECT)
+public final class RegenerationService implements Disposable {
+
+    private static final Logger LOGGER = Logger.getInstance(RegenerationService.class);
+
+    public static final String ENABLED_PROPERTY = "GenerateGenerator.regenerateOnFieldChange";
+
+    // How long a class has to be left alone before it is regenerated
+    private static final int DELAY_MILLIS = 1000;
+
+    private final Project project;
+
+    private final ConcurrentMap<String, GeneratedClass> generatedClasses = new ConcurrentHashMap<>();
+
+    private final MergingUpdateQueue queue;
+
+    public RegenerationService(final Project project) {
+        this.project = project;
+        this.queue = new MergingUpdateQueue("Generate Everything Regeneration",
+                                            DELAY_MILLIS,
+                                            true,
+                                            null,
+                                            this,
+                                            null,
+                                            Alarm.ThreadToUse.POOLED_THREAD);
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new FieldChangeListener(), this);
+    }
+
+    public static RegenerationService getInstance(final Project project) {
+        return project.getService(RegenerationService.class);
+    }
+
+    public static boolean isEnabled() {
+        return PropertiesComponent.getInstance().getBoolean(ENABLED_PROPERTY, false);
+    }
+
+    /**
+     * Remember what a class was generated with, so it can be regenerated the same way when its fields change.
+     *
+     * @param targetClass the generated class.
+     * @param options the options it was generated with.
+     * @param selectedFields the fields it was generated for.
+     */
+    public void record(final PsiClass targetClass,
+                       final Set<GenerateOption> options,
+                       final List<PsiFieldMember> selectedFields) {
+        final String qualifiedName = targetClass.getQualifiedName();
+        if (qualifiedName == null) {
+            return;
+        }
+
+        final Set<String> selectedNames = new HashSet<>();
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            selectedNames.add(fieldMember.getElement().getName());
+        }
+
+        // fields left out in the chooser stay left out, new fields are always included
+        final Set<String> excludedNames = new HashSet<>();
+        final List<PsiFieldMember> collectedFields = GenerateOptionCollector.collectFields(targetClass);
+        if (collectedFields != null) {
+            for (final PsiFieldMember fieldMember : collectedFields) {
+                if (!selectedNames.contains(fieldMember.getElement().getName())) {
+                    excludedNames.add(fieldMember.getElement().getName());
+                }
+            }
+        }
+
+        generatedClasses.put(qualifiedName,
+                             new GeneratedClass(SmartPointerManager.createPointer(targetClass),
+                                                EnumSet.copyOf(options),
+                                                excludedNames,
+                                                fieldNames(selectedFields),
+                                                fieldTypes(selectedFields),
+                                                fieldSignatures(selectedFields)));
+        LOGGER.trace("Tracking " + qualifiedName + " for regeneration.");
+    }
+
+    private void fieldsChanged(final PsiClass psiClass) {
+        final String qualifiedName = psiClass.getQualifiedName();
+        if (qualifiedName == null || !generatedClasses.containsKey(qualifiedName)) {
+            return;
+        }
+
+        queue.queue(new Update(qualifiedName) {
+            @Override
+            public void run() {
+                ReadAction.nonBlocking(() -> computeRegeneration(qualifiedName))
+                          .inSmartMode(project)
+                          .expireWith(RegenerationService.this)
+                          .coalesceBy(RegenerationService.this, qualifiedName)
+                          .finishOnUiThread(ModalityState.defaultModalityState(),
+                                            regeneration -> applyRegeneration(qualifiedName, regeneration))
+                          .submit(AppExecutorUtil.getAppExecutorService());
+            }
+        });
+    }
+
+    /**
+     * Work out the members to regenerate for a class. Runs in a background read action.
+     *
+     * @param qualifiedName the class' qualified name.
+     * @return the regeneration, or null if nothing needs to change or the class can't be regenerated right now.
+     */
+    @Nullable
+    private Regeneration computeRegeneration(final String qualifiedName) {
+        final GeneratedClass generatedClass = generatedClasses.get(qualifiedName);
+        final PsiClass psiClass = generatedClass == null ? null : generatedClass.pointer.getElement();
+        // half typed declarations are left until they parse
+        if (psiClass == null || !psiClass.isValid() || PsiTreeUtil.hasErrorElements(psiClass)) {
+            return null;
+        }
+
+        final List<PsiFieldMember> collectedFields = GenerateOptionCollector.collectFields(psiClass);
+        if (collectedFields == null) {
+            return null;
+        }
+        final List<PsiFieldMember> fields = new ArrayList<>(collectedFields.size());
+        for (final PsiFieldMember fieldMember : collectedFields) {
+            if (!generatedClass.excludedNames.contains(fieldMember.getElement().getName())) {
+                fields.add(fieldMember);
+            }
+        }
+
+        final List<String> signatures = fieldSignatures(fields);
+        if (signatures.equals(generatedClass.fieldSignatures)) {
+            return null;
+        }
+
+        LOGGER.trace("Fields of " + qualifiedName + " changed, regenerating.");
+        final GenerationPlan plan = GenerateGenerator.computeRegenerationPlan(project,
+                                                                             psiClass,
+                                                                             fields,
+                                                                             generatedClass.options,
+                                                                             generatedClass.fieldNames,
+                                                                             generatedClass.fieldTypes);
+        return new Regeneration(plan,
+                                new GeneratedClass(generatedClass.pointer,
+                                                   generatedClass.options,
+                                                   generatedClass.excludedNames,
+                                                   fieldNames(fields),
+                                                   fieldTypes(fields),
+                                                   signatures));
+    }
+
+    private void applyRegeneration(final String qualifiedName, @Nullable final Regeneration regeneration) {
+        if (regeneration == null || !isEnabled()) {
+            return;
+        }
+
+        final PsiFile file = regeneration.plan.getFile();
+        if (!regeneration.plan.isEmpty() && file.isValid()) {
+            WriteCommandAction.writeCommandAction(project, file)
+                              .withName("Generate Everything: Regenerate")
+                              .run(() -> regeneration.plan.applyInPlace(project));
+        }
+        generatedClasses.put(qualifiedName, regeneration.generatedClass);
+    }
+
+    private static List<String> fieldNames(final List<PsiFieldMember> fields) {
+        final List<String> names = new ArrayList<>(fields.size());
+        for (final PsiFieldMember fieldMember : fields) {
+            names.add(fieldMember.getElement().getName());
+        }
+        return names;
+    }
+
+    private static List<String> fieldTypes(final List<PsiFieldMember> fields) {
+        final List<String> types = new ArrayList<>(fields.size());
+        for (final PsiFieldMember fieldMember : fields) {
+            types.add(fieldMember.getElement().getType().getCanonicalText());
+        }
+        return types;
+    }
+
+    private static List<String> fieldSignatures(final List<PsiFieldMember> fields) {
+        final List<String> signatures = new ArrayList<>(fields.size());
+        for (final PsiFieldMember fieldMember : fields) {
+            final PsiField field = fieldMember.getElement();
+            signatures.add(field.getType().getCanonicalText() + " " + field.getName());
+        }
+        return signatures;
+    }
+
+    @Override
+    public void dispose() {
+        generatedClasses.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "RegenerationService{" + "project=" + project + ", generatedClasses=" + generatedClasses.keySet() + '}';
+    }
+
+    /**
+     * Queues the class around any change to a field declaration, ignoring initializers and everything else.
+     */
+    private final class FieldChangeListener extends PsiTreeChangeAdapter {
+        @Override
+        public void childAdded(@NotNull final PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childRemoved(@NotNull final PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childReplaced(@NotNull final PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull final PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        private void changed(final PsiTreeChangeEvent event) {
+            if (generatedClasses.isEmpty() || !isEnabled()) {
+                return;
+            }
+            final PsiFile file = event.getFile();
+            if (!(file instanceof PsiJavaFile) || !file.isPhysical()) {
+                return;
+            }
+
+            final PsiElement child = event.getChild();
+            final PsiElement parent = event.getParent();
+            final PsiClass psiClass;
+            if (child instanceof PsiField) {
+                // a removed field is already detached, only the parent knows the class
+                psiClass = parent instanceof PsiClass ? (PsiClass) parent : ((PsiField) child).getContainingClass();
+            } else {
+                final PsiField field = PsiTreeUtil.getParentOfType(parent, PsiField.class, false);
+                if (field == null || PsiTreeUtil.isAncestor(field.getInitializer(), parent, false)) {
+                    return;
+                }
+                psiClass = field.getContainingClass();
+            }
+
+            if (psiClass != null) {
+                fieldsChanged(psiClass);
+            }
+        }
+    }
+
+    /**
+     * What a class was last generated with.
+     */
+    private static final class GeneratedClass {
+        private final SmartPsiElementPointer<PsiClass> pointer;
+
+        private final Set<GenerateOption> options;
+
+        private final Set<String> excludedNames;
+
+        // the all args constructor's parameters are named after these
+        private final List<String> fieldNames;
+
+        // and the interning factory's parameters have these types
+        private final List<String> fieldTypes;
+
+        private final List<String> fieldSignatures;
+
+        private GeneratedClass(final SmartPsiElementPointer<PsiClass> pointer,
+                               final Set<GenerateOption> options,
+                               final Set<String> excludedNames,
+                               final List<String> fieldNames,
+                               final List<String> fieldTypes,
+                               final List<String> fieldSignatures) {
+            this.pointer = pointer;
+            this.options = options;
+            this.excludedNames = excludedNames;
+            this.fieldNames = fieldNames;
+            this.fieldTypes = fieldTypes;
+            this.fieldSignatures = fieldSignatures;
+        }
+
+        @Override
+        public String toString() {
+            return "GeneratedClass{" + "pointer=" + pointer + ", options=" + options + ", excludedNames="
+                   + excludedNames + ", fieldNames=" + fieldNames + ", fieldTypes=" + fieldTypes + ", fieldSignatures="
+                   + fieldSignatures + '}';
+        }
+    }
+
+    /**
+     * A computed regeneration waiting to be applied.
+     */
+    private static final class Regeneration {
+        private final GenerationPlan plan;
+
+        private final GeneratedClass generatedClass;
+
+        private Regeneration(final GenerationPlan plan, final GeneratedClass generatedClass) {
+            this.plan = plan;
+            this.generatedClass = generatedClass;
+        }
+
+        @Override
+        public String toString() {
+            return "Regeneration{" + "plan=" + plan + ", generatedClass=" + generatedClass + '}';
+        }
+    }
+}